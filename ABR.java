@@ -1,9 +1,18 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.AbstractCollection;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -17,19 +26,41 @@ import java.util.NoSuchElementException;
  * d'efficacité.
  * </p>
  * 
+ * <p>
+ * L'arbre peut s'équilibrer de lui-même selon une stratégie choisie à la
+ * création (cf {@link Equilibrage}) ; par défaut il ne s'équilibre pas.
+ * </p>
+ * 
  * @param <E>
  *            le type des clés stockées dans l'arbre
  */
 public class ABR<E> extends AbstractCollection<E> {
+	@SuppressWarnings("unchecked")
+	private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
 	private Noeud racine;
 	private int taille;
+	/** nombre de modifications de structure, pour les itérateurs */
+	private int modifications;
+	private final Equilibrage equilibrage;
+	/** plus grande taille atteinte depuis la dernière reconstruction totale (bouc émissaire) */
+	private int tailleMax;
+
+	/** déséquilibre toléré par l'arbre à bouc émissaire, entre 1/2 et 1 */
+	private static final double ALPHA = 0.7;
+	/** le comparateur fourni, ou ORDRE_NATUREL */
+	private Comparator<? super E> ordre;
+	/** le comparateur utilisé, qui compte ses appels si les métriques sont actives */
 	private Comparator<? super E> cmp;
+	/** null si les métriques sont désactivées */
+	private final Metriques metriques = Metriques.ACTIVES ? new Metriques(this::profondeurs) : null;
 
 	private class Noeud {
 		E cle;
 		Noeud gauche;
 		Noeud droit;
 		Noeud pere;
+		/** hauteur du sous-arbre (AVL) ou priorité (arbre-tas) */
+		int poids;
 
 		Noeud(E cle) {
 			this.cle=cle;
@@ -88,8 +119,10 @@ public class ABR<E> extends AbstractCollection<E> {
 	 * Crée un arbre vide. Les éléments sont ordonnés selon l'ordre naturel
 	 */
 	public ABR() {
+		ordonner(null);
 		racine = null ;
         this.taille=0;
+		equilibrage = Equilibrage.AUCUN;
 	}
 
 	/**
@@ -97,36 +130,201 @@ public class ABR<E> extends AbstractCollection<E> {
 	 * le comparateur
 	 * 
 	 * @param cmp
-	 *            le comparateur utilisé pour définir l'ordre des éléments
+	 *            le comparateur utilisé pour définir l'ordre des éléments,
+	 *            null pour l'ordre naturel
 	 */
 	public ABR(Comparator<? super E> cmp) {
-		cmp = (e1,e2)->((Comparable<E>)e1).compareTo(e2);
+		ordonner(cmp);
         racine=null;
         this.taille=0;
+		equilibrage = Equilibrage.AUCUN;
+	}
+
+	/**
+	 * Crée un arbre vide qui s'équilibre selon la stratégie donnée
+	 * 
+	 * @param cmp
+	 *            le comparateur utilisé pour définir l'ordre des éléments,
+	 *            null pour l'ordre naturel
+	 * @param equilibrage
+	 *            la stratégie d'équilibrage
+	 */
+	public ABR(Comparator<? super E> cmp, Equilibrage equilibrage) {
+		ordonner(cmp);
+		if (equilibrage == null)
+			throw new NullPointerException();
+		this.equilibrage = equilibrage;
 	}
 
 	/**
 	 * Constructeur par recopie. Crée un arbre qui contient les mêmes éléments
-	 * que c. L'ordre des éléments est l'ordre naturel.
+	 * que c. L'ordre des éléments est l'ordre naturel. L'arbre est construit
+	 * équilibré en temps linéaire si c est déjà triée, après un tri sinon :
+	 * une entrée triée ne le fait donc plus dégénérer en liste.
 	 * 
 	 * @param c
 	 *            la collection à copier
 	 */ 
 	public ABR(Collection<? extends E> c) {
-        Iterator<? extends E> iterator = c.iterator();
-		cmp = (e1,e2)->((Comparable<E>)e1).compareTo(e2);
-		while(iterator.hasNext()){
-            this.add(iterator.next());
-        }
+		ordonner(null);
+		equilibrage = Equilibrage.AUCUN;
+		charger(c);
+	}
+
+	/**
+	 * Fixe l'ordre des clés, l'ordre naturel si c est null
+	 */
+	private void ordonner(Comparator<? super E> c) {
+		ordre = c == null ? ORDRE_NATUREL : c;
+		cmp = Metriques.ACTIVES ? metriques.compter(ordre) : ordre;
+	}
+
+	/**
+	 * Remplit l'arbre vide avec les éléments de c (doublons compris), triés
+	 * si besoin, sous la forme d'un arbre parfaitement équilibré.
+	 */
+	@SuppressWarnings("unchecked")
+	private void charger(Collection<? extends E> c) {
+		Object[] tri = c.toArray();
+		if (!(c instanceof SortedSet && memeOrdre(((SortedSet<?>) c).comparator()))) {
+			boolean trie = true;
+			for (int i = 1; i < tri.length && trie; i++)
+				trie = cmp.compare((E) tri[i - 1], (E) tri[i]) <= 0;
+			if (!trie)
+				Arrays.sort(tri, (Comparator<Object>) cmp);
+		}
+		chargerTrie(tri);
+	}
+
+	/**
+	 * Dit si un ensemble trié par autre (null pour l'ordre naturel) est dans
+	 * l'ordre de l'arbre
+	 */
+	private boolean memeOrdre(Comparator<?> autre) {
+		return autre == null ? ordre == ORDRE_NATUREL : autre.equals(ordre);
+	}
+
+	/**
+	 * Remplit l'arbre vide avec les clés de tri, qui sont dans l'ordre
+	 * croissant
+	 */
+	private void chargerTrie(Object[] tri) {
+		racine = construire(tri, 0, tri.length - 1, null);
+		taille = tri.length;
+		tailleMax = taille;
+		if (equilibrage == Equilibrage.ARBRE_TAS)
+			distribuerPriorites();
+		modifications++;
+	}
+
+	/**
+	 * Construit le sous-arbre équilibré des clés tri[debut..fin]
+	 * 
+	 * @return la racine du sous-arbre, null s'il est vide
+	 */
+	@SuppressWarnings("unchecked")
+	private Noeud construire(Object[] tri, int debut, int fin, Noeud pere) {
+		if (debut > fin)
+			return null;
+		int milieu = (debut + fin) >>> 1;
+		Noeud n = new Noeud((E) tri[milieu]);
+		n.pere = pere;
+		n.gauche = construire(tri, debut, milieu - 1, n);
+		n.droit = construire(tri, milieu + 1, fin, n);
+		if (equilibrage == Equilibrage.AVL)
+			majHauteur(n);
+		return n;
+	}
+
+	/**
+	 * Donne aux noeuds d'un arbre construit en bloc des priorités aléatoires
+	 * compatibles avec sa forme : tirées puis triées, elles sont distribuées
+	 * par ordre décroissant niveau par niveau, chaque père passant donc avant
+	 * ses fils.
+	 */
+	private void distribuerPriorites() {
+		int[] priorites = new int[taille];
+		for (int i = 0; i < taille; i++)
+			priorites[i] = ThreadLocalRandom.current().nextInt();
+		Arrays.sort(priorites);
+		ArrayDeque<Noeud> file = new ArrayDeque<>();
+		if (racine != null)
+			file.add(racine);
+		int i = taille;
+		while (!file.isEmpty()) {
+			Noeud x = file.poll();
+			x.poids = priorites[--i];
+			if (x.gauche != null)
+				file.add(x.gauche);
+			if (x.droit != null)
+				file.add(x.droit);
+		}
+	}
+
+	/**
+	 * Écrit les clés de l'arbre, doublons compris, dans fichier dans l'ordre
+	 * croissant (cf {@link Instantane} pour le format). Le fichier est
+	 * remplacé d'un coup.
+	 * 
+	 * @param fichier
+	 *            le fichier à écrire
+	 * @param codec
+	 *            le codage des clés
+	 * @throws IOException
+	 *             si l'écriture échoue
+	 */
+	public void sauvegarder(Path fichier, CodecCle<? super E> codec) throws IOException {
+		Instantane.ecrire(iterator(), taille, codec, fichier);
+	}
+
+	/**
+	 * Recrée un arbre à partir d'un instantané écrit par
+	 * {@link #sauvegarder} : le fichier est projeté en mémoire et l'arbre
+	 * construit équilibré en O(n).
+	 * 
+	 * @param fichier
+	 *            l'instantané
+	 * @param codec
+	 *            le codage des clés, le même qu'à l'écriture
+	 * @param cmp
+	 *            l'ordre des clés, le même qu'à l'écriture ; null pour
+	 *            l'ordre naturel
+	 * @param equilibrage
+	 *            la stratégie d'équilibrage de l'arbre recréé
+	 * @return l'arbre des clés de l'instantané
+	 * @throws IOException
+	 *             si le fichier est illisible, corrompu, ou n'a pas été écrit
+	 *             avec ce codec et cet ordre
+	 */
+	public static <E> ABR<E> restaurer(Path fichier, CodecCle<E> codec, Comparator<? super E> cmp,
+			Equilibrage equilibrage) throws IOException {
+		ABR<E> arbre = new ABR<>(cmp, equilibrage);
+		arbre.chargerTrie(Instantane.lire(fichier, codec, arbre.cmp, false));
+		return arbre;
+	}
+
+	/**
+	 * Dans un arbre vide, les éléments sont chargés en bloc (cf
+	 * {@link #ABR(Collection)}) au lieu d'être ajoutés un par un.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		if (taille == 0 && !c.isEmpty()) {
+			charger(c);
+			return true;
+		}
+		return super.addAll(c);
 	}
 	public boolean add(E elt) {
 		Noeud y = null;
 		Noeud x = racine;
 		Noeud z = new Noeud(elt);
+		int profondeur = 0;
 		while (x != null) {
 			y = x;
 			int compareResult = cmp.compare(elt, x.cle);
 			x = compareResult < 0 ? x.gauche : x.droit;
+			profondeur++;
 		}
 		z.pere = y;
 		if (y == null) { // arbre vide
@@ -140,6 +338,8 @@ public class ABR<E> extends AbstractCollection<E> {
 		}
 		z.gauche = z.droit = null;
 		taille++;
+		modifications++;
+		equilibrerApresAjout(z, profondeur);
 		return true;
 	}
 	
@@ -148,11 +348,117 @@ public class ABR<E> extends AbstractCollection<E> {
 		return new ABRIterator();
 	}
 
+	/**
+	 * Renvoie le comparateur de l'arbre, null pour l'ordre naturel
+	 */
+	public Comparator<? super E> comparator() {
+		return ordre == ORDRE_NATUREL ? null : ordre;
+	}
+
+	/**
+	 * Le Spliterator se découpe le long des sous-arbres, ce qui permet aux
+	 * flux parallèles de répartir l'arbre entre les threads du pool commun.
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return new ABRSpliterator(null, null, -1, 0);
+	}
+
 	@Override
 	public int size() {
 		return taille;
 	}
 
+	@Override
+	public boolean contains(Object o) {
+		return rechercher(o) != null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		Noeud z = rechercher(o);
+		if (z == null)
+			return false;
+		supprimer(z);
+		return true;
+	}
+
+	/**
+	 * Supprime toutes les occurrences des éléments de c, chacune en temps
+	 * logarithmique (la version de AbstractCollection parcourt tout l'arbre).
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if (c == this) {
+			boolean modifie = taille != 0;
+			clear();
+			return modifie;
+		}
+		boolean modifie = false;
+		for (Object o : c) {
+			while (remove(o))
+				modifie = true;
+		}
+		return modifie;
+	}
+
+	@Override
+	public void clear() {
+		racine = null;
+		taille = 0;
+		tailleMax = 0;
+		modifications++;
+	}
+
+	/**
+	 * Renvoie la hauteur de l'arbre, c'est-à-dire le nombre de noeuds sur le
+	 * plus long chemin de la racine à une feuille (0 pour l'arbre vide). Le
+	 * parcours est fait niveau par niveau pour supporter les arbres dégénérés.
+	 * 
+	 * @return la hauteur de l'arbre
+	 */
+	public int hauteur() {
+		return profondeurs().length;
+	}
+
+	/**
+	 * Renvoie le nombre de noeuds à chaque profondeur, de la racine
+	 * (profondeur 0) aux feuilles les plus basses
+	 */
+	public int[] profondeurs() {
+		int[] h = new int[8];
+		ArrayDeque<Noeud> niveau = new ArrayDeque<>();
+		if (racine != null)
+			niveau.add(racine);
+		int hauteur = 0;
+		while (!niveau.isEmpty()) {
+			if (hauteur == h.length)
+				h = Arrays.copyOf(h, 2 * hauteur);
+			h[hauteur++] = niveau.size();
+			for (int i = niveau.size(); i > 0; i--) {
+				Noeud x = niveau.poll();
+				if (x.gauche != null)
+					niveau.add(x.gauche);
+				if (x.droit != null)
+					niveau.add(x.droit);
+			}
+		}
+		return Arrays.copyOf(h, hauteur);
+	}
+
+	/**
+	 * Renvoie les métriques de l'arbre (cf {@link Metriques}), après en avoir
+	 * mesuré les profondeurs : à appeler par le thread qui modifie l'arbre.
+	 * Sans -Darbres.metriques=true, les compteurs restent à zéro. L'arbre
+	 * n'ayant pas de couleurs, recolorations reste à zéro ; le bouc
+	 * émissaire compte une itération de correction par reconstruction.
+	 */
+	public Metriques metriques() {
+		Metriques m = metriques != null ? metriques : new Metriques(this::profondeurs);
+		m.mesurer();
+		return m;
+	}
+
 	// Quelques méthodes utiles
 
 	/**
@@ -161,38 +467,32 @@ public class ABR<E> extends AbstractCollection<E> {
 	 * 
 	 * @param o
 	 *            la clé à chercher
-	 * @return le noeud qui contient la clé ou null si la clé n'est pas trouvée.
+	 * @return le noeud qui contient la clé ou null si la clé n'est pas trouvée
+	 *         (toujours pour null). Une exception du comparateur est
+	 *         propagée.
 	 */
+	@SuppressWarnings("unchecked")
 	private Noeud rechercher(Object o) {
-        cmp = (e1, e2) -> ((Comparable<E>) e1).compareTo(e2);
-        try{
-            if(racine!=null){
-            Noeud actuel = racine;
-            while(actuel!=null){
-                int res = cmp.compare((E) o, actuel.cle);
-                if(res==0){
-                    return actuel;
-                    }
-                if(res<0){
-                    if(actuel.gauche==null){
-                        return null;
-                    }
-                    actuel=actuel.gauche;
-                    }
-                else{
-                    if(actuel.droit==null){
-                        return null;
-                    }
-                    actuel=actuel.droit;
-                }
-                }
-        }
-        }
-        catch(NullPointerException e){
-            return null;
-        }
-		
-		return null;
+		if (o == null)
+			return null;
+		Noeud dernier = null;
+		Noeud actuel = racine;
+		int visites = 0;
+		while (actuel != null) {
+			visites++;
+			dernier = actuel;
+			int res = cmp.compare((E) o, actuel.cle);
+			if (res == 0)
+				break;
+			actuel = res < 0 ? actuel.gauche : actuel.droit;
+		}
+		if (Metriques.ACTIVES) {
+			metriques.recherches.increment();
+			metriques.noeudsVisites.add(visites);
+		}
+		if (equilibrage == Equilibrage.EVASE && dernier != null)
+			evaser(dernier); // même une recherche infructueuse remonte le dernier noeud vu
+		return actuel;
 	}
 
 	/**
@@ -206,13 +506,15 @@ public class ABR<E> extends AbstractCollection<E> {
 	 *         {@link Iterator#remove()}
 	 */
 	private Noeud supprimer(Noeud z) {
-		z = rechercher(z.cle);
 		Noeud y;
 		if (z.gauche == null || z.droit == null)
 			y = z;
 		else
 			y = z.suivant();
 		
+		// si y != z, la clé de y remonte dans z qui devient donc le successeur
+		Noeud suivant = y == z ? z.suivant() : z;
+
 		Noeud x;
 		if (y.gauche != null)
 			x = y.gauche;
@@ -234,21 +536,300 @@ public class ABR<E> extends AbstractCollection<E> {
 		if (y != z) 
 			z.cle = y.cle;
 		
-		return y.suivant();
+		taille--;
+		modifications++;
+		equilibrerApresSuppression(y.pere);
+		return suivant;
 	}
+	// Équilibrage
+
+	/**
+	 * Rétablit l'équilibre après l'accrochage de la feuille z
+	 * 
+	 * @param profondeur
+	 *            le nombre d'arêtes de la racine à z
+	 */
+	private void equilibrerApresAjout(Noeud z, int profondeur) {
+		int iterations = 0;
+		switch (equilibrage) {
+		case AVL:
+			z.poids = 1;
+			iterations = equilibrerAvl(z.pere);
+			break;
+		case ARBRE_TAS:
+			z.poids = ThreadLocalRandom.current().nextInt();
+			while (z.pere != null && z.poids > z.pere.poids) {
+				iterations++;
+				if (z == z.pere.gauche)
+					rotationDroite(z.pere);
+				else
+					rotationGauche(z.pere);
+			}
+			break;
+		case EVASE:
+			iterations = evaser(z);
+			break;
+		case BOUC_EMISSAIRE:
+			tailleMax = Math.max(tailleMax, taille);
+			if (profondeur > hauteurAlpha(taille)) {
+				reconstruire(boucEmissaire(z));
+				iterations = 1;
+			}
+			break;
+		default:
+		}
+		if (Metriques.ACTIVES)
+			metriques.iterationsAjout.add(iterations);
+	}
+
+	/**
+	 * Rétablit l'équilibre après le détachement d'un noeud dont p était le
+	 * père. Les rotations et reconstructions ne changent pas la clé des
+	 * noeuds : le successeur renvoyé par {@link #supprimer} reste valable.
+	 */
+	private void equilibrerApresSuppression(Noeud p) {
+		int iterations = 0;
+		switch (equilibrage) {
+		case AVL:
+			iterations = equilibrerAvl(p);
+			break;
+		case EVASE:
+			if (p != null)
+				iterations = evaser(p);
+			break;
+		case BOUC_EMISSAIRE:
+			if (taille < ALPHA * tailleMax) {
+				if (racine != null)
+					reconstruire(racine);
+				tailleMax = taille;
+				iterations = 1;
+			}
+			break;
+		default:
+			// arbre-tas : le noeud détaché a au plus un fils, qui prend sa
+			// place sans briser l'ordre des priorités
+		}
+		if (Metriques.ACTIVES)
+			metriques.iterationsSuppression.add(iterations);
+	}
+
+	private void rotationGauche(Noeud x) {
+		if (Metriques.ACTIVES)
+			metriques.rotations.increment();
+		Noeud y = x.droit;
+		x.droit = y.gauche;
+		if (y.gauche != null)
+			y.gauche.pere = x;
+		y.pere = x.pere;
+		if (x.pere == null)
+			racine = y;
+		else if (x == x.pere.gauche)
+			x.pere.gauche = y;
+		else
+			x.pere.droit = y;
+		y.gauche = x;
+		x.pere = y;
+		if (equilibrage == Equilibrage.AVL) {
+			majHauteur(x);
+			majHauteur(y);
+		}
+	}
+
+	private void rotationDroite(Noeud x) {
+		if (Metriques.ACTIVES)
+			metriques.rotations.increment();
+		Noeud y = x.gauche;
+		x.gauche = y.droit;
+		if (y.droit != null)
+			y.droit.pere = x;
+		y.pere = x.pere;
+		if (x.pere == null)
+			racine = y;
+		else if (x == x.pere.droit)
+			x.pere.droit = y;
+		else
+			x.pere.gauche = y;
+		y.droit = x;
+		x.pere = y;
+		if (equilibrage == Equilibrage.AVL) {
+			majHauteur(x);
+			majHauteur(y);
+		}
+	}
+
+	private int hauteurAvl(Noeud n) {
+		return n == null ? 0 : n.poids;
+	}
+
+	private void majHauteur(Noeud n) {
+		n.poids = 1 + Math.max(hauteurAvl(n.gauche), hauteurAvl(n.droit));
+	}
+
+	/**
+	 * Remonte de n à la racine en recalculant les hauteurs et en corrigeant
+	 * par une rotation simple ou double chaque noeud déséquilibré
+	 * 
+	 * @return le nombre de noeuds remontés
+	 */
+	private int equilibrerAvl(Noeud n) {
+		int iterations = 0;
+		while (n != null) {
+			iterations++;
+			majHauteur(n);
+			int ecart = hauteurAvl(n.gauche) - hauteurAvl(n.droit);
+			if (ecart > 1) {
+				if (hauteurAvl(n.gauche.gauche) < hauteurAvl(n.gauche.droit))
+					rotationGauche(n.gauche);
+				rotationDroite(n);
+				n = n.pere;
+			} else if (ecart < -1) {
+				if (hauteurAvl(n.droit.droit) < hauteurAvl(n.droit.gauche))
+					rotationDroite(n.droit);
+				rotationGauche(n);
+				n = n.pere;
+			}
+			n = n.pere;
+		}
+		return iterations;
+	}
+
+	/**
+	 * Remonte x à la racine par des rotations deux à deux (zig-zig et
+	 * zig-zag), qui rapprochent aussi de la racine les noeuds du chemin
+	 * 
+	 * @return le nombre de pas
+	 */
+	private int evaser(Noeud x) {
+		int iterations = 0;
+		while (x.pere != null) {
+			iterations++;
+			Noeud p = x.pere;
+			Noeud g = p.pere;
+			boolean gauche = x == p.gauche;
+			if (g == null) {
+				if (gauche)
+					rotationDroite(p);
+				else
+					rotationGauche(p);
+			} else if (gauche == (p == g.gauche)) {
+				if (gauche) {
+					rotationDroite(g);
+					rotationDroite(p);
+				} else {
+					rotationGauche(g);
+					rotationGauche(p);
+				}
+			} else if (gauche) {
+				rotationDroite(p);
+				rotationGauche(g);
+			} else {
+				rotationGauche(p);
+				rotationDroite(g);
+			}
+		}
+		return iterations;
+	}
+
+	/**
+	 * Profondeur maximale tolérée dans un arbre à bouc émissaire de n noeuds
+	 */
+	private static int hauteurAlpha(int n) {
+		return (int) (Math.log(n) / Math.log(1 / ALPHA));
+	}
+
+	/**
+	 * Renvoie le plus proche ancêtre de z trop déséquilibré, c'est-à-dire
+	 * dont un fils porte plus de ALPHA fois la taille de son sous-arbre. Les
+	 * tailles sont recomptées en remontant, le coût étant amorti par la
+	 * reconstruction qui suit.
+	 */
+	private Noeud boucEmissaire(Noeud z) {
+		Noeud enfant = z;
+		int tailleEnfant = 1;
+		for (Noeud x = z.pere; x != null; x = x.pere) {
+			int t = tailleEnfant + 1 + tailleSousArbre(enfant == x.gauche ? x.droit : x.gauche);
+			if (tailleEnfant > ALPHA * t)
+				return x;
+			enfant = x;
+			tailleEnfant = t;
+		}
+		return racine;
+	}
+
+	private int tailleSousArbre(Noeud n) {
+		int t = 0;
+		ArrayDeque<Noeud> pile = new ArrayDeque<>();
+		if (n != null)
+			pile.push(n);
+		while (!pile.isEmpty()) {
+			Noeud x = pile.pop();
+			t++;
+			if (x.gauche != null)
+				pile.push(x.gauche);
+			if (x.droit != null)
+				pile.push(x.droit);
+		}
+		return t;
+	}
+
+	/**
+	 * Reconstruit parfaitement équilibré le sous-arbre x, en réutilisant ses
+	 * noeuds dans le même ordre infixe
+	 */
+	private void reconstruire(Noeud x) {
+		Noeud pere = x.pere;
+		boolean gauche = pere != null && x == pere.gauche;
+		ArrayList<Noeud> noeuds = new ArrayList<>();
+		ArrayDeque<Noeud> pile = new ArrayDeque<>();
+		for (Noeud n = x; n != null || !pile.isEmpty();) {
+			if (n != null) {
+				pile.push(n);
+				n = n.gauche;
+			} else {
+				n = pile.pop();
+				noeuds.add(n);
+				n = n.droit;
+			}
+		}
+		Noeud r = relier(noeuds, 0, noeuds.size() - 1, pere);
+		if (pere == null)
+			racine = r;
+		else if (gauche)
+			pere.gauche = r;
+		else
+			pere.droit = r;
+	}
+
+	private Noeud relier(ArrayList<Noeud> noeuds, int debut, int fin, Noeud pere) {
+		if (debut > fin)
+			return null;
+		int milieu = (debut + fin) >>> 1;
+		Noeud n = noeuds.get(milieu);
+		n.pere = pere;
+		n.gauche = relier(noeuds, debut, milieu - 1, n);
+		n.droit = relier(noeuds, milieu + 1, fin, n);
+		return n;
+	}
+
 	/**
 	 * Les itérateurs doivent parcourir les éléments dans l'ordre ! Ceci peut se
 	 * faire facilement en utilisant {@link Noeud#minimum()} et
 	 * {@link Noeud#suivant()}
 	 */
 	private class ABRIterator implements Iterator<E> {
+		/** prochain noeud à renvoyer, null en fin de parcours */
 		Noeud courant = racine==null?null:racine.minimum();
 		Noeud preview = null;
+		/** valeur de modifications attendue, pour détecter les modifications concurrentes */
+		int attendu = modifications;
+
 		public boolean hasNext() {
-			return(courant.suivant()!=null && taille != 0);
+			return courant != null;
 		}
 
 		public E next() {
+			if (modifications != attendu)
+				throw new ConcurrentModificationException();
 			if(courant == null){
 				throw new NoSuchElementException();
 			}
@@ -263,9 +844,139 @@ public class ABR<E> extends AbstractCollection<E> {
 			if(preview == null){
 				throw new IllegalStateException();
 			}
+			if (modifications != attendu)
+				throw new ConcurrentModificationException();
+			// si preview a deux fils, la clé de son successeur remonte dans
+			// preview, qui devient le prochain noeud à renvoyer
 			courant=supprimer(preview);
 			preview=null;
+			attendu = modifications;
+		}
+
+		/**
+		 * Parcours infixe sans passer par hasNext/next : on descend au
+		 * minimum des sous-arbres droits et on remonte tant qu'on vient de
+		 * la droite, soit O(1) amorti par élément.
+		 */
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			if (action == null)
+				throw new NullPointerException();
+			Noeud n = courant;
+			courant = null;
+			while (n != null) {
+				action.accept(n.cle);
+				if (modifications != attendu)
+					throw new ConcurrentModificationException();
+				preview = n;
+				if (n.droit != null) {
+					n = n.droit;
+					while (n.gauche != null)
+						n = n.gauche;
+				} else {
+					Noeud p = n.pere;
+					while (p != null && n == p.droit) {
+						n = p;
+						p = p.pere;
+					}
+					n = p;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Découpe l'arbre le long des sous-arbres, comme TreeMap : la première
+	 * découpe coupe à la racine, les suivantes au fils droit du premier noeud
+	 * restant (ou au fils gauche de la borne). Seul l'arbre complet connaît sa
+	 * taille exacte ; après découpe la taille est estimée en la divisant par
+	 * deux. Un ABR déséquilibré se découpe mal, mais jamais plus mal que
+	 * l'itérateur.
+	 */
+	private class ABRSpliterator implements Spliterator<E> {
+		/** premier noeud restant à parcourir */
+		private Noeud courant;
+		/** premier noeud au-delà de la tranche (null pour la fin de l'arbre) */
+		private final Noeud borne;
+		/** taille (estimée après découpe), -1 tant que courant n'est pas placé */
+		private int estimation;
+		/** 0 : arbre complet ; 1 : tranche droite ; -1 : tranche gauche */
+		private int cote;
+
+		ABRSpliterator(Noeud courant, Noeud borne, int estimation, int cote) {
+			this.courant = courant;
+			this.borne = borne;
+			this.estimation = estimation;
+			this.cote = cote;
+		}
+
+		private int estimer() {
+			if (estimation < 0) {
+				estimation = taille;
+				courant = racine == null ? null : racine.minimum();
+			}
+			return estimation;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			estimer();
+			Noeud e = courant;
+			Noeud s = e == null || e == borne ? null
+					: cote == 0 ? racine
+					: cote > 0 ? e.droit
+					: borne != null ? borne.gauche
+					: null;
+			if (s != null && s != e && s != borne && cmp.compare(e.cle, s.cle) < 0) {
+				cote = 1;
+				courant = s;
+				return new ABRSpliterator(e, s, estimation >>>= 1, -1);
+			}
+			return null;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if (action == null) {
+				throw new NullPointerException();
+			}
+			estimer();
+			Noeud e = courant;
+			if (e == null || e == borne) {
+				return false;
+			}
+			courant = e.suivant();
+			action.accept(e.cle);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			if (action == null) {
+				throw new NullPointerException();
+			}
+			estimer();
+			Noeud e = courant;
+			courant = borne;
+			for (; e != null && e != borne; e = e.suivant()) {
+				action.accept(e.cle);
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return estimer();
+		}
+
+		@Override
+		public int characteristics() {
+			// les doublons sont permis : pas de DISTINCT
+			return (cote == 0 ? Spliterator.SIZED : 0) | Spliterator.SORTED | Spliterator.ORDERED;
+		}
 
+		@Override
+		public Comparator<? super E> getComparator() {
+			return comparator();
 		}
 	}
 
@@ -325,8 +1036,7 @@ public class ABR<E> extends AbstractCollection<E> {
         ABR<Integer> abr = new ABR<>(collection);
 
         //System.out.println(abr.toString());
-        ABR<Integer>.Noeud test = abr.new Noeud(3);
-    	 abr.supprimer(test);
+    	 abr.remove(3);
        System.out.println(abr.toString());
 		Iterator<Integer> iterator = abr.new ABRIterator();
 
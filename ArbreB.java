@@ -0,0 +1,783 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Ensemble trié implanté par un arbre B+. Chaque page contient un tableau
+ * trié de clés : une recherche ne visite que quelques pages (une par niveau,
+ * et il y a rarement plus de quatre ou cinq niveaux) au lieu d'un noeud par
+ * niveau d'un arbre binaire, et les comparaisons dans une page se font sur
+ * des références contiguës en mémoire.
+ * </p>
+ *
+ * <p>
+ * Toutes les clés sont dans les feuilles, chaînées de gauche à droite : un
+ * parcours dans l'ordre lit les tableaux des feuilles les uns après les
+ * autres. Les pages internes ne contiennent que des séparateurs : les clés du
+ * fils i sont strictement inférieures à la clé i, celles du fils i + 1 lui
+ * sont supérieures ou égales.
+ * </p>
+ *
+ * <p>
+ * Comme pour {@link ArbreRougeNoir}, les éléments sont ordonnés selon l'ordre
+ * naturel ou par un Comparator fourni à la création, et un élément égal à un
+ * élément déjà présent n'est pas ajouté.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ */
+public class ArbreB<E> extends AbstractSet<E> {
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+    /**
+     * Nombre de clés par page par défaut : 64 références compressées occupent
+     * quatre lignes de cache de 64 octets.
+     */
+    public static final int CAPACITE_DEFAUT = 64;
+    /** hauteur maximale d'un arbre de 2^31 clés à pages de capacité 4, avec de la marge */
+    private static final int HAUTEUR_MAX = 32;
+
+    private final Comparator<? super E> cmp;
+    /** nombre maximal de clés d'une page */
+    private final int capacite;
+    /** nombre minimal de clés d'une page autre que la racine */
+    private final int minimum;
+    private Page racine;
+    /** nombre de niveaux de pages, 1 quand la racine est une feuille */
+    private int niveaux;
+    private int taille;
+    private int modifications;
+
+    /** chemin de la racine à la feuille traitée, et indice du fils pris à chaque niveau */
+    private final Interne[] chemin = new Interne[HAUTEUR_MAX];
+    private final int[] indices = new int[HAUTEUR_MAX];
+    /** tableaux de travail pour couper une page interne pleine */
+    private final Object[] tamponCles;
+    private final Page[] tamponFils;
+
+    abstract static class Page {
+        final Object[] cles;
+        int n;
+
+        Page(int capacite) {
+            cles = new Object[capacite];
+        }
+    }
+
+    static final class Feuille extends Page {
+        Feuille suivante;
+
+        Feuille(int capacite) {
+            super(capacite);
+        }
+    }
+
+    static final class Interne extends Page {
+        /** n + 1 fils */
+        final Page[] fils;
+
+        Interne(int capacite) {
+            super(capacite);
+            fils = new Page[capacite + 1];
+        }
+    }
+
+    // Constructeurs
+
+    /**
+     * Crée un arbre vide. Les éléments sont ordonnés selon l'ordre naturel
+     */
+    public ArbreB() {
+        this(null, CAPACITE_DEFAUT);
+    }
+
+    /**
+     * Crée un arbre vide. Les éléments sont comparés selon l'ordre imposé par
+     * le comparateur
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     */
+    public ArbreB(Comparator<? super E> cmp) {
+        this(cmp, CAPACITE_DEFAUT);
+    }
+
+    /**
+     * Crée un arbre vide dont les pages contiennent au plus capacite clés
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     * @param capacite
+     *            le nombre maximal de clés par page
+     * @throws IllegalArgumentException
+     *             si capacite est inférieure à 4
+     */
+    public ArbreB(Comparator<? super E> cmp, int capacite) {
+        if (capacite < 4) {
+            throw new IllegalArgumentException("capacité " + capacite + " < 4");
+        }
+        this.cmp = cmp == null ? ORDRE_NATUREL : cmp;
+        this.capacite = capacite;
+        minimum = capacite / 2;
+        tamponCles = new Object[capacite + 1];
+        tamponFils = new Page[capacite + 2];
+        racine = new Feuille(capacite);
+        niveaux = 1;
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel. L'arbre est construit
+     * en O(n) (plus le tri si besoin), avec des feuilles pleines
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreB(Collection<? extends E> c) {
+        this(null, CAPACITE_DEFAUT);
+        charger(c);
+    }
+
+    /**
+     * Constructeur par recopie d'un ensemble trié : l'arbre reprend son
+     * comparateur et est construit en temps linéaire.
+     *
+     * @param s
+     *            l'ensemble à copier
+     */
+    public ArbreB(SortedSet<E> s) {
+        this(s.comparator(), CAPACITE_DEFAUT);
+        charger(s);
+    }
+
+    // Construction en bloc
+
+    /**
+     * Remplit l'arbre vide avec les éléments de c, triés et dédoublonnés au
+     * besoin. Les clés sont réparties également entre le minimum de feuilles,
+     * puis chaque niveau de pages internes est construit sur le précédent.
+     */
+    @SuppressWarnings("unchecked")
+    private void charger(Collection<? extends E> c) {
+        Object[] tri = c.toArray();
+        int n = tri.length;
+        if (!(c instanceof SortedSet && memeOrdre(((SortedSet<?>) c).comparator()))) {
+            boolean trie = true;
+            for (int i = 1; i < n && trie; i++) {
+                trie = cmp.compare((E) tri[i - 1], (E) tri[i]) <= 0;
+            }
+            if (!trie) {
+                Arrays.sort(tri, (Comparator<Object>) cmp);
+            }
+            n = dedoublonner(tri);
+        }
+        if (n == 0) {
+            return;
+        }
+        if (n == 1) {
+            cmp.compare((E) tri[0], (E) tri[0]); // vérification du type et de null
+        }
+        int nb = (n + capacite - 1) / capacite;
+        Page[] niveau = new Page[nb];
+        Object[] minima = new Object[nb];
+        Feuille precedente = null;
+        for (int g = 0, debut = 0; g < nb; g++) {
+            Feuille f = new Feuille(capacite);
+            f.n = n / nb + (g < n % nb ? 1 : 0);
+            System.arraycopy(tri, debut, f.cles, 0, f.n);
+            minima[g] = tri[debut];
+            debut += f.n;
+            if (precedente != null) {
+                precedente.suivante = f;
+            }
+            precedente = f;
+            niveau[g] = f;
+        }
+        int hauteur = 1;
+        // chaque groupe est lu avant que son parent ne prenne sa place dans niveau
+        while (nb > 1) {
+            int parents = (nb + capacite) / (capacite + 1);
+            for (int g = 0, debut = 0; g < parents; g++) {
+                Interne p = new Interne(capacite);
+                int m = nb / parents + (g < nb % parents ? 1 : 0);
+                System.arraycopy(niveau, debut, p.fils, 0, m);
+                System.arraycopy(minima, debut + 1, p.cles, 0, m - 1);
+                p.n = m - 1;
+                minima[g] = minima[debut];
+                niveau[g] = p;
+                debut += m;
+            }
+            nb = parents;
+            hauteur++;
+        }
+        racine = niveau[0];
+        niveaux = hauteur;
+        taille = n;
+        modifications++;
+    }
+
+    private boolean memeOrdre(Comparator<?> autre) {
+        return autre == null ? cmp == ORDRE_NATUREL : autre.equals(cmp);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int dedoublonner(Object[] tri) {
+        if (tri.length == 0) {
+            return 0;
+        }
+        int n = 1;
+        for (int i = 1; i < tri.length; i++) {
+            if (cmp.compare((E) tri[n - 1], (E) tri[i]) != 0) {
+                tri[n++] = tri[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Dans un arbre vide, les éléments sont chargés en bloc (cf
+     * {@link #ArbreB(Collection)}) au lieu d'être ajoutés un par un.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (taille == 0 && !c.isEmpty()) {
+            charger(c);
+            return taille != 0;
+        }
+        return super.addAll(c);
+    }
+
+    // Recherche dans une page
+
+    /**
+     * Recherche dichotomique de e parmi les clés de p
+     *
+     * @return l'indice de e s'il est présent, sinon -(i + 1) où i est
+     *         l'indice où il faudrait l'insérer
+     */
+    @SuppressWarnings("unchecked")
+    private int chercher(Page p, E e) {
+        Object[] cles = p.cles;
+        int bas = 0;
+        int haut = p.n - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            int c = cmp.compare((E) cles[milieu], e);
+            if (c < 0) {
+                bas = milieu + 1;
+            } else if (c > 0) {
+                haut = milieu - 1;
+            } else {
+                return milieu;
+            }
+        }
+        return -(bas + 1);
+    }
+
+    /**
+     * Renvoie l'indice du fils de p dont le sous-arbre contiendrait e
+     */
+    private int fils(Interne p, E e) {
+        int i = chercher(p, e);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Descend jusqu'à la feuille qui contiendrait e en notant le chemin dans
+     * chemin et indices
+     *
+     * @return le nombre de pages internes traversées
+     */
+    private int descendre(E e) {
+        Page p = racine;
+        int h = 0;
+        while (p instanceof Interne) {
+            Interne i = (Interne) p;
+            int k = fils(i, e);
+            chemin[h] = i;
+            indices[h++] = k;
+            p = i.fils[k];
+        }
+        return h;
+    }
+
+    private Feuille feuille(E e) {
+        Page p = racine;
+        while (p instanceof Interne) {
+            Interne i = (Interne) p;
+            p = i.fils[fils(i, e)];
+        }
+        return (Feuille) p;
+    }
+
+    // Modifications
+
+    @Override
+    public boolean add(E e) {
+        int h = descendre(e);
+        Feuille f = (Feuille) (h == 0 ? racine : chemin[h - 1].fils[indices[h - 1]]);
+        int k = chercher(f, e);
+        if (k >= 0) {
+            Arrays.fill(chemin, 0, h, null);
+            return false;
+        }
+        if (taille == 0) {
+            cmp.compare(e, e); // vérification du type
+        }
+        k = -k - 1;
+        taille++;
+        modifications++;
+        if (f.n < capacite) {
+            System.arraycopy(f.cles, k, f.cles, k + 1, f.n - k);
+            f.cles[k] = e;
+            f.n++;
+            Arrays.fill(chemin, 0, h, null);
+            return true;
+        }
+        Page nouvelle = couper(f, k, e);
+        Object separateur = nouvelle.cles[0];
+        while (nouvelle != null && h > 0) {
+            Interne p = chemin[--h];
+            chemin[h] = null;
+            int j = indices[h];
+            if (p.n < capacite) {
+                System.arraycopy(p.cles, j, p.cles, j + 1, p.n - j);
+                System.arraycopy(p.fils, j + 1, p.fils, j + 2, p.n - j);
+                p.cles[j] = separateur;
+                p.fils[j + 1] = nouvelle;
+                p.n++;
+                nouvelle = null;
+            } else {
+                // les capacite + 1 clés sont réparties entre p, le séparateur
+                // qui remonte et la nouvelle page
+                Object[] cles = tamponCles;
+                Page[] fils = tamponFils;
+                System.arraycopy(p.cles, 0, cles, 0, j);
+                cles[j] = separateur;
+                System.arraycopy(p.cles, j, cles, j + 1, capacite - j);
+                System.arraycopy(p.fils, 0, fils, 0, j + 1);
+                fils[j + 1] = nouvelle;
+                System.arraycopy(p.fils, j + 1, fils, j + 2, capacite - j);
+                Interne d = new Interne(capacite);
+                int g = capacite / 2;
+                d.n = capacite - g;
+                System.arraycopy(cles, 0, p.cles, 0, g);
+                System.arraycopy(fils, 0, p.fils, 0, g + 1);
+                System.arraycopy(cles, g + 1, d.cles, 0, d.n);
+                System.arraycopy(fils, g + 1, d.fils, 0, d.n + 1);
+                Arrays.fill(p.cles, g, capacite, null);
+                Arrays.fill(p.fils, g + 1, capacite + 1, null);
+                p.n = g;
+                separateur = cles[g];
+                nouvelle = d;
+                Arrays.fill(cles, null);
+                Arrays.fill(fils, null);
+            }
+        }
+        Arrays.fill(chemin, 0, h, null);
+        if (nouvelle != null) {
+            Interne r = new Interne(capacite);
+            r.cles[0] = separateur;
+            r.fils[0] = racine;
+            r.fils[1] = nouvelle;
+            r.n = 1;
+            racine = r;
+            niveaux++;
+        }
+        return true;
+    }
+
+    /**
+     * Coupe la feuille pleine f en y insérant e à l'indice k : f garde la
+     * première moitié des capacite + 1 clés
+     *
+     * @return la nouvelle feuille, chaînée après f
+     */
+    private Feuille couper(Feuille f, int k, E e) {
+        Feuille d = new Feuille(capacite);
+        Object[] cles = f.cles;
+        int g = (capacite + 1) / 2;
+        if (k < g) {
+            System.arraycopy(cles, g - 1, d.cles, 0, capacite - g + 1);
+            System.arraycopy(cles, k, cles, k + 1, g - 1 - k);
+            cles[k] = e;
+        } else {
+            int r = k - g;
+            System.arraycopy(cles, g, d.cles, 0, r);
+            d.cles[r] = e;
+            System.arraycopy(cles, k, d.cles, r + 1, capacite - k);
+        }
+        Arrays.fill(cles, g, capacite, null);
+        f.n = g;
+        d.n = capacite + 1 - g;
+        d.suivante = f.suivante;
+        f.suivante = d;
+        return d;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        E e = (E) o;
+        int h = descendre(e);
+        Feuille f = (Feuille) (h == 0 ? racine : chemin[h - 1].fils[indices[h - 1]]);
+        int k = chercher(f, e);
+        if (k < 0) {
+            Arrays.fill(chemin, 0, h, null);
+            return false;
+        }
+        System.arraycopy(f.cles, k + 1, f.cles, k, f.n - k - 1);
+        f.cles[--f.n] = null;
+        taille--;
+        modifications++;
+        Page p = f;
+        while (h > 0 && p.n < minimum) {
+            Interne parent = chemin[--h];
+            reequilibrer(parent, indices[h]);
+            p = parent;
+        }
+        Arrays.fill(chemin, 0, h, null);
+        if (niveaux > 1 && racine.n == 0) {
+            racine = ((Interne) racine).fils[0];
+            niveaux--;
+        }
+        return true;
+    }
+
+    /**
+     * Ramène le fils j de parent, passé sous le minimum, au-dessus : par une
+     * clé empruntée à un frère qui en a assez, sinon en le fusionnant avec un
+     * frère
+     */
+    private void reequilibrer(Interne parent, int j) {
+        if (j > 0 && parent.fils[j - 1].n > minimum) {
+            emprunterGauche(parent, j);
+        } else if (j < parent.n && parent.fils[j + 1].n > minimum) {
+            emprunterDroite(parent, j);
+        } else if (j > 0) {
+            fusionner(parent, j - 1);
+        } else {
+            fusionner(parent, j);
+        }
+    }
+
+    private static void emprunterGauche(Interne parent, int j) {
+        Page g = parent.fils[j - 1];
+        Page c = parent.fils[j];
+        System.arraycopy(c.cles, 0, c.cles, 1, c.n);
+        if (c instanceof Feuille) {
+            c.cles[0] = g.cles[g.n - 1];
+            parent.cles[j - 1] = c.cles[0];
+        } else {
+            Interne ig = (Interne) g;
+            Interne ic = (Interne) c;
+            System.arraycopy(ic.fils, 0, ic.fils, 1, c.n + 1);
+            c.cles[0] = parent.cles[j - 1];
+            ic.fils[0] = ig.fils[g.n];
+            ig.fils[g.n] = null;
+            parent.cles[j - 1] = g.cles[g.n - 1];
+        }
+        g.cles[--g.n] = null;
+        c.n++;
+    }
+
+    private static void emprunterDroite(Interne parent, int j) {
+        Page c = parent.fils[j];
+        Page d = parent.fils[j + 1];
+        if (c instanceof Feuille) {
+            c.cles[c.n] = d.cles[0];
+            System.arraycopy(d.cles, 1, d.cles, 0, d.n - 1);
+            parent.cles[j] = d.cles[0];
+        } else {
+            Interne ic = (Interne) c;
+            Interne id = (Interne) d;
+            c.cles[c.n] = parent.cles[j];
+            ic.fils[c.n + 1] = id.fils[0];
+            parent.cles[j] = d.cles[0];
+            System.arraycopy(d.cles, 1, d.cles, 0, d.n - 1);
+            System.arraycopy(id.fils, 1, id.fils, 0, d.n);
+            id.fils[d.n] = null;
+        }
+        d.cles[--d.n] = null;
+        c.n++;
+    }
+
+    /**
+     * Verse le fils i + 1 de parent dans le fils i, puis retire de parent le
+     * séparateur i et le fils i + 1
+     */
+    private static void fusionner(Interne parent, int i) {
+        Page g = parent.fils[i];
+        Page d = parent.fils[i + 1];
+        if (g instanceof Feuille) {
+            System.arraycopy(d.cles, 0, g.cles, g.n, d.n);
+            g.n += d.n;
+            ((Feuille) g).suivante = ((Feuille) d).suivante;
+        } else {
+            g.cles[g.n] = parent.cles[i];
+            System.arraycopy(d.cles, 0, g.cles, g.n + 1, d.n);
+            System.arraycopy(((Interne) d).fils, 0, ((Interne) g).fils, g.n + 1, d.n + 1);
+            g.n += d.n + 1;
+        }
+        System.arraycopy(parent.cles, i + 1, parent.cles, i, parent.n - i - 1);
+        System.arraycopy(parent.fils, i + 2, parent.fils, i + 1, parent.n - i - 1);
+        parent.cles[parent.n - 1] = null;
+        parent.fils[parent.n] = null;
+        parent.n--;
+    }
+
+    @Override
+    public void clear() {
+        racine = new Feuille(capacite);
+        niveaux = 1;
+        taille = 0;
+        modifications++;
+    }
+
+    public E pollFirst() {
+        if (taille == 0) {
+            return null;
+        }
+        E e = first();
+        remove(e);
+        return e;
+    }
+
+    public E pollLast() {
+        if (taille == 0) {
+            return null;
+        }
+        E e = last();
+        remove(e);
+        return e;
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    public Comparator<? super E> comparator() {
+        return cmp == ORDRE_NATUREL ? null : cmp;
+    }
+
+    /**
+     * Renvoie le nombre maximal de clés par page
+     */
+    public int capacite() {
+        return capacite;
+    }
+
+    /**
+     * Renvoie le nombre de niveaux de pages, c'est-à-dire le nombre de pages
+     * lues par une recherche (1 pour un arbre vide)
+     */
+    public int hauteur() {
+        return niveaux;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        E e = (E) o;
+        return chercher(feuille(e), e) >= 0;
+    }
+
+    private Feuille premiere() {
+        Page p = racine;
+        while (p instanceof Interne) {
+            p = ((Interne) p).fils[0];
+        }
+        return (Feuille) p;
+    }
+
+    private static Feuille derniere(Page p) {
+        while (p instanceof Interne) {
+            p = ((Interne) p).fils[p.n];
+        }
+        return (Feuille) p;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    @SuppressWarnings("unchecked")
+    public E first() {
+        if (taille == 0) {
+            throw new NoSuchElementException();
+        }
+        return (E) premiere().cles[0];
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    @SuppressWarnings("unchecked")
+    public E last() {
+        if (taille == 0) {
+            throw new NoSuchElementException();
+        }
+        Feuille f = derniere(racine);
+        return (E) f.cles[f.n - 1];
+    }
+
+    public E ceiling(E e) {
+        return apres(e, true);
+    }
+
+    public E higher(E e) {
+        return apres(e, false);
+    }
+
+    public E floor(E e) {
+        return avant(e, true);
+    }
+
+    public E lower(E e) {
+        return avant(e, false);
+    }
+
+    /**
+     * Renvoie la plus petite clé supérieure à e (ou égale si inclusif) : elle
+     * est dans la feuille de e ou au début de la suivante
+     */
+    @SuppressWarnings("unchecked")
+    private E apres(E e, boolean inclusif) {
+        Feuille f = feuille(e);
+        int k = chercher(f, e);
+        int i = k >= 0 ? (inclusif ? k : k + 1) : -k - 1;
+        if (i < f.n) {
+            return (E) f.cles[i];
+        }
+        return f.suivante == null ? null : (E) f.suivante.cles[0];
+    }
+
+    /**
+     * Renvoie la plus grande clé inférieure à e (ou égale si inclusif). Les
+     * feuilles n'étant chaînées que vers la droite, la descente retient le
+     * dernier sous-arbre laissé à gauche, dont le maximum est la réponse si
+     * la feuille de e n'en a pas.
+     */
+    @SuppressWarnings("unchecked")
+    private E avant(E e, boolean inclusif) {
+        Page p = racine;
+        Page gauche = null;
+        while (p instanceof Interne) {
+            Interne i = (Interne) p;
+            int k = fils(i, e);
+            if (k > 0) {
+                gauche = i.fils[k - 1];
+            }
+            p = i.fils[k];
+        }
+        int k = chercher(p, e);
+        int i = k >= 0 ? (inclusif ? k : k - 1) : -k - 2;
+        if (i >= 0) {
+            return (E) p.cles[i];
+        }
+        if (gauche == null) {
+            return null;
+        }
+        Feuille f = derniere(gauche);
+        return (E) f.cles[f.n - 1];
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur();
+    }
+
+    /**
+     * Parcours des feuilles chaînées. Après un remove(), les pages ont pu
+     * être fusionnées : l'itérateur retrouve la clé suivante depuis la racine.
+     */
+    private final class Iterateur implements Iterator<E> {
+        private Feuille feuille;
+        private int i;
+        private E dernier;
+        private int attendu = modifications;
+
+        Iterateur() {
+            feuille = taille == 0 ? null : premiere();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return feuille != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            if (feuille == null) {
+                throw new NoSuchElementException();
+            }
+            dernier = (E) feuille.cles[i++];
+            if (i == feuille.n) {
+                feuille = feuille.suivante;
+                i = 0;
+            }
+            return dernier;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void remove() {
+            if (dernier == null) {
+                throw new IllegalStateException();
+            }
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            E suivant = feuille == null ? null : (E) feuille.cles[i];
+            ArbreB.this.remove(dernier);
+            attendu = modifications;
+            dernier = null;
+            if (suivant != null) {
+                feuille = feuille(suivant);
+                i = chercher(feuille, suivant);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Feuille f = feuille;
+            int j = i;
+            while (f != null) {
+                Object[] cles = f.cles;
+                for (int n = f.n; j < n; j++) {
+                    action.accept((E) cles[j]);
+                }
+                if (modifications != attendu) {
+                    throw new ConcurrentModificationException();
+                }
+                dernier = (E) cles[f.n - 1];
+                f = f.suivante;
+                j = 0;
+            }
+            feuille = null;
+            i = 0;
+        }
+    }
+}
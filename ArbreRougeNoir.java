@@ -1,32 +1,71 @@
-import java.util.AbstractCollection;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * <p>
- * Implantation de l'interface Collection basée sur les arbres binaires de
- *  erche. Les éléments sont ordonnés soit en utilisant l'ordre naturel (cf
- * Comparable) soit avec un Comparator fourni à la création.
+ * Implantation de l'interface NavigableSet basée sur les arbres rouge-noir.
+ * Les éléments sont ordonnés soit en utilisant l'ordre naturel (cf
+ * Comparable) soit avec un Comparator fourni à la création. Comme pour
+ * TreeSet, un élément égal (au sens de l'ordre) à un élément déjà présent
+ * n'est pas ajouté.
  * </p>
  *
  * <p>
- * Certaines méthodes de AbstractCollection doivent être surchargées pour plus
- * d'efficacité.
+ * Les vues {@link #subSet}, {@link #headSet}, {@link #tailSet} et
+ * {@link #descendingSet()} ne recopient rien : elles se positionnent en temps
+ * logarithmique puis suivent les liens des noeuds de l'arbre.
  * </p>
  *
  * @param <E>
  *            le type des clés stockées dans l'arbre
  */
-public class ArbreRougeNoir<E> extends AbstractCollection<E> {
-    private Noeud racine;
+public class ArbreRougeNoir<E> extends AbstractSet<E> implements NavigableSet<E> {
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+    /** nombre de successeurs suivis par containsAll avant de redescendre depuis la racine */
+    private static final int PAS_AVANT_DESCENTE = 8;
+
+    Noeud racine;
     private int taille;
+    /** nombre de modifications de structure, pour les itérateurs */
+    private int modifications;
+    /** le comparateur fourni, ou ORDRE_NATUREL */
+    private Comparator<? super E> ordre;
+    /** le comparateur utilisé, qui compte ses appels si les métriques sont actives */
     private Comparator<? super E> cmp;
-    private final Noeud sentinelle = new Noeud(null);
+    /** null si les métriques sont désactivées */
+    private final Metriques metriques = Metriques.ACTIVES ? new Metriques(this::profondeurs) : null;
+    final Noeud sentinelle = new Noeud(null);
+    /** noeuds détachés prêts à être réutilisés, chaînés par leur champ droit */
+    private Noeud libres;
+    private int nbLibres;
+    /** nombre maximal de noeuds gardés dans libres, 0 sans recyclage */
+    private int capaciteLibres;
+    /** le noeud de la plus grande clé, null s'il est à rechercher */
+    private Noeud maxi;
+    /** nombre de suppressions, qui invalident les curseurs */
+    private int retraits;
+    /** place trouvée par le dernier localiser : le futur père et le côté */
+    private Noeud place;
+    private int cotePlace;
+    private int modificationsPlace;
 
-    private class Noeud {
+    class Noeud {
         E cle;
         Noeud gauche;
         Noeud droit;
@@ -55,6 +94,21 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
             return actuel;
         }
 
+        /**
+         * Renvoie le noeud contenant la clé maximale du sous-arbre enraciné
+         * dans ce noeud
+         *
+         * @return le noeud contenant la clé maximale du sous-arbre enraciné
+         *         dans ce noeud
+         */
+        Noeud maximum() {
+            Noeud actuel = this;
+            while (actuel.droit != sentinelle) {
+                actuel = actuel.droit;
+            }
+            return actuel;
+        }
+
         /**
          * Renvoie le successeur de ce noeud
          *
@@ -81,6 +135,26 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
                 return pereActuel;
             }
         }
+
+        /**
+         * Renvoie le prédécesseur de ce noeud
+         *
+         * @return le noeud contenant la clé qui précède la clé de ce noeud dans
+         *         l'ordre des clés, la sentinelle si c'est le noeud contenant la
+         *         plus petite clé
+         */
+        Noeud precedent() {
+            if (gauche != sentinelle) {
+                return gauche.maximum();
+            }
+            Noeud actuel = this;
+            Noeud pereActuel = pere;
+            while (pereActuel != sentinelle && actuel == pereActuel.gauche) {
+                actuel = pereActuel;
+                pereActuel = pereActuel.pere;
+            }
+            return pereActuel;
+        }
     }
 
     // Consructeurs
@@ -90,6 +164,7 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
      */
     public ArbreRougeNoir() {
         sentinelle.couleur = Couleur.Noir;
+        ordonner(null);
         racine = sentinelle;
         this.taille = 0;
     }
@@ -103,35 +178,332 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
      */
     public ArbreRougeNoir(Comparator<? super E> cmp) {
         sentinelle.couleur = Couleur.Noir;
-        this.cmp = cmp;
+        ordonner(cmp);
         racine = sentinelle;
         this.taille = 0;
     }
-    
+
+    /**
+     * Constructeur par recopie. Crée un arbre qui contient les mêmes éléments
+     * que c. L'ordre des éléments est l'ordre naturel. Si c est déjà triée
+     * l'arbre est construit en temps linéaire, sinon c est triée une fois.
+     *
+     * @param c
+     *            la collection à copier
+     */
     public ArbreRougeNoir(Collection<? extends E> c) {
         sentinelle.couleur=Couleur.Noir;
         racine=sentinelle;
-        cmp = (e1, e2) -> ((Comparable<E>) e1).compareTo(e2);
-        Iterator<? extends E> iterator = c.iterator();
-        while (iterator.hasNext()) {
-            this.add(iterator.next());
+        ordonner(null);
+        charger(c);
+    }
+
+    /**
+     * Constructeur par recopie d'un ensemble trié : l'arbre reprend son
+     * comparateur et est construit en temps linéaire.
+     *
+     * @param s
+     *            l'ensemble à copier
+     */
+    @SuppressWarnings("unchecked")
+    public ArbreRougeNoir(SortedSet<E> s) {
+        sentinelle.couleur = Couleur.Noir;
+        racine = sentinelle;
+        ordonner(s.comparator());
+        charger(s);
+    }
+
+    /**
+     * Fixe l'ordre des clés, l'ordre naturel si c est null
+     */
+    private void ordonner(Comparator<? super E> c) {
+        ordre = c == null ? ORDRE_NATUREL : c;
+        cmp = Metriques.ACTIVES ? metriques.compter(ordre) : ordre;
+    }
+
+    // Augmentation
+
+    /**
+     * Crée le noeud d'une nouvelle clé. Une sous-classe qui augmente les
+     * noeuds (cf {@link ArbreRougeNoirStatistique}) renvoie sa propre
+     * sous-classe de Noeud, en reprenant d'abord un noeud libre (cf
+     * {@link #reprendre}) ; elle ne doit pas être appelée avant la fin de son
+     * constructeur.
+     */
+    Noeud creerNoeud(E cle) {
+        Noeud n = reprendre(cle);
+        return n != null ? n : new Noeud(cle);
+    }
+
+    /**
+     * Reprend pour cle un noeud de la liste des noeuds libres (cf
+     * {@link #recycler}), de la classe qu'avait créée creerNoeud
+     *
+     * @return le noeud, sans fils, ou null si la liste est vide
+     */
+    Noeud reprendre(E cle) {
+        Noeud n = libres;
+        if (n == null) {
+            return null;
+        }
+        libres = n.droit;
+        nbLibres--;
+        n.cle = cle;
+        n.gauche = sentinelle;
+        n.droit = sentinelle;
+        return n;
+    }
+
+    /**
+     * Rend au recyclage un noeud détaché de l'arbre, si la liste des noeuds
+     * libres n'est pas pleine. La clé et les liens sont effacés pour ne rien
+     * retenir.
+     */
+    private void liberer(Noeud n) {
+        if (nbLibres >= capaciteLibres) {
+            return;
+        }
+        n.cle = null;
+        n.gauche = null;
+        n.pere = null;
+        n.couleur = null;
+        n.droit = libres;
+        libres = n;
+        nbLibres++;
+    }
+
+    /**
+     * Active le recyclage des noeuds : les noeuds détachés par les
+     * suppressions (jusqu'à capacite d'entre eux) sont réutilisés par les
+     * ajouts suivants au lieu d'être laissés au ramasse-miettes. Pour un
+     * ensemble de taille à peu près constante (ajouts et suppressions
+     * alternés), les ajouts n'allouent alors plus rien. Une capacité nulle
+     * désactive le recyclage et libère les noeuds en réserve.
+     *
+     * @param capacite
+     *            le nombre maximal de noeuds gardés en réserve
+     */
+    public void recycler(int capacite) {
+        if (capacite < 0) {
+            throw new IllegalArgumentException("capacité négative : " + capacite);
+        }
+        capaciteLibres = capacite;
+        while (nbLibres > capacite) {
+            libres = libres.droit;
+            nbLibres--;
+        }
+    }
+
+    /**
+     * Recalcule les informations que n tire de ses fils. Appelée après chaque
+     * rotation (pour le noeud descendu puis pour celui qui monte) et lors de
+     * la construction en bloc ; ne fait rien ici.
+     */
+    void mettreAJour(Noeud n) {
+    }
+
+    /**
+     * Recalcule les informations de n et de ses ancêtres, après l'accrochage
+     * d'un noeud ou le détachement d'un autre et avant le rééquilibrage ; ne
+     * fait rien ici.
+     */
+    void remonter(Noeud n) {
+    }
+
+    /**
+     * Recopie dans vers ce que de porte avec sa clé (hors informations tirées
+     * des fils), quand une suppression fait remonter la clé de de dans vers ;
+     * ne fait rien ici.
+     */
+    void deplacer(Noeud de, Noeud vers) {
+    }
+
+    // Construction en bloc
+
+    /**
+     * Remplit l'arbre vide avec les éléments de c. Les éléments sont triés
+     * s'ils ne le sont pas déjà (un ensemble trié selon le même ordre n'est
+     * même pas vérifié), les doublons sont retirés, puis l'arbre est construit
+     * parfaitement équilibré en O(n), sans rotation.
+     */
+    @SuppressWarnings("unchecked")
+    private void charger(Collection<? extends E> c) {
+        Object[] tri = c.toArray();
+        int n = tri.length;
+        if (!(c instanceof SortedSet && memeOrdre(((SortedSet<?>) c).comparator()))) {
+            boolean trie = true;
+            for (int i = 1; i < n && trie; i++) {
+                trie = cmp.compare((E) tri[i - 1], (E) tri[i]) <= 0;
+            }
+            if (!trie) {
+                Arrays.sort(tri, (Comparator<Object>) cmp);
+            }
+            n = dedoublonner(tri);
+        }
+        if (n == 1) {
+            cmp.compare((E) tri[0], (E) tri[0]); // vérification du type et de null
+        }
+        chargerTrie(tri, n);
+    }
+
+    /**
+     * Remplit l'arbre vide avec les n premières clés de tri, qui sont
+     * strictement croissantes
+     */
+    void chargerTrie(Object[] tri, int n) {
+        racine = construire(tri, 0, n - 1, 0, niveauRouge(n), sentinelle);
+        taille = n;
+        modifications++;
+        maxi = null;
+        retraits++;
+    }
+
+    private boolean memeOrdre(Comparator<?> autre) {
+        return autre == null ? ordre == ORDRE_NATUREL : autre.equals(ordre);
+    }
+
+    /**
+     * Tasse en tête du tableau trié une occurrence de chaque clé
+     *
+     * @return le nombre de clés distinctes
+     */
+    @SuppressWarnings("unchecked")
+    private int dedoublonner(Object[] tri) {
+        if (tri.length == 0) {
+            return 0;
+        }
+        int n = 1;
+        for (int i = 1; i < tri.length; i++) {
+            if (cmp.compare((E) tri[n - 1], (E) tri[i]) != 0) {
+                tri[n++] = tri[i];
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Renvoie la profondeur des noeuds rouges d'un arbre complet à n noeuds :
+     * les niveaux au-dessus sont pleins et noirs, seul le dernier niveau
+     * (incomplet) est rouge, ce qui équilibre les hauteurs noires.
+     */
+    private static int niveauRouge(int n) {
+        int niveau = 0;
+        for (int m = n - 1; m >= 0; m = m / 2 - 1) {
+            niveau++;
+        }
+        return niveau;
+    }
+
+    /**
+     * Construit le sous-arbre équilibré des clés tri[debut..fin]
+     *
+     * @return la racine du sous-arbre, la sentinelle s'il est vide
+     */
+    @SuppressWarnings("unchecked")
+    private Noeud construire(Object[] tri, int debut, int fin, int profondeur, int niveauRouge, Noeud pere) {
+        if (debut > fin) {
+            return sentinelle;
         }
+        int milieu = (debut + fin) >>> 1;
+        Noeud n = creerNoeud((E) tri[milieu]);
+        n.pere = pere;
+        n.couleur = profondeur == niveauRouge ? Couleur.Rouge : Couleur.Noir;
+        n.gauche = construire(tri, debut, milieu - 1, profondeur + 1, niveauRouge, n);
+        n.droit = construire(tri, milieu + 1, fin, profondeur + 1, niveauRouge, n);
+        mettreAJour(n);
+        return n;
     }
 
+    /**
+     * Dans un arbre vide, les éléments sont chargés en bloc (cf
+     * {@link #ArbreRougeNoir(Collection)}) au lieu d'être ajoutés un par un.
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (taille == 0 && !c.isEmpty()) {
+            charger(c);
+            return true;
+        }
+        return super.addAll(c);
+    }
+
+    /**
+     * Insère le noeud z à sa place puis rétablit les propriétés rouge-noir.
+     *
+     * @param z
+     *            le noeud à insérer
+     * @return false si l'arbre contient déjà une clé égale à celle de z (z
+     *         n'est alors pas inséré), true sinon
+     */
     public boolean ajout(Noeud z) {
+        if (localiser(z.cle) != sentinelle) {
+            return false;
+        }
+        accrocherALaPlace(z);
+        return true;
+    }
+
+    /**
+     * Cherche cle et, si elle est absente, retient la place où l'accrocher :
+     * {@link #accrocherALaPlace} l'insère alors sans redescendre, tant que
+     * l'arbre n'a pas été modifié entre-temps
+     *
+     * @return le noeud de cle, ou la sentinelle si elle est absente
+     */
+    Noeud localiser(E cle) {
+        modificationsPlace = modifications;
+        if (apresMaximum(cle)) {
+            place = maxi;
+            cotePlace = 1;
+            return sentinelle;
+        }
         Noeud y = sentinelle;
         Noeud x = racine;
-        
+        int c = 0;
         while (x != sentinelle) {
             y = x;
-            x = cmp.compare(z.cle, x.cle) < 0 ? x.gauche : x.droit;
+            c = cmp.compare(cle, x.cle);
+            if (c == 0) {
+                return x;
+            }
+            x = c < 0 ? x.gauche : x.droit;
         }
-    
+        place = y;
+        cotePlace = c;
+        return sentinelle;
+    }
+
+    /**
+     * Lève ConcurrentModificationException si l'arbre a été modifié depuis le
+     * dernier {@link #localiser} (par une fonction fournie par l'appelant,
+     * typiquement)
+     */
+    void verifierPlace() {
+        if (modifications != modificationsPlace) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Insère z, dont la clé était absente, à la place trouvée par le dernier
+     * {@link #localiser}
+     */
+    void accrocherALaPlace(Noeud z) {
+        verifierPlace();
+        Noeud y = place;
+        place = null;
+        accrocher(z, y, cotePlace);
+    }
+
+    /**
+     * Accroche z sous y, à gauche si c < 0, puis rééquilibre
+     */
+    private void accrocher(Noeud z, Noeud y, int c) {
         z.pere = y;
         if (y == sentinelle) { // Tree is empty
             racine = z;
         } else {
-            if (cmp.compare(z.cle, y.cle) < 0)
+            if (c < 0)
                 y.gauche = z;
             else
                 y.droit = z;
@@ -139,17 +511,242 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
     
         z.gauche = z.droit = sentinelle;
         z.couleur = Couleur.Rouge;
+        if (y == sentinelle || (y == maxi && c > 0)) {
+            maxi = z;
+        }
+        remonter(z);
         ajouterCorrection(z);
 		taille+=1;
-        return true;
+        modifications++;
+    }
+
+    /**
+     * Teste si cle se place après la plus grande clé, en une comparaison :
+     * des clés croissantes (horodatages, numéros de séquence) s'accrochent
+     * ainsi directement sous le maximum, sans descente depuis la racine
+     */
+    private boolean apresMaximum(E cle) {
+        if (maxi == null) {
+            if (racine == sentinelle) {
+                return false;
+            }
+            maxi = racine.maximum();
+        }
+        return cmp.compare(cle, maxi.cle) > 0;
+    }
+
+    /**
+     * Insère les n premières clés de tri, rangées dans l'ordre de l'arbre.
+     * Chaque recherche part du noeud de la clé précédente et ne remonte que
+     * jusqu'au premier ancêtre dont le sous-arbre peut contenir la clé : des
+     * clés proches parcourent des chemins courts, déjà en cache. Les
+     * rotations ne déplacent pas les clés, le noeud de la clé précédente
+     * reste donc un point de départ valable.
+     *
+     * @param ajoutes
+     *            reçoit pour chaque clé true si elle a été insérée ; peut
+     *            être null
+     * @return le nombre de clés insérées
+     * @throws LotInterrompu
+     *             si l'insertion d'une clé échoue (comparateur) : les clés
+     *             qui la précèdent sont appliquées, et ajoutes rempli pour
+     *             elles
+     */
+    @SuppressWarnings("unchecked")
+    int ajouterTrie(Object[] tri, int n, boolean[] ajoutes) {
+        Noeud doigt = sentinelle;
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int avant = taille;
+            try {
+                doigt = inserer(doigt, (E) tri[i]);
+            } catch (RuntimeException e) {
+                throw new LotInterrompu(i, e);
+            }
+            boolean nouveau = taille != avant;
+            if (nouveau) {
+                k++;
+            }
+            if (ajoutes != null) {
+                ajoutes[i] = nouveau;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Échec de {@link #ajouterTrie} : les appliquees premières clés du lot
+     * sont dans l'arbre, la cause vient de la suivante
+     */
+    static final class LotInterrompu extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int appliquees;
+
+        LotInterrompu(int appliquees, RuntimeException cause) {
+            super(cause);
+            this.appliquees = appliquees;
+        }
+    }
+
+    // Recherche par doigt
+
+    /**
+     * Position mémorisée dans l'arbre (cf {@link #addHint} et
+     * {@link #containsHint}) : la recherche suivante part du noeud du curseur
+     * au lieu de la racine. Les insertions ne le déplacent pas ; après une
+     * suppression dans l'arbre, il repart de la racine.
+     */
+    public final class Curseur {
+        private Noeud noeud = sentinelle;
+        private int retraits;
+
+        private Curseur() {
+        }
+
+        private Noeud noeud() {
+            return retraits == ArbreRougeNoir.this.retraits ? noeud : sentinelle;
+        }
+
+        private void placer(Noeud n) {
+            noeud = n;
+            retraits = ArbreRougeNoir.this.retraits;
+        }
+
+        /**
+         * Renvoie la clé sous le curseur, null s'il n'est pas positionné
+         */
+        public E cle() {
+            return noeud().cle;
+        }
+    }
+
+    /**
+     * Renvoie un curseur qui n'est pas encore positionné
+     */
+    public Curseur curseur() {
+        return new Curseur();
+    }
+
+    /**
+     * Renvoie le plus bas ancêtre de f (f compris) dont le sous-arbre couvre
+     * la place de cle. En remontant du côté de cle, chaque père dont on
+     * arrive par l'autre côté borne le sous-arbre atteint jusque-là : on
+     * s'arrête au premier qui est au-delà de cle. La remontée, et donc la
+     * descente qui suit, est courte quand cle est proche de la clé de f.
+     *
+     * @return ce noeud, ou le noeud de cle s'il est rencontré
+     */
+    private Noeud depuis(Noeud f, E cle) {
+        int c = cmp.compare(cle, f.cle);
+        if (c == 0) {
+            return f;
+        }
+        Noeud debut = f;
+        Noeud x = f;
+        while (x != racine) {
+            Noeud p = x.pere;
+            if (c > 0 ? x == p.gauche : x == p.droit) {
+                int d = cmp.compare(cle, p.cle);
+                if (d == 0) {
+                    return p;
+                }
+                if (c > 0 ? d < 0 : d > 0) {
+                    return debut;
+                }
+                debut = p;
+            }
+            x = p;
+        }
+        return debut;
+    }
+
+    /**
+     * Insère cle en cherchant sa place depuis doigt (la racine si c'est la
+     * sentinelle)
+     *
+     * @return le noeud de cle, nouveau ou non
+     */
+    Noeud inserer(Noeud doigt, E cle) {
+        if (apresMaximum(cle)) {
+            Noeud z = creerNoeud(cle);
+            accrocher(z, maxi, 1);
+            return z;
+        }
+        Noeud x = doigt == sentinelle ? racine : depuis(doigt, cle);
+        Noeud y = x == racine ? sentinelle : x.pere;
+        int c = 0;
+        while (x != sentinelle) {
+            y = x;
+            c = cmp.compare(cle, x.cle);
+            if (c == 0) {
+                return x;
+            }
+            x = c < 0 ? x.gauche : x.droit;
+        }
+        Noeud z = creerNoeud(cle);
+        accrocher(z, y, c);
+        return z;
+    }
+
+    /**
+     * Ajoute cle en cherchant sa place à partir du curseur, qui est ensuite
+     * placé sur le noeud de cle. Des ajouts successifs de clés voisines
+     * (ou croissantes) ne remontent et ne redescendent que de quelques
+     * niveaux, au lieu de repartir de la racine.
+     *
+     * @return true si cle a été ajoutée, false si elle était déjà présente
+     */
+    public boolean addHint(Curseur curseur, E cle) {
+        if (cle == null) {
+            throw new NullPointerException();
+        }
+        int avant = taille;
+        curseur.placer(inserer(curseur.noeud(), cle));
+        return taille != avant;
+    }
+
+    /**
+     * Cherche o à partir du curseur, qui est ensuite placé sur le noeud de o
+     * ou, s'il est absent, sur le dernier noeud visité
+     */
+    @SuppressWarnings("unchecked")
+    public boolean containsHint(Curseur curseur, Object o) {
+        if (o == null) {
+            return false;
+        }
+        E cle = (E) o;
+        Noeud f = curseur.noeud();
+        Noeud x = f == sentinelle ? racine : depuis(f, cle);
+        Noeud y = x;
+        int visites = 0;
+        while (x != sentinelle) {
+            visites++;
+            y = x;
+            int c = cmp.compare(cle, x.cle);
+            if (c == 0) {
+                break;
+            }
+            x = c < 0 ? x.gauche : x.droit;
+        }
+        if (Metriques.ACTIVES) {
+            metriques.recherches.increment();
+            metriques.noeudsVisites.add(visites);
+        }
+        if (y != sentinelle) {
+            curseur.placer(y);
+        }
+        return x != sentinelle;
     }
 
     private void ajouterCorrection(Noeud z) {
         while (z.pere.couleur == Couleur.Rouge) {
+            if (Metriques.ACTIVES)
+                metriques.iterationsAjout.increment();
             if (z.pere == z.pere.pere.gauche) {
                 Noeud y = z.pere.pere.droit; // l'oncle de z
                 if (y.couleur == Couleur.Rouge) {
                     // cas 1
+                    recolorer(3);
                     z.pere.couleur = Couleur.Noir;
                     y.couleur = Couleur.Noir;
                     z.pere.pere.couleur = Couleur.Rouge;
@@ -161,6 +758,7 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
                         rotationGauche(z);
                     }
                     // cas 3
+                    recolorer(2);
                     z.pere.couleur = Couleur.Noir;
                     z.pere.pere.couleur = Couleur.Rouge;
                     rotationDroite(z.pere.pere);
@@ -168,6 +766,7 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
             } else {
                 Noeud y=z.pere.pere.gauche;
                 if(y.couleur == Couleur.Rouge){
+                    recolorer(3);
                     z.pere.couleur = Couleur.Noir;
                     y.couleur = Couleur.Noir;
                     z.pere.pere.couleur = Couleur.Rouge;
@@ -178,6 +777,7 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
                         z = z.pere;
                         rotationDroite(z);
                     }
+                    recolorer(2);
                     z.pere.couleur = Couleur.Noir;
                     z.pere.pere.couleur = Couleur.Rouge;
                     rotationGauche(z.pere.pere);
@@ -186,25 +786,48 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
         }
         racine.couleur = Couleur.Noir; // Property (2)
     }
-     public Noeud rechercher(E cle) {
+    /**
+     * Recherche une clé en suivant l'ordre de l'arbre. Cette méthode est
+     * utilisée par {@link #contains(Object)} et {@link #remove(Object)}
+     *
+     * @param o
+     *            la clé à chercher
+     * @return le noeud qui contient la clé ou null si la clé n'est pas trouvée.
+     */
+    @SuppressWarnings("unchecked")
+    Noeud rechercher(Object o) {
+        if (o == null) {
+            return null;
+        }
+        E cle = (E) o;
         Noeud current = racine;
-        while (current != sentinelle && !current.cle.equals(cle)) {
+        int visites = 0;
+        while (current != sentinelle) {
+            visites++;
             int comparisonResult = cmp.compare(cle, current.cle);
-            if (comparisonResult < 0) {
-                current = current.gauche;
-                } else {
-                    current = current.droit;
-                }
+            if (comparisonResult == 0) {
+                break;
             }
-            if (current == sentinelle) {
-                return null; // Node with the given key not found
-            }
-            return current; // Node with the given key found
+            current = comparisonResult < 0 ? current.gauche : current.droit;
+        }
+        if (Metriques.ACTIVES) {
+            metriques.recherches.increment();
+            metriques.noeudsVisites.add(visites);
         }
+        return current == sentinelle ? null : current;
+    }
+
+    /**
+     * Supprime le noeud z de l'arbre.
+     *
+     * @param z
+     *            le noeud à supprimer
+     * @return le noeud contenant la clé qui suit celle de z dans l'ordre des
+     *         clés, la sentinelle si z contenait la plus grande clé
+     */
     public Noeud supprimer(Noeud z) {
         Noeud y;
         Noeud x;
-        z=rechercher(z.cle);
         if (z.gauche == sentinelle || z.droit == sentinelle){
             y = z;
           }else{
@@ -218,6 +841,8 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
             x = y.droit;
           // x est le fils unique de y ou la sentinelle si y n'a pas de fils
         }
+          // si y != z, la clé de y remonte dans z qui devient donc le successeur
+          Noeud suivant = y == z ? z.suivant() : z;
           x.pere = y.pere; // inconditionnelle
 
           if (y.pere == sentinelle) { // suppression de la racine
@@ -231,12 +856,20 @@ public class ArbreRougeNoir<E> extends AbstractCollection<E> {
         }
           if (y != z){
            z.cle = y.cle;
+           deplacer(y, z);
            }
+          remonter(y.pere);
           if (y.couleur == Couleur.Noir){
           supprimerCorrection(x);
           }
 		  taille-=1;
-          return y.suivant();  
+          modifications++;
+          retraits++;
+          if (y == maxi) {
+            maxi = y == z ? null : z;
+          }
+          liberer(y);
+          return suivant;
           
         }
 
@@ -246,10 +879,13 @@ public void supprimerCorrection(Noeud x) {
     Noeud w;
     while (x != racine && x.couleur == Couleur.Noir) {
     // (*) est vérifié ici
+    if (Metriques.ACTIVES)
+      metriques.iterationsSuppression.increment();
     if (x == x.pere.gauche) {
       w = x.pere.droit; // le frère de x
       if (w.couleur == Couleur.Rouge) {
         // cas 1
+        recolorer(2);
         w.couleur = Couleur.Noir;
         x.pere.couleur = Couleur.Rouge;
         rotationGauche(x.pere);
@@ -257,17 +893,20 @@ public void supprimerCorrection(Noeud x) {
       }
       if (w.gauche.couleur == Couleur.Noir && w.droit.couleur == Couleur.Noir) {
         // cas 2
+        recolorer(1);
         w.couleur = Couleur.Rouge;
         x = x.pere;
       } else {
         if (w.droit.couleur == Couleur.Noir) {
           // cas 3
+          recolorer(2);
           w.gauche.couleur = Couleur.Noir;
           w.couleur = Couleur.Rouge;
           rotationDroite(w);
           w = x.pere.droit;
         }
         // cas 4
+        recolorer(3);
         w.couleur = x.pere.couleur;
         x.pere.couleur = Couleur.Noir;
         w.droit.couleur = Couleur.Noir;
@@ -279,6 +918,7 @@ public void supprimerCorrection(Noeud x) {
       w = x.pere.gauche;
       if (w.couleur == Couleur.Rouge) {
         // cas 1
+        recolorer(2);
         w.couleur = Couleur.Noir;
         x.pere.couleur = Couleur.Rouge;
         rotationDroite(x.pere);
@@ -286,17 +926,20 @@ public void supprimerCorrection(Noeud x) {
       }
       if (w.gauche.couleur == Couleur.Noir && w.droit.couleur == Couleur.Noir) {
         // cas 2
+        recolorer(1);
         w.couleur = Couleur.Rouge;
         x = x.pere;
       } else {
         if (w.gauche.couleur == Couleur.Noir) {
           // cas 3
+          recolorer(2);
           w.droit.couleur = Couleur.Noir;
           w.couleur = Couleur.Rouge;
           rotationGauche(w);
           w = x.pere.gauche;
         }
        // cas 4
+        recolorer(3);
         w.couleur = x.pere.couleur;
         x.pere.couleur = Couleur.Noir;
         w.gauche.couleur = Couleur.Noir;
@@ -312,8 +955,18 @@ public void supprimerCorrection(Noeud x) {
   x.couleur = Couleur.Noir;
 }
 
+    /**
+     * Compte n changements de couleur, si les métriques sont actives
+     */
+    private void recolorer(int n) {
+        if (Metriques.ACTIVES)
+            metriques.recolorations.add(n);
+    }
+
     
     private void rotationDroite(Noeud x) {
+        if (Metriques.ACTIVES)
+            metriques.rotations.increment();
         Noeud y = x.gauche;
         x.gauche = y.droit;
         if (y.droit != null && y.droit != sentinelle) { // Use '&&' instead of '||' for conditions
@@ -329,9 +982,13 @@ public void supprimerCorrection(Noeud x) {
         }
         y.droit = x;
         x.pere = y;
+        mettreAJour(x);
+        mettreAJour(y);
     }
     
     private void rotationGauche(Noeud x) {
+        if (Metriques.ACTIVES)
+            metriques.rotations.increment();
         Noeud y = x.droit;
         x.droit = y.gauche;
         if (y.gauche != null && y.gauche != sentinelle) { // Use '&&' instead of '||' for conditions
@@ -347,10 +1004,18 @@ public void supprimerCorrection(Noeud x) {
         }
         y.gauche = x;
         x.pere = y;
+        mettreAJour(x);
+        mettreAJour(y);
     }
     public boolean add(E element) {
-        Noeud newNode = new Noeud(element);
-        ajout(newNode);
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        // le noeud n'est créé (ou repris aux noeuds libres) que si la clé est absente
+        if (localiser(element) != sentinelle) {
+            return false;
+        }
+        accrocherALaPlace(creerNoeud(element));
         return true;
     }
     @Override
@@ -410,36 +1075,1035 @@ private void printTree(Noeud node, String prefix, boolean isLeft, StringBuilder
         return new ArbreRougeNoirIterator();
     }
 
+    /**
+     * Parcourt les noeuds comme l'itérateur des clés (de premier jusqu'à
+     * limite, cf ArbreRougeNoirIterator), en renvoyant f(noeud) : pour les
+     * sous-classes dont les noeuds portent d'autres informations que la clé
+     */
+    <T> Iterator<T> parcours(Noeud premier, boolean decroissant, boolean borne, E limite, boolean limiteIncluse,
+            Function<? super Noeud, ? extends T> f) {
+        ArbreRougeNoirIterator cles = new ArbreRougeNoirIterator(premier, decroissant, borne, limite, limiteIncluse);
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return cles.hasNext();
+            }
+
+            @Override
+            public T next() {
+                cles.next();
+                return f.apply(cles.preview);
+            }
+
+            @Override
+            public void remove() {
+                cles.remove();
+            }
+        };
+    }
+
+    /**
+     * Le Spliterator se découpe le long des sous-arbres, ce qui permet aux
+     * flux parallèles de répartir l'arbre entre les threads du pool commun.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArbreRougeNoirSpliterator(null, sentinelle, -1, 0);
+    }
+
     @Override
     public int size() {
         return taille;
     }
-    private class ArbreRougeNoirIterator implements Iterator<E> {
-        Noeud courant = racine==sentinelle?sentinelle:racine.minimum();
-        Noeud preview = sentinelle;
-        public boolean hasNext() {
-            return(courant.suivant()!=sentinelle && taille != 0);
-        }
 
-        public E next() {
-            // TODO
-            if(courant == sentinelle){
+    @Override
+    public boolean contains(Object o) {
+        return rechercher(o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Noeud z = rechercher(o);
+        if (z == null) {
+            return false;
+        }
+        supprimer(z);
+        return true;
+    }
+
+    /**
+     * Supprime les éléments de c, chacun en temps logarithmique (les versions
+     * de AbstractCollection et AbstractSet peuvent parcourir tout l'arbre).
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (c == this) {
+            boolean modifie = taille != 0;
+            clear();
+            return modifie;
+        }
+        boolean modifie = false;
+        for (Object o : c) {
+            if (remove(o)) {
+                modifie = true;
+            }
+        }
+        return modifie;
+    }
+
+    @Override
+    public void clear() {
+        racine = sentinelle;
+        taille = 0;
+        modifications++;
+        maxi = null;
+        retraits++;
+    }
+
+    /**
+     * Si c est trié selon le même ordre, ses éléments sont cherchés en
+     * avançant dans l'arbre depuis le précédent trouvé : quelques pas de
+     * successeur quand les clés sont proches, une descente depuis la racine
+     * sinon. Le coût est en O(m + n) au pire, et en O(m log n) quand c est
+     * petit.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsAll(Collection<?> c) {
+        if (!(c instanceof SortedSet && memeOrdre(((SortedSet<?>) c).comparator()))) {
+            return super.containsAll(c);
+        }
+        Noeud x = premierNoeud();
+        for (Object o : c) {
+            E e = (E) o;
+            int pas = 0;
+            while (x != sentinelle && cmp.compare(x.cle, e) < 0) {
+                if (++pas > PAS_AVANT_DESCENTE) {
+                    x = plafond(e, true);
+                    break;
+                }
+                x = x.suivant();
+            }
+            if (x == sentinelle || cmp.compare(x.cle, e) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Un ensemble trié selon le même ordre est comparé par un parcours
+     * simultané des deux ensembles, en O(n)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof SortedSet && memeOrdre(((SortedSet<?>) o).comparator()))) {
+            return super.equals(o);
+        }
+        SortedSet<?> s = (SortedSet<?>) o;
+        if (s.size() != taille) {
+            return false;
+        }
+        Noeud x = premierNoeud();
+        for (Object e : s) {
+            if (x == sentinelle || cmp.compare(x.cle, (E) e) != 0) {
+                return false;
+            }
+            x = x.suivant();
+        }
+        return x == sentinelle;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    // Navigation
+
+    /**
+     * Renvoie le noeud de la plus petite clé supérieure (ou égale si inclusif)
+     * à e
+     *
+     * @return ce noeud, ou la sentinelle s'il n'existe pas
+     */
+    Noeud plafond(E e, boolean inclusif) {
+        Noeud x = racine;
+        Noeud candidat = sentinelle;
+        while (x != sentinelle) {
+            int c = cmp.compare(e, x.cle);
+            if (c == 0 && inclusif) {
+                return x;
+            }
+            if (c < 0) {
+                candidat = x;
+                x = x.gauche;
+            } else {
+                x = x.droit;
+            }
+        }
+        return candidat;
+    }
+
+    /**
+     * Renvoie le noeud de la plus grande clé inférieure (ou égale si inclusif)
+     * à e
+     *
+     * @return ce noeud, ou la sentinelle s'il n'existe pas
+     */
+    Noeud plancher(E e, boolean inclusif) {
+        Noeud x = racine;
+        Noeud candidat = sentinelle;
+        while (x != sentinelle) {
+            int c = cmp.compare(e, x.cle);
+            if (c == 0 && inclusif) {
+                return x;
+            }
+            if (c > 0) {
+                candidat = x;
+                x = x.droit;
+            } else {
+                x = x.gauche;
+            }
+        }
+        return candidat;
+    }
+
+    Noeud premierNoeud() {
+        return racine == sentinelle ? sentinelle : racine.minimum();
+    }
+
+    Noeud dernierNoeud() {
+        if (maxi != null) {
+            return maxi;
+        }
+        return racine == sentinelle ? sentinelle : racine.maximum();
+    }
+
+    /**
+     * Supprime le noeud n et renvoie sa clé (la sentinelle donne null)
+     */
+    private E extraire(Noeud n) {
+        if (n == sentinelle) {
+            return null;
+        }
+        E cle = n.cle;
+        supprimer(n);
+        return cle;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return ordre == ORDRE_NATUREL ? null : ordre;
+    }
+
+    @Override
+    public E first() {
+        if (racine == sentinelle) {
+            throw new NoSuchElementException();
+        }
+        return premierNoeud().cle;
+    }
+
+    @Override
+    public E last() {
+        if (racine == sentinelle) {
+            throw new NoSuchElementException();
+        }
+        return dernierNoeud().cle;
+    }
+
+    // la clé de la sentinelle est null : pas de cas particulier ici
+
+    @Override
+    public E lower(E e) {
+        return plancher(e, false).cle;
+    }
+
+    @Override
+    public E floor(E e) {
+        return plancher(e, true).cle;
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return plafond(e, true).cle;
+    }
+
+    @Override
+    public E higher(E e) {
+        return plafond(e, false).cle;
+    }
+
+    @Override
+    public E pollFirst() {
+        return extraire(premierNoeud());
+    }
+
+    @Override
+    public E pollLast() {
+        return extraire(dernierNoeud());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ArbreRougeNoirIterator(dernierNoeud(), true, false, null, false);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new SousEnsemble(null, false, true, null, false, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (cmp.compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+        return new SousEnsemble(fromElement, fromInclusive, false, toElement, toInclusive, false, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        cmp.compare(toElement, toElement); // vérification du type et de null
+        return new SousEnsemble(null, false, true, toElement, inclusive, false, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        cmp.compare(fromElement, fromElement);
+        return new SousEnsemble(fromElement, inclusive, false, null, false, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    // Instantanés
+
+    /**
+     * Écrit les clés de l'arbre dans fichier, dans l'ordre croissant (cf
+     * {@link Instantane} pour le format). Le fichier est remplacé d'un coup :
+     * il contient l'ancien instantané ou le nouveau, jamais un mélange.
+     *
+     * @param fichier
+     *            le fichier à écrire
+     * @param codec
+     *            le codage des clés
+     * @throws IOException
+     *             si l'écriture échoue
+     */
+    public void sauvegarder(Path fichier, CodecCle<? super E> codec) throws IOException {
+        Instantane.ecrire(iterator(), taille, codec, fichier);
+    }
+
+    /**
+     * Recrée un arbre à partir d'un instantané écrit par
+     * {@link #sauvegarder}. Le fichier est projeté en mémoire et ses clés,
+     * déjà triées, sont construites en arbre en O(n), sans comparaison autre
+     * que la vérification de l'ordre.
+     *
+     * @param fichier
+     *            l'instantané
+     * @param codec
+     *            le codage des clés, le même qu'à l'écriture
+     * @param cmp
+     *            l'ordre des clés, le même qu'à l'écriture ; null pour
+     *            l'ordre naturel
+     * @return l'arbre des clés de l'instantané
+     * @throws IOException
+     *             si le fichier est illisible, corrompu, ou n'a pas été écrit
+     *             avec ce codec et cet ordre
+     */
+    public static <E> ArbreRougeNoir<E> restaurer(Path fichier, CodecCle<E> codec, Comparator<? super E> cmp)
+            throws IOException {
+        ArbreRougeNoir<E> arbre = new ArbreRougeNoir<>(cmp);
+        Object[] tri = Instantane.lire(fichier, codec, arbre.cmp, true);
+        arbre.chargerTrie(tri, tri.length);
+        return arbre;
+    }
+
+    /**
+     * Renvoie une copie immuable de l'ensemble, rangée dans un tableau pour
+     * des recherches sans suivre de pointeurs (cf {@link EnsembleFige}). La
+     * copie est faite en O(n) ; l'arbre reste modifiable et indépendant.
+     *
+     * @return un ensemble figé contenant les clés de l'arbre
+     */
+    public EnsembleFige<E> freeze() {
+        Object[] tri = new Object[taille];
+        int i = 0;
+        for (Noeud x = premierNoeud(); x != sentinelle; x = x.suivant()) {
+            tri[i++] = x.cle;
+        }
+        return new EnsembleFige<>(tri, taille, comparator());
+    }
+
+    /**
+     * Renvoie la hauteur de l'arbre, c'est-à-dire le nombre de noeuds sur le
+     * plus long chemin de la racine à une feuille (0 pour l'arbre vide).
+     *
+     * @return la hauteur de l'arbre
+     */
+    public int hauteur() {
+        return profondeurs().length;
+    }
+
+    /**
+     * Renvoie le nombre de noeuds à chaque profondeur, de la racine
+     * (profondeur 0) aux feuilles les plus basses
+     */
+    public int[] profondeurs() {
+        int[] h = new int[8];
+        ArrayDeque<Noeud> niveau = new ArrayDeque<>();
+        if (racine != sentinelle)
+            niveau.add(racine);
+        int hauteur = 0;
+        while (!niveau.isEmpty()) {
+            if (hauteur == h.length)
+                h = Arrays.copyOf(h, 2 * hauteur);
+            h[hauteur++] = niveau.size();
+            for (int i = niveau.size(); i > 0; i--) {
+                Noeud x = niveau.poll();
+                if (x.gauche != sentinelle)
+                    niveau.add(x.gauche);
+                if (x.droit != sentinelle)
+                    niveau.add(x.droit);
+            }
+        }
+        return Arrays.copyOf(h, hauteur);
+    }
+
+    /**
+     * Renvoie les métriques de l'arbre (cf {@link Metriques}), après en avoir
+     * mesuré les profondeurs : comme {@link Metriques#mesurer()}, à appeler
+     * par le thread qui modifie l'arbre. Sans -Darbres.metriques=true, les
+     * compteurs restent à zéro ; seules les profondeurs sont mesurées.
+     */
+    public Metriques metriques() {
+        Metriques m = metriques != null ? metriques : new Metriques(this::profondeurs);
+        m.mesurer();
+        return m;
+    }
+
+    // Lectures optimistes
+
+    /**
+     * Valeur renvoyée par les parcours bornés quand leur budget de pas est
+     * épuisé
+     */
+    static final int ABANDON = -1;
+
+    /**
+     * Compare deux clés selon l'ordre de l'arbre
+     */
+    int comparer(E e1, E e2) {
+        return cmp.compare(e1, e2);
+    }
+
+    /**
+     * Recherche o en suivant au plus pasMax liens. Cette recherche peut avoir
+     * lieu pendant qu'un autre thread modifie l'arbre (cf
+     * {@link ArbreRougeNoirConcurrent}) : elle peut alors voir un état
+     * incohérent, mais ne boucle jamais. Son résultat ne vaut que si aucune
+     * écriture n'a eu lieu pendant l'appel ; elle peut aussi lever une
+     * exception dans ce cas.
+     *
+     * @return 1 si o est présent, 0 sinon, {@link #ABANDON} si le budget est
+     *         épuisé
+     */
+    @SuppressWarnings("unchecked")
+    int rechercherBorne(Object o, int pasMax) {
+        E cle = (E) o;
+        Noeud x = racine;
+        for (int pas = 0; x != sentinelle; pas++) {
+            if (pas == pasMax) {
+                return ABANDON;
+            }
+            int c = cmp.compare(cle, x.cle);
+            if (c == 0) {
+                return 1;
+            }
+            x = c < 0 ? x.gauche : x.droit;
+        }
+        return 0;
+    }
+
+    /**
+     * Copie dans tampon les clés qui suivent depart dans l'ordre croissant (ou
+     * décroissant), en suivant au plus pasMax liens. Comme
+     * {@link #rechercherBorne(Object, int)}, ce parcours peut avoir lieu
+     * pendant une écriture concurrente.
+     *
+     * @param depart
+     *            la clé de départ, null pour partir de la première (ou de la
+     *            dernière) clé
+     * @param inclusif
+     *            true si depart lui-même peut être copié
+     * @param decroissant
+     *            true pour parcourir les clés dans l'ordre inverse
+     * @param tampon
+     *            reçoit les clés, au plus tampon.length
+     * @return le nombre de clés copiées (moins que tampon.length si la fin de
+     *         l'arbre est atteinte) ou {@link #ABANDON}
+     */
+    int parcourirBorne(E depart, boolean inclusif, boolean decroissant, Object[] tampon, int pasMax) {
+        int pas = 0;
+        Noeud x = racine;
+        Noeud n = sentinelle;
+        if (depart == null) {
+            while (x != sentinelle) {
+                if (++pas > pasMax) {
+                    return ABANDON;
+                }
+                n = x;
+                x = decroissant ? x.droit : x.gauche;
+            }
+        } else {
+            while (x != sentinelle) {
+                if (++pas > pasMax) {
+                    return ABANDON;
+                }
+                int c = cmp.compare(depart, x.cle);
+                if (c == 0 && inclusif) {
+                    n = x;
+                    break;
+                }
+                if (decroissant ? c > 0 : c < 0) {
+                    n = x;
+                    x = decroissant ? x.droit : x.gauche;
+                } else {
+                    x = decroissant ? x.gauche : x.droit;
+                }
+            }
+        }
+        int k = 0;
+        while (n != sentinelle && k < tampon.length) {
+            tampon[k++] = n.cle;
+            // successeur (ou prédécesseur) de n, pas à pas
+            Noeud f = decroissant ? n.gauche : n.droit;
+            if (f != sentinelle) {
+                n = f;
+                for (f = decroissant ? n.droit : n.gauche; f != sentinelle; f = decroissant ? n.droit : n.gauche) {
+                    if (++pas > pasMax) {
+                        return ABANDON;
+                    }
+                    n = f;
+                }
+            } else {
+                Noeud p = n.pere;
+                while (p != sentinelle && n == (decroissant ? p.gauche : p.droit)) {
+                    if (++pas > pasMax) {
+                        return ABANDON;
+                    }
+                    n = p;
+                    p = p.pere;
+                }
+                n = p;
+            }
+            if (++pas > pasMax) {
+                return ABANDON;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Les itérateurs parcourent les éléments dans l'ordre (ou dans l'ordre
+     * inverse) avec {@link Noeud#suivant()} ou {@link Noeud#precedent()}, et
+     * s'arrêtent à la limite éventuelle d'une vue.
+     */
+    private class ArbreRougeNoirIterator implements Iterator<E> {
+        /** prochain noeud à renvoyer, la sentinelle en fin de parcours */
+        Noeud courant;
+        Noeud preview = sentinelle;
+        /** valeur de modifications attendue, pour détecter les modifications concurrentes */
+        private int attendu = modifications;
+        private final boolean decroissant;
+        private final boolean borne;
+        private final E limite;
+        private final boolean limiteIncluse;
+
+        ArbreRougeNoirIterator() {
+            this(premierNoeud(), false, false, null, false);
+        }
+
+        /**
+         * @param premier
+         *            le premier noeud à renvoyer
+         * @param decroissant
+         *            true pour parcourir les clés dans l'ordre inverse
+         * @param borne
+         *            true si le parcours s'arrête à limite
+         * @param limite
+         *            la dernière clé (dans le sens du parcours) que l'on peut
+         *            renvoyer
+         * @param limiteIncluse
+         *            true si limite elle-même peut être renvoyée
+         */
+        ArbreRougeNoirIterator(Noeud premier, boolean decroissant, boolean borne, E limite, boolean limiteIncluse) {
+            this.decroissant = decroissant;
+            this.borne = borne;
+            this.limite = limite;
+            this.limiteIncluse = limiteIncluse;
+            courant = borner(premier);
+        }
+
+        /**
+         * Renvoie n, ou la sentinelle si n est au-delà de la limite
+         */
+        private Noeud borner(Noeud n) {
+            if (!borne || n == sentinelle) {
+                return n;
+            }
+            int c = cmp.compare(n.cle, limite);
+            if (decroissant) {
+                c = -c;
+            }
+            return c > 0 || (c == 0 && !limiteIncluse) ? sentinelle : n;
+        }
+
+        public boolean hasNext() {
+            return courant != sentinelle;
+        }
+
+        public E next() {
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            if(courant == sentinelle){
                 throw new NoSuchElementException();
             }
             preview=courant;
-            courant=courant.suivant();
+            courant = borner(decroissant ? courant.precedent() : courant.suivant());
 
             return preview.cle;
         }
 
         public void remove() {
-            // TODO
             if(preview == sentinelle){
                 throw new IllegalStateException();
             }
-            courant = supprimer(preview);
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            // supprimer renvoie le successeur, qui peut être preview lui-même ;
+            // le prédécesseur, lui, n'est jamais déplacé
+            Noeud suivant = supprimer(preview);
+            if (!decroissant) {
+                courant = borner(suivant);
+            }
             preview = sentinelle;
+            attendu = modifications;
+        }
+
+        /**
+         * Parcours infixe sans passer par hasNext/next : le successeur est le
+         * minimum du sous-arbre droit ou le premier ancêtre dont on vient de
+         * la gauche, soit O(1) amorti par élément. La limite d'une vue n'est
+         * testée que si elle existe.
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            Noeud n = courant;
+            courant = sentinelle;
+            while (n != sentinelle) {
+                action.accept(n.cle);
+                if (modifications != attendu) {
+                    throw new ConcurrentModificationException();
+                }
+                preview = n;
+                Noeud f = decroissant ? n.gauche : n.droit;
+                if (f != sentinelle) {
+                    n = f;
+                    for (f = decroissant ? n.droit : n.gauche; f != sentinelle; f = decroissant ? n.droit : n.gauche) {
+                        n = f;
+                    }
+                } else {
+                    Noeud p = n.pere;
+                    while (p != sentinelle && n == (decroissant ? p.gauche : p.droit)) {
+                        n = p;
+                        p = p.pere;
+                    }
+                    n = p;
+                }
+                if (borne) {
+                    n = borner(n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Découpe l'arbre le long des sous-arbres, comme TreeMap : la première
+     * découpe coupe à la racine, les suivantes au fils droit du premier noeud
+     * restant (ou au fils gauche de la borne). Seul l'ensemble complet connaît
+     * sa taille exacte ; après découpe la taille est estimée en la divisant
+     * par deux, ce qui suffit pour répartir le travail puisque l'arbre est
+     * équilibré.
+     */
+    private final class ArbreRougeNoirSpliterator implements Spliterator<E> {
+        /** premier noeud restant à parcourir */
+        private Noeud courant;
+        /** premier noeud au-delà de la tranche (la sentinelle pour la fin de l'arbre) */
+        private final Noeud borne;
+        /** taille (estimée après découpe), -1 tant que courant n'est pas placé */
+        private int estimation;
+        /** 0 : arbre complet ; 1 : tranche droite ; -1 : tranche gauche */
+        private int cote;
+
+        ArbreRougeNoirSpliterator(Noeud courant, Noeud borne, int estimation, int cote) {
+            this.courant = courant;
+            this.borne = borne;
+            this.estimation = estimation;
+            this.cote = cote;
+        }
+
+        private int estimer() {
+            if (estimation < 0) {
+                estimation = taille;
+                courant = premierNoeud();
+            }
+            return estimation;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            estimer();
+            Noeud e = courant;
+            Noeud s = e == sentinelle || e == borne ? sentinelle
+                    : cote == 0 ? racine
+                    : cote > 0 ? e.droit
+                    : borne != sentinelle ? borne.gauche
+                    : sentinelle;
+            if (s != sentinelle && s != e && s != borne && cmp.compare(e.cle, s.cle) < 0) {
+                cote = 1;
+                courant = s;
+                return new ArbreRougeNoirSpliterator(e, s, estimation >>>= 1, -1);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            estimer();
+            Noeud e = courant;
+            if (e == sentinelle || e == borne) {
+                return false;
+            }
+            courant = e.suivant();
+            action.accept(e.cle);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            estimer();
+            Noeud e = courant;
+            courant = borne;
+            for (; e != sentinelle && e != borne; e = e.suivant()) {
+                action.accept(e.cle);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimer();
+        }
+
+        @Override
+        public int characteristics() {
+            return (cote == 0 ? Spliterator.SIZED : 0) | Spliterator.DISTINCT | Spliterator.SORTED
+                    | Spliterator.ORDERED | Spliterator.NONNULL;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator();
+        }
+    }
+
+    /**
+     * Vue d'un intervalle de l'arbre, éventuellement parcourue dans l'ordre
+     * inverse. Les bornes sont toujours exprimées dans l'ordre de l'arbre
+     * (bas avant haut) ; les opérations se positionnent par une descente
+     * depuis la racine puis suivent les liens des noeuds.
+     */
+    private final class SousEnsemble extends AbstractSet<E> implements NavigableSet<E> {
+        private final E bas;
+        private final boolean basInclus;
+        private final boolean depuisDebut;
+        private final E haut;
+        private final boolean hautInclus;
+        private final boolean jusquaFin;
+        private final boolean decroissant;
+
+        SousEnsemble(E bas, boolean basInclus, boolean depuisDebut, E haut, boolean hautInclus, boolean jusquaFin,
+                boolean decroissant) {
+            this.bas = bas;
+            this.basInclus = basInclus;
+            this.depuisDebut = depuisDebut;
+            this.haut = haut;
+            this.hautInclus = hautInclus;
+            this.jusquaFin = jusquaFin;
+            this.decroissant = decroissant;
+        }
+
+        private boolean tropBas(E e) {
+            if (depuisDebut) {
+                return false;
+            }
+            int c = cmp.compare(e, bas);
+            return c < 0 || (c == 0 && !basInclus);
+        }
+
+        private boolean tropHaut(E e) {
+            if (jusquaFin) {
+                return false;
+            }
+            int c = cmp.compare(e, haut);
+            return c > 0 || (c == 0 && !hautInclus);
+        }
+
+        private boolean dansBornes(E e) {
+            return !tropBas(e) && !tropHaut(e);
+        }
+
+        /**
+         * Une borne exclue d'une sous-vue peut coïncider avec une borne exclue
+         * de cette vue : on vérifie alors l'intervalle fermé
+         */
+        private boolean bornePermise(E e, boolean inclusif) {
+            if (inclusif) {
+                return dansBornes(e);
+            }
+            return (depuisDebut || cmp.compare(e, bas) >= 0) && (jusquaFin || cmp.compare(e, haut) <= 0);
+        }
+
+        private Noeud premier() {
+            Noeud n = depuisDebut ? premierNoeud() : plafond(bas, basInclus);
+            return n == sentinelle || tropHaut(n.cle) ? sentinelle : n;
+        }
+
+        private Noeud dernier() {
+            Noeud n = jusquaFin ? dernierNoeud() : plancher(haut, hautInclus);
+            return n == sentinelle || tropBas(n.cle) ? sentinelle : n;
+        }
+
+        private Noeud plafondBorne(E e, boolean inclusif) {
+            if (tropBas(e)) {
+                return premier();
+            }
+            Noeud n = plafond(e, inclusif);
+            return n == sentinelle || tropHaut(n.cle) ? sentinelle : n;
+        }
+
+        private Noeud plancherBorne(E e, boolean inclusif) {
+            if (tropHaut(e)) {
+                return dernier();
+            }
+            Noeud n = plancher(e, inclusif);
+            return n == sentinelle || tropBas(n.cle) ? sentinelle : n;
+        }
+
+        private ArbreRougeNoirIterator croissant() {
+            return new ArbreRougeNoirIterator(premier(), false, !jusquaFin, haut, hautInclus);
+        }
+
+        private ArbreRougeNoirIterator inverse() {
+            return new ArbreRougeNoirIterator(dernier(), true, !depuisDebut, bas, basInclus);
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return decroissant ? inverse() : croissant();
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return decroissant ? croissant() : inverse();
+        }
+
+        @Override
+        public int size() {
+            int n = 0;
+            for (Iterator<E> it = croissant(); it.hasNext(); it.next()) {
+                n++;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return premier() == sentinelle;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return o != null && dansBornes((E) o) && ArbreRougeNoir.this.contains(o);
+        }
+
+        @Override
+        public boolean add(E e) {
+            if (!dansBornes(e)) {
+                throw new IllegalArgumentException("clé hors de l'intervalle");
+            }
+            return ArbreRougeNoir.this.add(e);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            return o != null && dansBornes((E) o) && ArbreRougeNoir.this.remove(o);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            Comparator<? super E> c = ArbreRougeNoir.this.comparator();
+            return decroissant ? Collections.reverseOrder(c) : c;
+        }
+
+        @Override
+        public E first() {
+            Noeud n = decroissant ? dernier() : premier();
+            if (n == sentinelle) {
+                throw new NoSuchElementException();
+            }
+            return n.cle;
+        }
+
+        @Override
+        public E last() {
+            Noeud n = decroissant ? premier() : dernier();
+            if (n == sentinelle) {
+                throw new NoSuchElementException();
+            }
+            return n.cle;
+        }
+
+        @Override
+        public E lower(E e) {
+            return (decroissant ? plafondBorne(e, false) : plancherBorne(e, false)).cle;
+        }
+
+        @Override
+        public E floor(E e) {
+            return (decroissant ? plafondBorne(e, true) : plancherBorne(e, true)).cle;
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return (decroissant ? plancherBorne(e, true) : plafondBorne(e, true)).cle;
+        }
+
+        @Override
+        public E higher(E e) {
+            return (decroissant ? plancherBorne(e, false) : plafondBorne(e, false)).cle;
+        }
+
+        @Override
+        public E pollFirst() {
+            return extraire(decroissant ? dernier() : premier());
+        }
+
+        @Override
+        public E pollLast() {
+            return extraire(decroissant ? premier() : dernier());
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new SousEnsemble(bas, basInclus, depuisDebut, haut, hautInclus, jusquaFin, !decroissant);
+        }
+
+        /**
+         * Crée une sous-vue ; les bornes absentes sont reprises de cette vue
+         */
+        private NavigableSet<E> sousVue(E lo, boolean loInclus, boolean sansBas, E hi, boolean hiInclus,
+                boolean sansHaut) {
+            if (sansBas) {
+                lo = bas;
+                loInclus = basInclus;
+                sansBas = depuisDebut;
+            } else if (!bornePermise(lo, loInclus)) {
+                throw new IllegalArgumentException("borne hors de l'intervalle");
+            }
+            if (sansHaut) {
+                hi = haut;
+                hiInclus = hautInclus;
+                sansHaut = jusquaFin;
+            } else if (!bornePermise(hi, hiInclus)) {
+                throw new IllegalArgumentException("borne hors de l'intervalle");
+            }
+            if (!sansBas && !sansHaut && cmp.compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return new SousEnsemble(lo, loInclus, sansBas, hi, hiInclus, sansHaut, decroissant);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            if (decroissant) {
+                return sousVue(toElement, toInclusive, false, fromElement, fromInclusive, false);
+            }
+            return sousVue(fromElement, fromInclusive, false, toElement, toInclusive, false);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            if (decroissant) {
+                return sousVue(toElement, inclusive, false, null, false, true);
+            }
+            return sousVue(null, false, true, toElement, inclusive, false);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            if (decroissant) {
+                return sousVue(null, false, true, fromElement, inclusive, false);
+            }
+            return sousVue(fromElement, inclusive, false, null, false, true);
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
         }
     }
 
-} 
\ No newline at end of file
+}
@@ -0,0 +1,566 @@
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * <p>
+ * Arbre rouge-noir économe en mémoire. Par rapport à {@link ArbreRougeNoir},
+ * les noeuds sont d'une classe imbriquée statique (pas de référence vers
+ * l'arbre englobant), la couleur est un booléen logé dans le bourrage de
+ * l'objet au lieu d'une référence vers une constante Couleur, et il n'y a
+ * pas de sentinelle : les feuilles sont null.
+ * </p>
+ *
+ * <p>
+ * Les noeuds peuvent en outre se passer du lien vers leur père (cf
+ * {@link #ArbreRougeNoirCompact(Comparator, boolean)}) : insertions et
+ * suppressions enregistrent de toute façon le chemin depuis la racine dans
+ * une pile, qui sert aux corrections, et les itérateurs gardent leur propre
+ * pile. {@link Empreinte} estime la taille des noeuds de chaque variante pour
+ * la JVM courante.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ */
+public class ArbreRougeNoirCompact<E> extends AbstractSet<E> {
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+    /** hauteur maximale d'un arbre rouge-noir de 2^31 noeuds, avec de la marge */
+    private static final int HAUTEUR_MAX = 128;
+
+    /** pseudo-noeud dont le fils gauche est la racine */
+    private final Noeud<E> tete = new Noeud<>(null);
+    private final Comparator<? super E> cmp;
+    private final boolean avecPeres;
+    private int taille;
+    private int modifications;
+
+    /** chemin de la racine au noeud traité, et direction prise à chaque pas */
+    private final Noeud<E>[] chemin;
+    private final byte[] directions = new byte[HAUTEUR_MAX];
+
+    static class Noeud<E> {
+        E cle;
+        Noeud<E> gauche;
+        Noeud<E> droit;
+        boolean rouge;
+
+        Noeud(E cle) {
+            this.cle = cle;
+        }
+    }
+
+    static final class NoeudPere<E> extends Noeud<E> {
+        NoeudPere<E> pere;
+
+        NoeudPere(E cle) {
+            super(cle);
+        }
+    }
+
+    // Constructeurs
+
+    /**
+     * Crée un arbre vide à noeuds chaînés à leur père. Les éléments sont
+     * ordonnés selon l'ordre naturel
+     */
+    public ArbreRougeNoirCompact() {
+        this(null, true);
+    }
+
+    /**
+     * Crée un arbre vide
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     * @param avecPeres
+     *            false pour des noeuds sans lien vers leur père (une
+     *            référence de moins par noeud)
+     */
+    @SuppressWarnings("unchecked")
+    public ArbreRougeNoirCompact(Comparator<? super E> cmp, boolean avecPeres) {
+        this.cmp = cmp == null ? ORDRE_NATUREL : cmp;
+        this.avecPeres = avecPeres;
+        chemin = (Noeud<E>[]) new Noeud<?>[HAUTEUR_MAX];
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel, à noeuds chaînés à leur
+     * père. L'arbre est construit en O(n) (plus le tri si besoin)
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreRougeNoirCompact(Collection<? extends E> c) {
+        this(null, true);
+        charger(c);
+    }
+
+    // Construction en bloc
+
+    @SuppressWarnings("unchecked")
+    private void charger(Collection<? extends E> c) {
+        Object[] tri = c.toArray();
+        int n = tri.length;
+        if (!(c instanceof SortedSet && ((SortedSet<?>) c).comparator() == null)) {
+            Arrays.sort(tri, (Comparator<Object>) cmp);
+            n = 0;
+            for (int i = 0; i < tri.length; i++) {
+                if (n == 0 || cmp.compare((E) tri[n - 1], (E) tri[i]) != 0) {
+                    tri[n++] = tri[i];
+                }
+            }
+        }
+        int niveauRouge = 0;
+        for (int m = n - 1; m >= 0; m = m / 2 - 1) {
+            niveauRouge++;
+        }
+        lier(tete, 0, construire(tri, 0, n - 1, 0, niveauRouge));
+        taille = n;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Noeud<E> construire(Object[] tri, int debut, int fin, int profondeur, int niveauRouge) {
+        if (debut > fin) {
+            return null;
+        }
+        int milieu = (debut + fin) >>> 1;
+        Noeud<E> n = creerNoeud((E) tri[milieu]);
+        n.rouge = profondeur == niveauRouge;
+        lier(n, 0, construire(tri, debut, milieu - 1, profondeur + 1, niveauRouge));
+        lier(n, 1, construire(tri, milieu + 1, fin, profondeur + 1, niveauRouge));
+        return n;
+    }
+
+    // Liens
+
+    private Noeud<E> creerNoeud(E cle) {
+        return avecPeres ? new NoeudPere<>(cle) : new Noeud<>(cle);
+    }
+
+    private static <E> Noeud<E> fils(Noeud<E> n, int dir) {
+        return dir == 0 ? n.gauche : n.droit;
+    }
+
+    /**
+     * Fait de f le fils de p dans la direction dir (0 à gauche, 1 à droite).
+     * Tout changement de père passe par ici, ce qui suffit à tenir les liens
+     * vers les pères à jour.
+     */
+    private void lier(Noeud<E> p, int dir, Noeud<E> f) {
+        if (dir == 0) {
+            p.gauche = f;
+        } else {
+            p.droit = f;
+        }
+        if (avecPeres && f != null) {
+            ((NoeudPere<E>) f).pere = p == tete ? null : (NoeudPere<E>) p;
+        }
+    }
+
+    private static boolean estRouge(Noeud<?> n) {
+        return n != null && n.rouge;
+    }
+
+    // Modifications
+
+    @Override
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        Noeud<E>[] pa = chemin;
+        byte[] da = directions;
+        pa[0] = tete;
+        da[0] = 0;
+        int k = 1;
+        if (tete.gauche == null) {
+            cmp.compare(e, e); // vérification du type
+        }
+        for (Noeud<E> p = tete.gauche; p != null; p = fils(p, da[k - 1])) {
+            int c = cmp.compare(e, p.cle);
+            if (c == 0) {
+                Arrays.fill(pa, 0, k, null);
+                return false;
+            }
+            pa[k] = p;
+            da[k++] = (byte) (c > 0 ? 1 : 0);
+        }
+        int longueur = k;
+        Noeud<E> n = creerNoeud(e);
+        n.rouge = true;
+        lier(pa[k - 1], da[k - 1], n);
+        taille++;
+        modifications++;
+
+        while (k >= 3 && pa[k - 1].rouge) {
+            int d = da[k - 2];
+            Noeud<E> oncle = fils(pa[k - 2], 1 - d);
+            if (estRouge(oncle)) {
+                // cas 1 : recoloration, on remonte de deux niveaux
+                pa[k - 1].rouge = false;
+                oncle.rouge = false;
+                pa[k - 2].rouge = true;
+                k -= 2;
+            } else {
+                Noeud<E> y;
+                if (da[k - 1] == d) {
+                    y = pa[k - 1];
+                } else {
+                    // cas 2 : rotation du père pour se ramener au cas 3
+                    Noeud<E> x = pa[k - 1];
+                    y = fils(x, 1 - d);
+                    lier(x, 1 - d, fils(y, d));
+                    lier(y, d, x);
+                    lier(pa[k - 2], d, y);
+                }
+                // cas 3 : rotation du grand-père
+                Noeud<E> x = pa[k - 2];
+                x.rouge = true;
+                y.rouge = false;
+                lier(x, d, fils(y, 1 - d));
+                lier(y, 1 - d, x);
+                lier(pa[k - 3], da[k - 3], y);
+                break;
+            }
+        }
+        tete.gauche.rouge = false;
+        // le chemin ne doit pas retenir de noeuds qui seront retirés plus tard
+        Arrays.fill(pa, 0, longueur, null);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null || tete.gauche == null) {
+            return false;
+        }
+        E cle = (E) o;
+        Noeud<E>[] pa = chemin;
+        byte[] da = directions;
+        int k = 0;
+        Noeud<E> p = tete;
+        for (int c = -1; c != 0; c = cmp.compare(cle, p.cle)) {
+            int dir = c > 0 ? 1 : 0;
+            pa[k] = p;
+            da[k++] = (byte) dir;
+            p = fils(p, dir);
+            if (p == null) {
+                Arrays.fill(pa, 0, k, null);
+                return false;
+            }
+        }
+
+        // p est décroché ; s'il a deux fils, son successeur prend sa place
+        // (et sa couleur) dans l'arbre
+        boolean noirRetire;
+        if (p.droit == null) {
+            lier(pa[k - 1], da[k - 1], p.gauche);
+            noirRetire = !p.rouge;
+        } else {
+            Noeud<E> r = p.droit;
+            if (r.gauche == null) {
+                lier(r, 0, p.gauche);
+                noirRetire = !r.rouge;
+                r.rouge = p.rouge;
+                lier(pa[k - 1], da[k - 1], r);
+                da[k] = 1;
+                pa[k++] = r;
+            } else {
+                Noeud<E> s;
+                int j = k++;
+                while (true) {
+                    da[k] = 0;
+                    pa[k++] = r;
+                    s = r.gauche;
+                    if (s.gauche == null) {
+                        break;
+                    }
+                    r = s;
+                }
+                da[j] = 1;
+                pa[j] = s;
+                lier(pa[k - 1], 0, s.droit);
+                lier(s, 0, p.gauche);
+                lier(s, 1, p.droit);
+                noirRetire = !s.rouge;
+                s.rouge = p.rouge;
+                lier(pa[j - 1], da[j - 1], s);
+            }
+        }
+
+        int longueur = k;
+        if (noirRetire) {
+            while (true) {
+                Noeud<E> x = fils(pa[k - 1], da[k - 1]);
+                if (estRouge(x)) {
+                    x.rouge = false;
+                    break;
+                }
+                if (k < 2) {
+                    break;
+                }
+                int d = da[k - 1];
+                Noeud<E> w = fils(pa[k - 1], 1 - d); // le frère de x
+                if (w.rouge) {
+                    // cas 1 : le frère rouge passe au-dessus du père
+                    w.rouge = false;
+                    pa[k - 1].rouge = true;
+                    lier(pa[k - 1], 1 - d, fils(w, d));
+                    lier(w, d, pa[k - 1]);
+                    lier(pa[k - 2], da[k - 2], w);
+                    pa[k] = pa[k - 1];
+                    da[k] = (byte) d;
+                    pa[k - 1] = w;
+                    k++;
+                    longueur = Math.max(longueur, k);
+                    w = fils(pa[k - 1], 1 - d);
+                }
+                if (!estRouge(w.gauche) && !estRouge(w.droit)) {
+                    // cas 2 : on remonte le déficit
+                    w.rouge = true;
+                } else {
+                    if (!estRouge(fils(w, 1 - d))) {
+                        // cas 3 : on se ramène au cas 4
+                        Noeud<E> y = fils(w, d);
+                        y.rouge = false;
+                        w.rouge = true;
+                        lier(w, d, fils(y, 1 - d));
+                        lier(y, 1 - d, w);
+                        lier(pa[k - 1], 1 - d, y);
+                        w = y;
+                    }
+                    // cas 4
+                    w.rouge = pa[k - 1].rouge;
+                    pa[k - 1].rouge = false;
+                    fils(w, 1 - d).rouge = false;
+                    lier(pa[k - 1], 1 - d, fils(w, d));
+                    lier(w, d, pa[k - 1]);
+                    lier(pa[k - 2], da[k - 2], w);
+                    break;
+                }
+                k--;
+            }
+        }
+        Arrays.fill(pa, 0, longueur, null);
+        taille--;
+        modifications++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        lier(tete, 0, null);
+        taille = 0;
+        modifications++;
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    public Comparator<? super E> comparator() {
+        return cmp == ORDRE_NATUREL ? null : cmp;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        Noeud<E> x = tete.gauche;
+        while (x != null) {
+            int c = cmp.compare((E) o, x.cle);
+            if (c == 0) {
+                return true;
+            }
+            x = c < 0 ? x.gauche : x.droit;
+        }
+        return false;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    public E first() {
+        Noeud<E> x = tete.gauche;
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        while (x.gauche != null) {
+            x = x.gauche;
+        }
+        return x.cle;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    public E last() {
+        Noeud<E> x = tete.gauche;
+        if (x == null) {
+            throw new NoSuchElementException();
+        }
+        while (x.droit != null) {
+            x = x.droit;
+        }
+        return x.cle;
+    }
+
+    /**
+     * Renvoie true si les noeuds gardent un lien vers leur père
+     */
+    public boolean avecPeres() {
+        return avecPeres;
+    }
+
+    /**
+     * Renvoie une estimation de la mémoire occupée par les noeuds de l'arbre
+     * (hors clés) sur la JVM courante
+     */
+    public long octetsEstimes() {
+        return taille * Empreinte.jvmCourante().objet(avecPeres ? 4 : 3, 1);
+    }
+
+    /**
+     * Renvoie la hauteur de l'arbre (0 pour un arbre vide)
+     */
+    public int hauteur() {
+        ArrayDeque<Noeud<E>> niveau = new ArrayDeque<>();
+        if (tete.gauche != null)
+            niveau.add(tete.gauche);
+        int hauteur = 0;
+        while (!niveau.isEmpty()) {
+            hauteur++;
+            for (int i = niveau.size(); i > 0; i--) {
+                Noeud<E> x = niveau.poll();
+                if (x.gauche != null)
+                    niveau.add(x.gauche);
+                if (x.droit != null)
+                    niveau.add(x.droit);
+            }
+        }
+        return hauteur;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur();
+    }
+
+    /**
+     * Parcours infixe. Avec les liens vers les pères, le successeur se trouve
+     * en remontant ; sans eux, l'itérateur garde la pile des ancêtres restant
+     * à visiter, qu'il reconstruit depuis la racine après un remove().
+     */
+    private final class Iterateur implements Iterator<E> {
+        private final ArrayDeque<Noeud<E>> pile = avecPeres ? null : new ArrayDeque<>();
+        private Noeud<E> suivant;
+        private Noeud<E> dernier;
+        private int attendu = modifications;
+
+        Iterateur() {
+            Noeud<E> x = tete.gauche;
+            if (avecPeres) {
+                while (x != null && x.gauche != null) {
+                    x = x.gauche;
+                }
+                suivant = x;
+            } else {
+                descendre(x);
+                suivant = pile.peek();
+            }
+        }
+
+        private void descendre(Noeud<E> x) {
+            while (x != null) {
+                pile.push(x);
+                x = x.gauche;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return suivant != null;
+        }
+
+        @Override
+        public E next() {
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            Noeud<E> n = suivant;
+            if (n == null) {
+                throw new NoSuchElementException();
+            }
+            if (avecPeres) {
+                suivant = successeur((NoeudPere<E>) n);
+            } else {
+                pile.pop();
+                descendre(n.droit);
+                suivant = pile.peek();
+            }
+            dernier = n;
+            return n.cle;
+        }
+
+        private Noeud<E> successeur(NoeudPere<E> n) {
+            if (n.droit != null) {
+                Noeud<E> x = n.droit;
+                while (x.gauche != null) {
+                    x = x.gauche;
+                }
+                return x;
+            }
+            NoeudPere<E> p = n.pere;
+            while (p != null && n == p.droit) {
+                n = p;
+                p = p.pere;
+            }
+            return p;
+        }
+
+        @Override
+        public void remove() {
+            if (dernier == null) {
+                throw new IllegalStateException();
+            }
+            if (modifications != attendu) {
+                throw new ConcurrentModificationException();
+            }
+            // la suppression déplace des noeuds mais ne change pas leur clé :
+            // suivant reste valable
+            ArbreRougeNoirCompact.this.remove(dernier.cle);
+            attendu = modifications;
+            dernier = null;
+            if (!avecPeres && suivant != null) {
+                pile.clear();
+                E cle = suivant.cle;
+                Noeud<E> x = tete.gauche;
+                while (x != suivant) {
+                    if (cmp.compare(cle, x.cle) < 0) {
+                        pile.push(x);
+                        x = x.gauche;
+                    } else {
+                        x = x.droit;
+                    }
+                }
+                pile.push(x);
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Ensemble trié partagé entre threads, construit sur un {@link ArbreRougeNoir}
+ * protégé par un StampedLock. Les écritures prennent le verrou exclusif le
+ * temps de l'insertion (ou de la suppression) et du rééquilibrage. Les
+ * lectures ne prennent aucun verrou : elles parcourent les noeuds en lecture
+ * optimiste, valident le tampon ensuite, et ne recommencent sous verrou
+ * partagé que si une écriture a eu lieu entre-temps. Les lecteurs ne se
+ * gênent donc pas entre eux.
+ * </p>
+ *
+ * <p>
+ * Les itérateurs sont faiblement cohérents : ils lisent l'arbre par lots de
+ * clés consécutives, chaque lot reflétant un état de l'arbre, et ne lèvent
+ * jamais ConcurrentModificationException.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ */
+public class ArbreRougeNoirConcurrent<E> extends AbstractSet<E> {
+    /** nombre de clés lues par lot lors des parcours */
+    private static final int LOT = 64;
+    /**
+     * Nombre de liens qu'une lecture optimiste peut suivre avant d'abandonner :
+     * largement plus que la hauteur d'un arbre rouge-noir de 2^31 clés.
+     */
+    private static final int PAS_MAX = 256;
+
+    private final ArbreRougeNoir<E> arbre;
+    private final StampedLock verrou = new StampedLock();
+
+    // Constructeurs
+
+    /**
+     * Crée un ensemble vide. Les éléments sont ordonnés selon l'ordre naturel
+     */
+    public ArbreRougeNoirConcurrent() {
+        arbre = new ArbreRougeNoir<>();
+    }
+
+    /**
+     * Crée un ensemble vide ordonné par le comparateur
+     *
+     * @param cmp
+     *            le comparateur utilisé pour définir l'ordre des éléments
+     */
+    public ArbreRougeNoirConcurrent(Comparator<? super E> cmp) {
+        arbre = new ArbreRougeNoir<>(cmp);
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreRougeNoirConcurrent(Collection<? extends E> c) {
+        arbre = new ArbreRougeNoir<>(c);
+    }
+
+    // Écritures
+
+    @Override
+    public boolean add(E e) {
+        long s = verrou.writeLock();
+        try {
+            return arbre.add(e);
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    /**
+     * Insère en une seule prise du verrou les n premières clés de tri, triées
+     * dans l'ordre de l'ensemble (cf {@link IngestionParLots})
+     *
+     * @param ajoutes
+     *            reçoit pour chaque clé true si elle a été insérée
+     * @return le nombre de clés insérées
+     */
+    int ajouterTrie(Object[] tri, int n, boolean[] ajoutes) {
+        long s = verrou.writeLock();
+        try {
+            return arbre.ajouterTrie(tri, n, ajoutes);
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        long s = verrou.writeLock();
+        try {
+            return arbre.remove(o);
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long s = verrou.writeLock();
+        try {
+            arbre.clear();
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    public E pollFirst() {
+        long s = verrou.writeLock();
+        try {
+            return arbre.pollFirst();
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    public E pollLast() {
+        long s = verrou.writeLock();
+        try {
+            return arbre.pollLast();
+        } finally {
+            verrou.unlockWrite(s);
+        }
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        long s = verrou.tryOptimisticRead();
+        int n = arbre.size();
+        if (verrou.validate(s)) {
+            return n;
+        }
+        s = verrou.readLock();
+        try {
+            return arbre.size();
+        } finally {
+            verrou.unlockRead(s);
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        long s = verrou.tryOptimisticRead();
+        if (s != 0) {
+            try {
+                int r = arbre.rechercherBorne(o, PAS_MAX);
+                if (r != ArbreRougeNoir.ABANDON && verrou.validate(s)) {
+                    return r == 1;
+                }
+            } catch (RuntimeException e) {
+                // état incohérent vu pendant une écriture : on relit sous verrou
+            }
+        }
+        s = verrou.readLock();
+        try {
+            return arbre.contains(o);
+        } finally {
+            verrou.unlockRead(s);
+        }
+    }
+
+    /**
+     * Copie dans tampon les clés qui suivent depart (cf
+     * {@link ArbreRougeNoir#parcourirBorne}), d'abord en lecture optimiste,
+     * puis sous verrou partagé si une écriture a eu lieu pendant la lecture.
+     *
+     * @return le nombre de clés copiées
+     */
+    private int lire(E depart, boolean inclusif, boolean decroissant, Object[] tampon) {
+        long s = verrou.tryOptimisticRead();
+        if (s != 0) {
+            try {
+                int n = arbre.parcourirBorne(depart, inclusif, decroissant, tampon, PAS_MAX + 4 * tampon.length);
+                if (n != ArbreRougeNoir.ABANDON && verrou.validate(s)) {
+                    return n;
+                }
+            } catch (RuntimeException e) {
+                // état incohérent vu pendant une écriture : on relit sous verrou
+            }
+        }
+        s = verrou.readLock();
+        try {
+            return arbre.parcourirBorne(depart, inclusif, decroissant, tampon, Integer.MAX_VALUE);
+        } finally {
+            verrou.unlockRead(s);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E voisin(E depart, boolean inclusif, boolean decroissant) {
+        if (depart != null) {
+            arbre.comparer(depart, depart); // vérification du type
+        }
+        Object[] tampon = new Object[1];
+        return lire(depart, inclusif, decroissant, tampon) == 0 ? null : (E) tampon[0];
+    }
+
+    public Comparator<? super E> comparator() {
+        return arbre.comparator();
+    }
+
+    /**
+     * Renvoie les métriques de l'arbre, dont les profondeurs sont mesurées
+     * sous le verrou partagé (cf {@link Metriques#mesurer()}). Pour publier
+     * une nouvelle mesure, rappeler cette méthode.
+     */
+    public Metriques metriques() {
+        long s = verrou.readLock();
+        try {
+            return arbre.metriques();
+        } finally {
+            verrou.unlockRead(s);
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public E first() {
+        E e = voisin(null, true, false);
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public E last() {
+        E e = voisin(null, true, true);
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e;
+    }
+
+    public E ceiling(E e) {
+        return voisin(nonNull(e), true, false);
+    }
+
+    public E higher(E e) {
+        return voisin(nonNull(e), false, false);
+    }
+
+    public E floor(E e) {
+        return voisin(nonNull(e), true, true);
+    }
+
+    public E lower(E e) {
+        return voisin(nonNull(e), false, true);
+    }
+
+    private static <T> T nonNull(T e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        return e;
+    }
+
+    /**
+     * Applique action, dans l'ordre croissant, aux clés comprises entre de et
+     * a. Les clés sont lues par lots, chacun en lecture optimiste ; action
+     * est appelée hors de tout verrou et peut donc modifier l'ensemble.
+     */
+    @SuppressWarnings("unchecked")
+    public void parcourir(E de, boolean deInclus, E a, boolean aInclus, Consumer<? super E> action) {
+        Object[] lot = new Object[LOT];
+        E depart = nonNull(de);
+        boolean inclusif = deInclus;
+        while (true) {
+            int n = lire(depart, inclusif, false, lot);
+            for (int i = 0; i < n; i++) {
+                E e = (E) lot[i];
+                int c = arbre.comparer(e, a);
+                if (c > 0 || (c == 0 && !aInclus)) {
+                    return;
+                }
+                action.accept(e);
+            }
+            if (n < LOT) {
+                return;
+            }
+            depart = (E) lot[n - 1];
+            inclusif = false;
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur(false);
+    }
+
+    public Iterator<E> descendingIterator() {
+        return new Iterateur(true);
+    }
+
+    /**
+     * Itérateur faiblement cohérent : il relit l'arbre par lots à partir de la
+     * dernière clé renvoyée.
+     */
+    private final class Iterateur implements Iterator<E> {
+        private final Object[] lot = new Object[LOT];
+        private final boolean decroissant;
+        private int n;
+        private int i;
+        private boolean fini;
+        private E dernier;
+        private boolean retirable;
+
+        Iterateur(boolean decroissant) {
+            this.decroissant = decroissant;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (i < n) {
+                return true;
+            }
+            if (fini) {
+                return false;
+            }
+            n = lire(dernier, false, decroissant, lot);
+            i = 0;
+            fini = n < LOT;
+            return n > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            dernier = (E) lot[i];
+            lot[i++] = null;
+            retirable = true;
+            return dernier;
+        }
+
+        @Override
+        public void remove() {
+            if (!retirable) {
+                throw new IllegalStateException();
+            }
+            ArbreRougeNoirConcurrent.this.remove(dernier);
+            retirable = false;
+        }
+    }
+}
@@ -0,0 +1,634 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>
+ * Ensemble trié persistant sur disque : un {@link ArbreRougeNoir} en mémoire
+ * dont chaque modification est d'abord inscrite dans un journal. Au
+ * démarrage, l'arbre est rechargé depuis le dernier point de contrôle (un
+ * instantané, cf {@link ArbreRougeNoir#sauvegarder}) puis les enregistrements
+ * journalisés depuis sont rejoués.
+ * </p>
+ *
+ * <p>
+ * Le journal est découpé en segments. Chaque enregistrement est encadré par
+ * sa longueur et sa somme de contrôle : un enregistrement à moitié écrit lors
+ * d'un arrêt brutal est reconnu et ignoré, avec tout ce qui le suit dans son
+ * segment. Quand le segment courant dépasse un seuil, un point de contrôle
+ * est pris et les segments qu'il couvre sont supprimés.
+ * </p>
+ *
+ * <p>
+ * La fenêtre de durabilité fixe quand les écritures sont forcées sur disque.
+ * Avec une fenêtre nulle, add et remove ne rendent la main qu'une fois leur
+ * enregistrement sur disque ; les threads qui écrivent en même temps
+ * partagent le même fsync (validation groupée). Avec une fenêtre non nulle,
+ * un thread de fond force le journal à cet intervalle : une panne peut alors
+ * perdre les modifications de la dernière fenêtre, jamais corrompre
+ * l'ensemble.
+ * </p>
+ *
+ * <p>
+ * Toutes les opérations prennent un même verrou ; comme pour
+ * Collections.synchronizedSet, les itérateurs ne le prennent pas, et
+ * l'ensemble ne doit pas être modifié par d'autres threads pendant un
+ * parcours. Une erreur d'entrée-sortie sur le journal est définitive :
+ * l'ensemble refuse ensuite toute modification.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ */
+public class ArbreRougeNoirDurable<E> extends AbstractSet<E> implements Closeable {
+    /** taille du segment de journal au-delà de laquelle un point de contrôle est pris */
+    public static final long SEUIL_DEFAUT = 64L << 20;
+    private static final byte AJOUT = 1;
+    private static final byte RETRAIT = 2;
+    private static final byte VIDAGE = 3;
+    /** volume accumulé en mémoire avant d'être passé au système */
+    private static final int TAMPON = 1 << 16;
+
+    private final ArbreRougeNoir<E> arbre;
+    private final Path repertoire;
+    private final CodecCle<E> codec;
+    private final boolean synchrone;
+    private final long seuil;
+    private final ScheduledExecutorService synchroniseur;
+
+    private final ReentrantLock verrou = new ReentrantLock();
+    private final Condition finSynchronisation = verrou.newCondition();
+    private FileChannel journal;
+    private long segment;
+    private long octetsSegment;
+    private ByteBuffer tampon = ByteBuffer.allocate(2 * TAMPON).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    /** nombre d'enregistrements journalisés, et combien d'entre eux sont sur disque */
+    private long ecrits;
+    private long durables;
+    /** un thread force le journal, verrou relâché */
+    private boolean enCours;
+    private IOException echec;
+    private boolean ferme;
+
+    // Constructeurs
+
+    /**
+     * Ouvre, ou crée s'il est vide, l'ensemble stocké dans repertoire. Les
+     * éléments sont ordonnés selon l'ordre naturel et chaque modification est
+     * sur disque quand add ou remove rend la main.
+     *
+     * @param repertoire
+     *            le répertoire des instantanés et du journal
+     * @param codec
+     *            le codage des clés
+     * @throws IOException
+     *             si le répertoire est illisible ou l'instantané corrompu
+     */
+    public ArbreRougeNoirDurable(Path repertoire, CodecCle<E> codec) throws IOException {
+        this(repertoire, codec, null, Duration.ZERO, SEUIL_DEFAUT);
+    }
+
+    /**
+     * Ouvre, ou crée s'il est vide, l'ensemble stocké dans repertoire
+     *
+     * @param repertoire
+     *            le répertoire des instantanés et du journal
+     * @param codec
+     *            le codage des clés
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel ; le même à
+     *            chaque ouverture
+     * @param fenetre
+     *            le délai maximal avant qu'une modification soit sur disque,
+     *            Duration.ZERO pour attendre chaque écriture
+     * @param seuil
+     *            la taille en octets d'un segment de journal déclenchant un
+     *            point de contrôle, au plus 1 Go
+     * @throws IOException
+     *             si le répertoire est illisible ou l'instantané corrompu
+     */
+    public ArbreRougeNoirDurable(Path repertoire, CodecCle<E> codec, Comparator<? super E> cmp, Duration fenetre,
+            long seuil) throws IOException {
+        if (fenetre.isNegative() || seuil <= 0 || seuil > 1L << 30) {
+            throw new IllegalArgumentException("fenêtre " + fenetre + ", seuil " + seuil);
+        }
+        this.repertoire = repertoire;
+        this.codec = codec;
+        this.seuil = seuil;
+        synchrone = fenetre.isZero();
+
+        Files.createDirectories(repertoire);
+        long instantane = -1;
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(repertoire)) {
+            for (Path f : fichiers) {
+                String nom = f.getFileName().toString();
+                if (nom.startsWith("instantane-") && nom.endsWith(".arbr")) {
+                    instantane = Math.max(instantane, Long.parseLong(nom.substring(11, nom.length() - 5)));
+                } else if (nom.startsWith("journal-") && nom.endsWith(".log")) {
+                    segments.add(Long.parseLong(nom.substring(8, nom.length() - 4)));
+                }
+            }
+        }
+        arbre = instantane < 0 ? new ArbreRougeNoir<>(cmp)
+                : ArbreRougeNoir.restaurer(fichierInstantane(instantane), codec, cmp);
+        Collections.sort(segments);
+        long dernier = instantane;
+        for (long s : segments) {
+            if (s > instantane) {
+                rejouer(fichierJournal(s));
+            }
+            dernier = Math.max(dernier, s);
+        }
+        ouvrir(dernier + 1);
+
+        if (synchrone) {
+            synchroniseur = null;
+        } else {
+            synchroniseur = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal " + repertoire);
+                t.setDaemon(true);
+                return t;
+            });
+            long nanos = fenetre.toNanos();
+            synchroniseur.scheduleWithFixedDelay(this::synchroniserEnFond, nanos, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Fichiers
+
+    private Path fichierInstantane(long n) {
+        return repertoire.resolve(String.format("instantane-%019d.arbr", n));
+    }
+
+    private Path fichierJournal(long n) {
+        return repertoire.resolve(String.format("journal-%019d.log", n));
+    }
+
+    /**
+     * Applique à l'arbre les enregistrements valides d'un segment, jusqu'au
+     * premier enregistrement incomplet ou corrompu
+     */
+    private void rejouer(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException(fichier + " : segment trop grand");
+            }
+            MappedByteBuffer b = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            while (b.remaining() >= 4) {
+                int p = b.position();
+                int n = b.getInt(p);
+                if (n < 1 || n > b.remaining() - 8) {
+                    break;
+                }
+                ByteBuffer enregistrement = b.slice(p + 4, n).order(ByteOrder.LITTLE_ENDIAN);
+                crc.reset();
+                crc.update(enregistrement.duplicate());
+                if ((int) crc.getValue() != b.getInt(p + 4 + n)) {
+                    break;
+                }
+                switch (enregistrement.get()) {
+                case AJOUT:
+                    arbre.add(codec.lire(enregistrement));
+                    break;
+                case RETRAIT:
+                    arbre.remove(codec.lire(enregistrement));
+                    break;
+                case VIDAGE:
+                    arbre.clear();
+                    break;
+                default:
+                    throw new IOException(fichier + " : enregistrement inconnu à l'octet " + p);
+                }
+                b.position(p + n + 8);
+            }
+        }
+    }
+
+    /**
+     * Commence le segment n du journal
+     */
+    private void ouvrir(long n) throws IOException {
+        journal = FileChannel.open(fichierJournal(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segment = n;
+        octetsSegment = 0;
+        forcerRepertoire();
+    }
+
+    /**
+     * Force sur disque les entrées du répertoire (créations, renommages)
+     */
+    private void forcerRepertoire() throws IOException {
+        try (FileChannel canal = FileChannel.open(repertoire, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // certains systèmes ne permettent pas d'ouvrir un répertoire
+        }
+    }
+
+    // Journal (verrou tenu)
+
+    /**
+     * Inscrit dans le tampon l'enregistrement longueur, type, clé, CRC32C,
+     * avant la modification de l'arbre qu'il décrit : si le codage échoue,
+     * le tampon est laissé tel quel et l'arbre n'a pas changé.
+     * L'enregistrement ne compte qu'après {@link #confirmer} ; jusque-là,
+     * {@link #effacer} le retire.
+     *
+     * @return la position de l'enregistrement dans le tampon
+     */
+    private int inscrire(byte type, E cle) throws IOException {
+        int place = (cle == null ? 0 : codec.taille(cle)) + 9;
+        if (tampon.remaining() < place) {
+            ecrire();
+            if (tampon.capacity() < place) {
+                tampon = ByteBuffer.allocate(place).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        int debut = tampon.position();
+        try {
+            tampon.position(debut + 4);
+            tampon.put(type);
+            if (cle != null) {
+                codec.ecrire(cle, tampon);
+            }
+        } catch (RuntimeException e) {
+            tampon.position(debut);
+            throw e;
+        }
+        int n = tampon.position() - debut - 4;
+        tampon.putInt(debut, n);
+        crc.reset();
+        crc.update(tampon.array(), debut + 4, n);
+        tampon.putInt((int) crc.getValue());
+        return debut;
+    }
+
+    /**
+     * Retire du tampon l'enregistrement inscrit à debut, l'arbre n'ayant
+     * finalement pas changé
+     */
+    private void effacer(int debut) {
+        tampon.position(debut);
+    }
+
+    /**
+     * Compte l'enregistrement inscrit à debut, une fois l'arbre modifié
+     */
+    private void confirmer(int debut) throws IOException {
+        ecrits++;
+        octetsSegment += tampon.position() - debut;
+        if (tampon.position() >= TAMPON) {
+            ecrire();
+        }
+    }
+
+    /**
+     * Passe le tampon au système, sans forcer l'écriture sur disque
+     */
+    private void ecrire() throws IOException {
+        tampon.flip();
+        try {
+            while (tampon.hasRemaining()) {
+                journal.write(tampon);
+            }
+        } catch (IOException e) {
+            echec = e;
+            throw e;
+        } finally {
+            tampon.clear();
+        }
+    }
+
+    /**
+     * Attend que les cible premiers enregistrements soient sur disque. Un
+     * seul thread force le journal à la fois, verrou relâché ; ceux qui
+     * arrivent entre-temps attendent, et le suivant force d'un coup tous
+     * leurs enregistrements.
+     */
+    private void attendre(long cible) throws IOException {
+        while (durables < cible) {
+            verifier();
+            if (enCours) {
+                finSynchronisation.awaitUninterruptibly();
+                continue;
+            }
+            enCours = true;
+            try {
+                long lot = ecrits;
+                FileChannel canal = journal;
+                ecrire();
+                verrou.unlock();
+                try {
+                    canal.force(false);
+                } finally {
+                    verrou.lock();
+                }
+                durables = Math.max(durables, lot);
+            } catch (IOException e) {
+                echec = e;
+                throw e;
+            } finally {
+                enCours = false;
+                finSynchronisation.signalAll();
+            }
+        }
+    }
+
+    private void verifier() throws IOException {
+        if (ferme) {
+            throw new IllegalStateException("ensemble fermé");
+        }
+        if (echec != null) {
+            throw new IOException("journal inutilisable", echec);
+        }
+    }
+
+    /**
+     * Rend durable l'enregistrement qui vient d'être journalisé si la
+     * fenêtre est nulle, et prend un point de contrôle si le segment est plein
+     */
+    private void valider() throws IOException {
+        if (synchrone) {
+            attendre(ecrits);
+        }
+        if (octetsSegment >= seuil) {
+            prendrePointDeControle();
+        }
+    }
+
+    private void synchroniserEnFond() {
+        verrou.lock();
+        try {
+            if (!ferme && echec == null) {
+                attendre(ecrits);
+            }
+        } catch (IOException e) {
+            // noté dans echec, signalé à la prochaine modification
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Écrit l'instantané de l'arbre qui couvre le segment courant, passe au
+     * segment suivant et supprime les fichiers devenus inutiles. L'instantané
+     * est renommé d'un coup à la fin de son écriture : une panne avant laisse
+     * l'ancien instantané et tous les segments qui le suivent.
+     */
+    private void prendrePointDeControle() throws IOException {
+        while (enCours) {
+            finSynchronisation.awaitUninterruptibly();
+        }
+        try {
+            ecrire();
+            journal.force(false);
+            durables = ecrits;
+            journal.close();
+            long couvert = segment;
+            ouvrir(couvert + 1);
+            arbre.sauvegarder(fichierInstantane(couvert), codec);
+            forcerRepertoire();
+            try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(repertoire)) {
+                for (Path f : fichiers) {
+                    String nom = f.getFileName().toString();
+                    if ((nom.startsWith("journal-") && nom.endsWith(".log")
+                            && Long.parseLong(nom.substring(8, nom.length() - 4)) <= couvert)
+                            || (nom.startsWith("instantane-") && nom.endsWith(".arbr")
+                                    && Long.parseLong(nom.substring(11, nom.length() - 5)) < couvert)) {
+                        Files.delete(f);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            echec = e;
+            throw e;
+        }
+    }
+
+    // Opérations
+
+    /**
+     * Prend un point de contrôle : l'arbre est écrit dans un instantané et le
+     * journal repart de zéro. Les modifications attendent la fin de
+     * l'écriture.
+     *
+     * @throws IOException
+     *             si l'écriture échoue
+     */
+    public void pointDeControle() throws IOException {
+        verrou.lock();
+        try {
+            verifier();
+            prendrePointDeControle();
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Attend que toutes les modifications faites jusqu'ici soient sur disque
+     *
+     * @throws IOException
+     *             si l'écriture du journal échoue
+     */
+    public void synchroniser() throws IOException {
+        verrou.lock();
+        try {
+            attendre(ecrits);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException
+     *             si l'écriture du journal échoue
+     */
+    @Override
+    public boolean add(E e) {
+        verrou.lock();
+        try {
+            verifier();
+            int debut = inscrire(AJOUT, e);
+            boolean ajoute;
+            try {
+                ajoute = arbre.add(e);
+            } catch (RuntimeException ex) {
+                effacer(debut);
+                throw ex;
+            }
+            if (!ajoute) {
+                effacer(debut);
+                return false;
+            }
+            confirmer(debut);
+            valider();
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * @throws UncheckedIOException
+     *             si l'écriture du journal échoue
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        verrou.lock();
+        try {
+            verifier();
+            ArbreRougeNoir<E>.Noeud z = arbre.rechercher(o);
+            if (z == null) {
+                return false;
+            }
+            int debut = inscrire(RETRAIT, (E) o);
+            arbre.supprimer(z);
+            confirmer(debut);
+            valider();
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        verrou.lock();
+        try {
+            verifier();
+            int debut = inscrire(VIDAGE, null);
+            arbre.clear();
+            confirmer(debut);
+            valider();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        verrou.lock();
+        try {
+            return arbre.contains(o);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        verrou.lock();
+        try {
+            return arbre.size();
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    public Comparator<? super E> comparator() {
+        return arbre.comparator();
+    }
+
+    /**
+     * Le remove() de l'itérateur est journalisé comme celui de l'ensemble
+     */
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<E> it = arbre.iterator();
+        return new Iterator<E>() {
+            private E dernier;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return dernier = it.next();
+            }
+
+            @Override
+            public void remove() {
+                verrou.lock();
+                try {
+                    verifier();
+                    int debut = inscrire(RETRAIT, dernier);
+                    try {
+                        it.remove();
+                    } catch (RuntimeException ex) {
+                        effacer(debut);
+                        throw ex;
+                    }
+                    confirmer(debut);
+                    valider();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } finally {
+                    verrou.unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Force le journal sur disque et le ferme. L'ensemble ne peut plus être
+     * modifié ; il se rouvre avec le constructeur.
+     */
+    @Override
+    public void close() throws IOException {
+        if (synchroniseur != null) {
+            synchroniseur.shutdown();
+        }
+        verrou.lock();
+        try {
+            if (ferme) {
+                return;
+            }
+            while (enCours) {
+                finSynchronisation.awaitUninterruptibly();
+            }
+            ferme = true;
+            if (echec == null) {
+                ecrire();
+                journal.force(false);
+            }
+            journal.close();
+        } finally {
+            verrou.unlock();
+        }
+    }
+}
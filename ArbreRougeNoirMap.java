@@ -0,0 +1,881 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Table triée sur un arbre rouge-noir : l'insertion, la suppression et les
+ * rotations sont celles d'{@link ArbreRougeNoir}, et la valeur est rangée
+ * dans le noeud de sa clé. Il n'y a donc ni paire allouée par entrée, ni
+ * objet sonde pour les recherches : get et les recherches de voisins
+ * n'allouent rien, et put, putIfAbsent, computeIfAbsent, computeIfPresent,
+ * compute et merge ne font qu'une descente.
+ * </p>
+ *
+ * <p>
+ * Seules les entrées de l'itérateur de entrySet sont les noeuds eux-mêmes :
+ * setValue modifie la table, et une entrée ne vaut que jusqu'à la
+ * suppression suivante (qui peut faire remonter une autre clé dans son
+ * noeud). firstEntry, floorEntry, ceilingEntry, pollFirstEntry, etc.
+ * renvoient une copie figée, comme TreeMap.
+ * </p>
+ *
+ * @param <K>
+ *            le type des clés
+ * @param <V>
+ *            le type des valeurs
+ */
+public class ArbreRougeNoirMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    /**
+     * Arbre des clés, dont les noeuds portent les valeurs
+     */
+    private final class Cles extends ArbreRougeNoir<K> {
+
+        final class Entree extends Noeud implements Map.Entry<K, V> {
+            V valeur;
+
+            Entree(K cle) {
+                super(cle);
+            }
+
+            @Override
+            public K getKey() {
+                return cle;
+            }
+
+            @Override
+            public V getValue() {
+                return valeur;
+            }
+
+            @Override
+            public V setValue(V v) {
+                V ancienne = valeur;
+                valeur = v;
+                return ancienne;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return Objects.equals(cle, e.getKey()) && Objects.equals(valeur, e.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hashCode(cle) ^ Objects.hashCode(valeur);
+            }
+
+            @Override
+            public String toString() {
+                return cle + "=" + valeur;
+            }
+        }
+
+        Cles(Comparator<? super K> cmp) {
+            super(cmp);
+        }
+
+        @Override
+        Noeud creerNoeud(K cle) {
+            return new Entree(cle);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void deplacer(Noeud de, Noeud vers) {
+            ((Entree) vers).valeur = ((Entree) de).valeur;
+        }
+
+        /**
+         * Renvoie l'entrée du noeud n, null pour la sentinelle ou null
+         */
+        @SuppressWarnings("unchecked")
+        Entree entree(Noeud n) {
+            return n == null || n == sentinelle ? null : (Entree) n;
+        }
+
+        /**
+         * Insère cle avec valeur à la place trouvée par le dernier localiser
+         */
+        Entree accrocher(K cle, V valeur) {
+            Entree e = new Entree(cle);
+            e.valeur = valeur;
+            accrocherALaPlace(e);
+            return e;
+        }
+
+        /**
+         * Parcourt les entrées de premier (null pour aucune) jusqu'à limite
+         */
+        @SuppressWarnings("unchecked")
+        Iterator<Map.Entry<K, V>> entrees(Entree premier, boolean decroissant, boolean borne, K limite,
+                boolean limiteIncluse) {
+            return parcours(premier == null ? sentinelle : premier, decroissant, borne, limite, limiteIncluse,
+                    n -> (Entree) n);
+        }
+
+        // les clés n'entrent que par la table, avec leur valeur ; keySet
+        // n'accepte que les retraits
+
+        @Override
+        public boolean add(K e) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends K> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean addHint(Curseur curseur, K e) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final Cles cles;
+    /** la table entière, vue sans bornes */
+    private final Vue tout;
+
+    // Constructeurs
+
+    /**
+     * Crée une table vide, dans l'ordre naturel des clés
+     */
+    public ArbreRougeNoirMap() {
+        this((Comparator<? super K>) null);
+    }
+
+    /**
+     * Crée une table vide
+     *
+     * @param cmp
+     *            le comparateur des clés, null pour l'ordre naturel
+     */
+    public ArbreRougeNoirMap(Comparator<? super K> cmp) {
+        cles = new Cles(cmp);
+        tout = new Vue(null, false, true, null, false, true, false);
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel des clés
+     *
+     * @param m
+     *            la table à copier
+     */
+    public ArbreRougeNoirMap(Map<? extends K, ? extends V> m) {
+        this((Comparator<? super K>) null);
+        putAll(m);
+    }
+
+    // Accès en une descente
+
+    @Override
+    public int size() {
+        return cles.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cles.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object o) {
+        return cles.rechercher(o) != null;
+    }
+
+    @Override
+    public V get(Object o) {
+        Cles.Entree e = cles.entree(cles.rechercher(o));
+        return e == null ? null : e.valeur;
+    }
+
+    @Override
+    public V getOrDefault(Object o, V defaut) {
+        Cles.Entree e = cles.entree(cles.rechercher(o));
+        return e == null ? defaut : e.valeur;
+    }
+
+    @Override
+    public V put(K cle, V valeur) {
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        if (e == null) {
+            cles.accrocher(cle, valeur);
+            return null;
+        }
+        return e.setValue(valeur);
+    }
+
+    @Override
+    public V putIfAbsent(K cle, V valeur) {
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        if (e == null) {
+            cles.accrocher(cle, valeur);
+            return null;
+        }
+        return e.valeur != null ? e.valeur : e.setValue(valeur);
+    }
+
+    @Override
+    public V computeIfAbsent(K cle, Function<? super K, ? extends V> f) {
+        Objects.requireNonNull(f);
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        if (e != null && e.valeur != null) {
+            return e.valeur;
+        }
+        V v = f.apply(cle);
+        cles.verifierPlace();
+        if (v != null) {
+            if (e == null) {
+                cles.accrocher(cle, v);
+            } else {
+                e.valeur = v;
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public V computeIfPresent(K cle, BiFunction<? super K, ? super V, ? extends V> f) {
+        Objects.requireNonNull(f);
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        if (e == null || e.valeur == null) {
+            return null;
+        }
+        V v = f.apply(cle, e.valeur);
+        cles.verifierPlace();
+        if (v == null) {
+            cles.supprimer(e);
+        } else {
+            e.valeur = v;
+        }
+        return v;
+    }
+
+    @Override
+    public V compute(K cle, BiFunction<? super K, ? super V, ? extends V> f) {
+        Objects.requireNonNull(f);
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        V v = f.apply(cle, e == null ? null : e.valeur);
+        cles.verifierPlace();
+        if (v == null) {
+            if (e != null) {
+                cles.supprimer(e);
+            }
+        } else if (e == null) {
+            cles.accrocher(cle, v);
+        } else {
+            e.valeur = v;
+        }
+        return v;
+    }
+
+    @Override
+    public V merge(K cle, V valeur, BiFunction<? super V, ? super V, ? extends V> f) {
+        Objects.requireNonNull(f);
+        Objects.requireNonNull(valeur);
+        Cles.Entree e = cles.entree(cles.localiser(Objects.requireNonNull(cle)));
+        if (e == null) {
+            cles.accrocher(cle, valeur);
+            return valeur;
+        }
+        if (e.valeur == null) {
+            e.valeur = valeur;
+            return valeur;
+        }
+        V v = f.apply(e.valeur, valeur);
+        cles.verifierPlace();
+        if (v == null) {
+            cles.supprimer(e);
+        } else {
+            e.valeur = v;
+        }
+        return v;
+    }
+
+    @Override
+    public V remove(Object o) {
+        Cles.Entree e = cles.entree(cles.rechercher(o));
+        if (e == null) {
+            return null;
+        }
+        V v = e.valeur;
+        cles.supprimer(e);
+        return v;
+    }
+
+    @Override
+    public void clear() {
+        cles.clear();
+    }
+
+    // Navigation, déléguée à la vue sans bornes
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return cles.comparator();
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return tout.firstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return tout.lastEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return tout.pollFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return tout.pollLastEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K cle) {
+        return tout.lowerEntry(cle);
+    }
+
+    @Override
+    public K lowerKey(K cle) {
+        return tout.lowerKey(cle);
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K cle) {
+        return tout.floorEntry(cle);
+    }
+
+    @Override
+    public K floorKey(K cle) {
+        return tout.floorKey(cle);
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K cle) {
+        return tout.ceilingEntry(cle);
+    }
+
+    @Override
+    public K ceilingKey(K cle) {
+        return tout.ceilingKey(cle);
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K cle) {
+        return tout.higherEntry(cle);
+    }
+
+    @Override
+    public K higherKey(K cle) {
+        return tout.higherKey(cle);
+    }
+
+    @Override
+    public K firstKey() {
+        return tout.firstKey();
+    }
+
+    @Override
+    public K lastKey() {
+        return tout.lastKey();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return tout.entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return cles;
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return cles;
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return cles.descendingSet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return tout.descendingMap();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return tout.subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return tout.headMap(toKey, inclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return tout.tailMap(fromKey, inclusive);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    private static <K> K cle(Map.Entry<K, ?> e) {
+        return e == null ? null : e.getKey();
+    }
+
+    /** copie figée de e, qui ne suit pas les modifications de son noeud */
+    private static <K, V> Map.Entry<K, V> copie(Map.Entry<K, V> e) {
+        return e == null ? null : new AbstractMap.SimpleImmutableEntry<>(e);
+    }
+
+    /**
+     * Vue d'un intervalle de clés, éventuellement dans l'ordre inverse ; les
+     * bornes suivent les conventions du SousEnsemble d'ArbreRougeNoir
+     */
+    private final class Vue extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final K bas;
+        private final boolean basInclus;
+        private final boolean depuisDebut;
+        private final K haut;
+        private final boolean hautInclus;
+        private final boolean jusquaFin;
+        private final boolean decroissant;
+
+        Vue(K bas, boolean basInclus, boolean depuisDebut, K haut, boolean hautInclus, boolean jusquaFin,
+                boolean decroissant) {
+            this.bas = bas;
+            this.basInclus = basInclus;
+            this.depuisDebut = depuisDebut;
+            this.haut = haut;
+            this.hautInclus = hautInclus;
+            this.jusquaFin = jusquaFin;
+            this.decroissant = decroissant;
+        }
+
+        private boolean tropBas(K k) {
+            if (depuisDebut) {
+                return false;
+            }
+            int c = cles.comparer(k, bas);
+            return c < 0 || (c == 0 && !basInclus);
+        }
+
+        private boolean tropHaut(K k) {
+            if (jusquaFin) {
+                return false;
+            }
+            int c = cles.comparer(k, haut);
+            return c > 0 || (c == 0 && !hautInclus);
+        }
+
+        private boolean dansBornes(K k) {
+            return !tropBas(k) && !tropHaut(k);
+        }
+
+        private boolean bornePermise(K k, boolean inclusif) {
+            if (inclusif) {
+                return dansBornes(k);
+            }
+            return (depuisDebut || cles.comparer(k, bas) >= 0) && (jusquaFin || cles.comparer(k, haut) <= 0);
+        }
+
+        // entrées extrêmes et voisines dans l'ordre croissant, null si aucune
+
+        private Cles.Entree premier() {
+            Cles.Entree e = cles.entree(depuisDebut ? cles.premierNoeud() : cles.plafond(bas, basInclus));
+            return e == null || tropHaut(e.cle) ? null : e;
+        }
+
+        private Cles.Entree dernier() {
+            Cles.Entree e = cles.entree(jusquaFin ? cles.dernierNoeud() : cles.plancher(haut, hautInclus));
+            return e == null || tropBas(e.cle) ? null : e;
+        }
+
+        private Cles.Entree plafond(K k, boolean inclusif) {
+            if (tropBas(k)) {
+                return premier();
+            }
+            Cles.Entree e = cles.entree(cles.plafond(k, inclusif));
+            return e == null || tropHaut(e.cle) ? null : e;
+        }
+
+        private Cles.Entree plancher(K k, boolean inclusif) {
+            if (tropHaut(k)) {
+                return dernier();
+            }
+            Cles.Entree e = cles.entree(cles.plancher(k, inclusif));
+            return e == null || tropBas(e.cle) ? null : e;
+        }
+
+        private Iterator<Map.Entry<K, V>> croissant() {
+            return cles.entrees(premier(), false, !jusquaFin, haut, hautInclus);
+        }
+
+        private Iterator<Map.Entry<K, V>> inverse() {
+            return cles.entrees(dernier(), true, !depuisDebut, bas, basInclus);
+        }
+
+        /**
+         * Retire e et en renvoie une copie : le noeud peut recevoir la clé
+         * de son successeur
+         */
+        private Map.Entry<K, V> extraire(Cles.Entree e) {
+            Map.Entry<K, V> c = copie(e);
+            if (e != null) {
+                cles.supprimer(e);
+            }
+            return c;
+        }
+
+        @Override
+        public int size() {
+            if (depuisDebut && jusquaFin) {
+                return cles.size();
+            }
+            int n = 0;
+            for (Iterator<Map.Entry<K, V>> it = croissant(); it.hasNext(); it.next()) {
+                n++;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return premier() == null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean containsKey(Object o) {
+            return o != null && dansBornes((K) o) && cles.rechercher(o) != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object o) {
+            return o != null && dansBornes((K) o) ? ArbreRougeNoirMap.this.get(o) : null;
+        }
+
+        @Override
+        public V put(K cle, V valeur) {
+            if (!dansBornes(cle)) {
+                throw new IllegalArgumentException("clé hors de l'intervalle");
+            }
+            return ArbreRougeNoirMap.this.put(cle, valeur);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V remove(Object o) {
+            return o != null && dansBornes((K) o) ? ArbreRougeNoirMap.this.remove(o) : null;
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new Entrees();
+        }
+
+        /**
+         * Les entrées de la vue, dans son ordre
+         */
+        private final class Entrees extends AbstractSet<Map.Entry<K, V>> {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return decroissant ? inverse() : croissant();
+            }
+
+            @Override
+            public int size() {
+                return Vue.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return Vue.this.isEmpty();
+            }
+
+            /**
+             * Renvoie l'entrée de la table égale à o, null s'il n'y en a pas
+             */
+            @SuppressWarnings("unchecked")
+            private Cles.Entree trouver(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return null;
+                }
+                Map.Entry<?, ?> m = (Map.Entry<?, ?>) o;
+                Object k = m.getKey();
+                if (k == null || !dansBornes((K) k)) {
+                    return null;
+                }
+                Cles.Entree e = cles.entree(cles.rechercher(k));
+                return e != null && Objects.equals(e.valeur, m.getValue()) ? e : null;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return trouver(o) != null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                Cles.Entree e = trouver(o);
+                if (e == null) {
+                    return false;
+                }
+                cles.supprimer(e);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                Vue.this.clear();
+            }
+        }
+
+        @Override
+        public void clear() {
+            if (depuisDebut && jusquaFin) {
+                cles.clear();
+                return;
+            }
+            for (Iterator<Map.Entry<K, V>> it = croissant(); it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> c = cles.comparator();
+            return decroissant ? Collections.reverseOrder(c) : c;
+        }
+
+        /** le noeud de la première clé de la vue, dans son ordre */
+        private Cles.Entree tete() {
+            return decroissant ? dernier() : premier();
+        }
+
+        /** le noeud de la dernière clé de la vue, dans son ordre */
+        private Cles.Entree queue() {
+            return decroissant ? premier() : dernier();
+        }
+
+        /** le noeud de la plus grande clé avant k, dans l'ordre de la vue */
+        private Cles.Entree avant(K k, boolean inclusif) {
+            return decroissant ? plafond(k, inclusif) : plancher(k, inclusif);
+        }
+
+        /** le noeud de la plus petite clé après k, dans l'ordre de la vue */
+        private Cles.Entree apres(K k, boolean inclusif) {
+            return decroissant ? plancher(k, inclusif) : plafond(k, inclusif);
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return copie(tete());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return copie(queue());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            return extraire(tete());
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            return extraire(queue());
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K k) {
+            return copie(avant(k, false));
+        }
+
+        @Override
+        public K lowerKey(K k) {
+            return cle(avant(k, false));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K k) {
+            return copie(avant(k, true));
+        }
+
+        @Override
+        public K floorKey(K k) {
+            return cle(avant(k, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K k) {
+            return copie(apres(k, true));
+        }
+
+        @Override
+        public K ceilingKey(K k) {
+            return cle(apres(k, true));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K k) {
+            return copie(apres(k, false));
+        }
+
+        @Override
+        public K higherKey(K k) {
+            return cle(apres(k, false));
+        }
+
+        @Override
+        public K firstKey() {
+            Cles.Entree e = tete();
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            return e.getKey();
+        }
+
+        @Override
+        public K lastKey() {
+            Cles.Entree e = queue();
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            return e.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            NavigableSet<K> s;
+            if (depuisDebut) {
+                s = jusquaFin ? cles : cles.headSet(haut, hautInclus);
+            } else {
+                s = jusquaFin ? cles.tailSet(bas, basInclus) : cles.subSet(bas, basInclus, haut, hautInclus);
+            }
+            return decroissant ? s.descendingSet() : s;
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return navigableKeySet().descendingSet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new Vue(bas, basInclus, depuisDebut, haut, hautInclus, jusquaFin, !decroissant);
+        }
+
+        /**
+         * Crée une sous-vue ; les bornes absentes sont reprises de cette vue
+         */
+        private NavigableMap<K, V> sousVue(K lo, boolean loInclus, boolean sansBas, K hi, boolean hiInclus,
+                boolean sansHaut) {
+            if (sansBas) {
+                lo = bas;
+                loInclus = basInclus;
+                sansBas = depuisDebut;
+            } else if (!bornePermise(lo, loInclus)) {
+                throw new IllegalArgumentException("borne hors de l'intervalle");
+            }
+            if (sansHaut) {
+                hi = haut;
+                hiInclus = hautInclus;
+                sansHaut = jusquaFin;
+            } else if (!bornePermise(hi, hiInclus)) {
+                throw new IllegalArgumentException("borne hors de l'intervalle");
+            }
+            if (!sansBas && !sansHaut && cles.comparer(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new Vue(lo, loInclus, sansBas, hi, hiInclus, sansHaut, decroissant);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (decroissant) {
+                return sousVue(toKey, toInclusive, false, fromKey, fromInclusive, false);
+            }
+            return sousVue(fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (decroissant) {
+                return sousVue(toKey, inclusive, false, null, false, true);
+            }
+            return sousVue(null, false, true, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (decroissant) {
+                return sousVue(null, false, true, fromKey, inclusive, false);
+            }
+            return sousVue(fromKey, inclusive, false, null, false, true);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Multi-ensemble trié sur un arbre rouge-noir : chaque clé distincte occupe
+ * un seul noeud, qui porte son nombre d'occurrences. Pour des données très
+ * répétitives (codes d'état, valeurs regroupées par tranches), le nombre de
+ * noeuds, la hauteur et la mémoire dépendent du nombre de clés distinctes et
+ * non du nombre total d'occurrences.
+ * </p>
+ *
+ * <p>
+ * {@link #size()} est le nombre total d'occurrences (borné à
+ * Integer.MAX_VALUE), et l'itérateur renvoie chaque clé autant de fois
+ * qu'elle est présente, dans l'ordre de l'arbre. {@link #elementSet()} donne
+ * les clés distinctes.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés
+ */
+public class ArbreRougeNoirMultiple<E> extends AbstractCollection<E> {
+
+    /**
+     * Arbre des clés distinctes, dont les noeuds portent le nombre
+     * d'occurrences
+     */
+    private static final class Cles<E> extends ArbreRougeNoir<E> {
+        /** nombre total d'occurrences */
+        long total;
+        /** nombre de changements, pour les itérateurs */
+        int changements;
+
+        private final class NoeudCompte extends Noeud {
+            int nombre;
+
+            NoeudCompte(E cle) {
+                super(cle);
+            }
+        }
+
+        Cles(Comparator<? super E> cmp) {
+            super(cmp);
+        }
+
+        @Override
+        Noeud creerNoeud(E cle) {
+            return new NoeudCompte(cle);
+        }
+
+        @Override
+        void deplacer(Noeud de, Noeud vers) {
+            ((NoeudCompte) vers).nombre = ((NoeudCompte) de).nombre;
+        }
+
+        int ajouter(E cle, int n) {
+            if (cle == null) {
+                throw new NullPointerException();
+            }
+            if (n < 0) {
+                throw new IllegalArgumentException("nombre d'occurrences négatif : " + n);
+            }
+            if (n == 0) {
+                return compter(cle);
+            }
+            int avant = size();
+            NoeudCompte x = (NoeudCompte) inserer(sentinelle, cle);
+            int precedent = size() != avant ? 0 : x.nombre;
+            if (n > Integer.MAX_VALUE - precedent) {
+                throw new IllegalArgumentException("plus de Integer.MAX_VALUE occurrences de " + cle);
+            }
+            x.nombre = precedent + n;
+            total += n;
+            changements++;
+            return precedent;
+        }
+
+        int compter(Object o) {
+            Noeud x = rechercher(o);
+            return x == null ? 0 : ((NoeudCompte) x).nombre;
+        }
+
+        int retirer(Object o, int n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("nombre d'occurrences négatif : " + n);
+            }
+            Noeud x = rechercher(o);
+            if (x == null || n == 0) {
+                return x == null ? 0 : ((NoeudCompte) x).nombre;
+            }
+            NoeudCompte c = (NoeudCompte) x;
+            int precedent = c.nombre;
+            if (n >= precedent) {
+                supprimer(c);
+                total -= precedent;
+            } else {
+                c.nombre = precedent - n;
+                total -= n;
+            }
+            changements++;
+            return precedent;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            total = 0;
+            changements++;
+        }
+
+        /**
+         * Itérateur qui renvoie chaque clé autant de fois qu'elle est
+         * présente
+         */
+        final class Occurrences implements Iterator<E> {
+            /** le noeud de la prochaine occurrence */
+            private Noeud noeud = premierNoeud();
+            /** occurrences de noeud restant à renvoyer */
+            private int restantes = noeud == sentinelle ? 0 : ((NoeudCompte) noeud).nombre;
+            /** le noeud de la dernière occurrence renvoyée, null après remove */
+            private NoeudCompte dernier;
+            private int attendus = changements;
+
+            @Override
+            public boolean hasNext() {
+                return noeud != sentinelle;
+            }
+
+            @Override
+            public E next() {
+                if (attendus != changements) {
+                    throw new ConcurrentModificationException();
+                }
+                if (noeud == sentinelle) {
+                    throw new NoSuchElementException();
+                }
+                dernier = (NoeudCompte) noeud;
+                if (--restantes == 0) {
+                    noeud = noeud.suivant();
+                    restantes = noeud == sentinelle ? 0 : ((NoeudCompte) noeud).nombre;
+                }
+                return dernier.cle;
+            }
+
+            @Override
+            public void remove() {
+                if (dernier == null) {
+                    throw new IllegalStateException();
+                }
+                if (attendus != changements) {
+                    throw new ConcurrentModificationException();
+                }
+                if (dernier.nombre > 1) {
+                    dernier.nombre--;
+                } else {
+                    // dernière occurrence : noeud est déjà passé au suivant,
+                    // dont la clé peut remonter dans dernier
+                    noeud = supprimer(dernier);
+                }
+                total--;
+                attendus = ++changements;
+                dernier = null;
+            }
+        }
+    }
+
+    private final Cles<E> cles;
+
+    // Constructeurs
+
+    /**
+     * Crée un multi-ensemble vide, dans l'ordre naturel des clés
+     */
+    public ArbreRougeNoirMultiple() {
+        this((Comparator<? super E>) null);
+    }
+
+    /**
+     * Crée un multi-ensemble vide
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     */
+    public ArbreRougeNoirMultiple(Comparator<? super E> cmp) {
+        cles = new Cles<>(cmp);
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel : chaque élément de c
+     * compte pour une occurrence
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreRougeNoirMultiple(Collection<? extends E> c) {
+        this((Comparator<? super E>) null);
+        addAll(c);
+    }
+
+    // Occurrences
+
+    /**
+     * Ajoute n occurrences de cle
+     *
+     * @return le nombre d'occurrences de cle avant l'ajout
+     * @throws IllegalArgumentException
+     *             si n est négatif ou si cle dépasserait Integer.MAX_VALUE
+     *             occurrences
+     */
+    public int add(E cle, int n) {
+        return cles.ajouter(cle, n);
+    }
+
+    /**
+     * Renvoie le nombre d'occurrences de o, 0 s'il est absent
+     */
+    public int count(Object o) {
+        return cles.compter(o);
+    }
+
+    /**
+     * Retire n occurrences de o, ou toutes s'il y en a moins de n
+     *
+     * @return le nombre d'occurrences de o avant le retrait
+     * @throws IllegalArgumentException
+     *             si n est négatif
+     */
+    public int remove(Object o, int n) {
+        return cles.retirer(o, n);
+    }
+
+    /**
+     * Renvoie la vue non modifiable des clés distinctes, dans l'ordre du
+     * multi-ensemble
+     */
+    public NavigableSet<E> elementSet() {
+        return Collections.unmodifiableNavigableSet(cles);
+    }
+
+    /**
+     * Renvoie le comparateur, null pour l'ordre naturel
+     */
+    public Comparator<? super E> comparator() {
+        return cles.comparator();
+    }
+
+    // Collection
+
+    @Override
+    public boolean add(E e) {
+        cles.ajouter(e, 1);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return cles.retirer(o, 1) > 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return cles.compter(o) > 0;
+    }
+
+    /**
+     * Renvoie le nombre total d'occurrences, borné à Integer.MAX_VALUE
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(cles.total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cles.total == 0;
+    }
+
+    @Override
+    public void clear() {
+        cles.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return cles.new Occurrences();
+    }
+}
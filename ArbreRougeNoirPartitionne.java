@@ -0,0 +1,659 @@
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Ensemble trié partagé entre threads, découpé en tranches de clés
+ * consécutives. Chaque tranche est un {@link ArbreRougeNoir} protégé par son
+ * propre StampedLock : des écritures qui tombent dans des tranches
+ * différentes ne se gênent pas, si bien que l'ingestion de clés réparties
+ * uniformément profite de tous les coeurs. Les lectures suivent le schéma de
+ * {@link ArbreRougeNoirConcurrent} : lecture optimiste, puis verrou partagé
+ * si une écriture a eu lieu entre-temps.
+ * </p>
+ *
+ * <p>
+ * Les bornes des tranches s'adaptent d'elles-mêmes : une tranche qui dépasse
+ * sa taille maximale, ou dont le verrou est souvent disputé, est coupée en
+ * deux à sa médiane ; deux tranches voisines presque vides sont fusionnées.
+ * Elles peuvent aussi être fixées d'avance à partir d'un échantillon de clés
+ * (cf {@link #partitionner}). La table des tranches est remplacée en bloc à
+ * chaque découpe ; une écriture qui trouve sa tranche retirée recommence
+ * avec la nouvelle table.
+ * </p>
+ *
+ * <p>
+ * Les parcours enchaînent les tranches dans l'ordre et lisent les clés par
+ * lots, chacun reflétant un état de sa tranche : ils sont faiblement
+ * cohérents et ne lèvent jamais ConcurrentModificationException. Un parcours
+ * d'intervalle ne lit que les tranches qui le recouvrent. size() additionne
+ * les tailles des tranches sans verrou.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'ensemble
+ */
+public class ArbreRougeNoirPartitionne<E> extends AbstractSet<E> {
+    /** taille maximale par défaut d'une tranche */
+    public static final int TAILLE_MAX_DEFAUT = 1 << 16;
+    /**
+     * Taille en dessous de laquelle une tranche disputée n'est plus coupée ;
+     * une tranche qui descend sous le quart est fusionnée avec une voisine
+     */
+    private static final int TAILLE_MIN = 256;
+    /**
+     * Une tranche est coupée quand plus de CONFLITS_MAX de ses écritures, et
+     * plus d'une sur CONFLITS_PART, ont dû attendre son verrou
+     */
+    private static final int CONFLITS_MAX = 64;
+    private static final int CONFLITS_PART = 16;
+    /** nombre de clés lues par lot lors des parcours */
+    private static final int LOT = 64;
+    /** cf ArbreRougeNoirConcurrent */
+    private static final int PAS_MAX = 256;
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+
+    private static final class Tranche<E> {
+        /** plus petite clé admise, null pour la première tranche */
+        final E bas;
+        final ArbreRougeNoir<E> arbre;
+        final StampedLock verrou = new StampedLock();
+        /** nombre d'écritures, et de celles qui ont dû attendre le verrou, approximatifs */
+        int ecritures;
+        int conflits;
+        /** true une fois la tranche remplacée dans la table (écrit sous verrou exclusif) */
+        volatile boolean retiree;
+
+        Tranche(E bas, ArbreRougeNoir<E> arbre) {
+            this.bas = bas;
+            this.arbre = arbre;
+        }
+    }
+
+    private final Comparator<? super E> ordre;
+    private final Comparator<? super E> cmp;
+    private final int tailleMax;
+    /** les tranches dans l'ordre de leurs bornes, remplacées en bloc */
+    private volatile Tranche<E>[] tranches;
+    /** sérialise les découpes, fusions et répartitions */
+    private final ReentrantLock restructuration = new ReentrantLock();
+
+    // Constructeurs
+
+    /**
+     * Crée un ensemble vide. Les éléments sont ordonnés selon l'ordre naturel
+     */
+    public ArbreRougeNoirPartitionne() {
+        this(null, TAILLE_MAX_DEFAUT);
+    }
+
+    /**
+     * Crée un ensemble vide ordonné par le comparateur
+     *
+     * @param cmp
+     *            le comparateur utilisé pour définir l'ordre des éléments
+     */
+    public ArbreRougeNoirPartitionne(Comparator<? super E> cmp) {
+        this(cmp, TAILLE_MAX_DEFAUT);
+    }
+
+    /**
+     * Crée un ensemble vide ordonné par le comparateur
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     * @param tailleMax
+     *            le nombre de clés au-delà duquel une tranche est coupée en
+     *            deux
+     */
+    public ArbreRougeNoirPartitionne(Comparator<? super E> cmp, int tailleMax) {
+        if (tailleMax < 2 * TAILLE_MIN) {
+            throw new IllegalArgumentException("taille maximale " + tailleMax + " < " + 2 * TAILLE_MIN);
+        }
+        ordre = cmp;
+        this.cmp = cmp != null ? cmp : ORDRE_NATUREL;
+        this.tailleMax = tailleMax;
+        tranches = tableau(1);
+        tranches[0] = new Tranche<>(null, new ArbreRougeNoir<>(cmp));
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel. Les clés sont réparties
+     * en tranches à moitié pleines.
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreRougeNoirPartitionne(Collection<? extends E> c) {
+        this(null, TAILLE_MAX_DEFAUT);
+        Object[] cles = new ArbreRougeNoir<E>(c).toArray();
+        tranches = decouper(cles, cles.length, tailleMax / 2);
+    }
+
+    // Tranches
+
+    /**
+     * Crée une table de n tranches vides
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Tranche<E>[] tableau(int n) {
+        return (Tranche<E>[]) new Tranche<?>[n];
+    }
+
+    /**
+     * Renvoie l'indice de la tranche de e dans tab
+     */
+    private int indice(Tranche<E>[] tab, E e) {
+        int g = 1;
+        int d = tab.length - 1;
+        int r = 0;
+        while (g <= d) {
+            int m = (g + d) >>> 1;
+            if (cmp.compare(tab[m].bas, e) <= 0) {
+                r = m;
+                g = m + 1;
+            } else {
+                d = m - 1;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Crée une tranche avec les clés cles[debut..fin[, strictement
+     * croissantes
+     */
+    private Tranche<E> tranche(E bas, Object[] cles, int debut, int fin) {
+        ArbreRougeNoir<E> arbre = new ArbreRougeNoir<>(ordre);
+        arbre.chargerTrie(Arrays.copyOfRange(cles, debut, fin), fin - debut);
+        return new Tranche<>(bas, arbre);
+    }
+
+    /**
+     * Répartit les n premières clés de cles, triées, en tranches d'au plus
+     * pas clés
+     */
+    @SuppressWarnings("unchecked")
+    private Tranche<E>[] decouper(Object[] cles, int n, int pas) {
+        int k = Math.max(1, (n + pas - 1) / pas);
+        Tranche<E>[] tab = tableau(k);
+        for (int i = 0; i < k; i++) {
+            int debut = (int) ((long) n * i / k);
+            tab[i] = tranche(i == 0 ? null : (E) cles[debut], cles, debut, (int) ((long) n * (i + 1) / k));
+        }
+        return tab;
+    }
+
+    /**
+     * Remplace dans la table les tranches [debut, fin[ par nouvelles. Le
+     * verrou de restructuration et les verrous exclusifs des tranches
+     * remplacées sont tenus.
+     */
+    private void remplacer(Tranche<E>[] tab, int debut, int fin, Tranche<E>[] nouvelles) {
+        Tranche<E>[] t = tableau(tab.length - (fin - debut) + nouvelles.length);
+        System.arraycopy(tab, 0, t, 0, debut);
+        System.arraycopy(nouvelles, 0, t, debut, nouvelles.length);
+        System.arraycopy(tab, fin, t, debut + nouvelles.length, tab.length - fin);
+        tranches = t;
+        for (int i = debut; i < fin; i++) {
+            tab[i].retiree = true;
+        }
+    }
+
+    /**
+     * Coupe t en deux à sa médiane, sauf si une autre restructuration est en
+     * cours (la prochaine écriture dans t réessaiera)
+     */
+    private void diviser(Tranche<E> t) {
+        if (!restructuration.tryLock()) {
+            return;
+        }
+        try {
+            long s = t.verrou.writeLock();
+            try {
+                int n = t.arbre.size();
+                if (t.retiree || n < TAILLE_MIN) {
+                    t.conflits = t.ecritures = 0;
+                    return;
+                }
+                Tranche<E>[] tab = tranches;
+                int i = Arrays.asList(tab).indexOf(t);
+                Object[] cles = t.arbre.toArray();
+                int m = n / 2;
+                @SuppressWarnings("unchecked")
+                E milieu = (E) cles[m];
+                Tranche<E>[] moities = tableau(2);
+                moities[0] = tranche(t.bas, cles, 0, m);
+                moities[1] = tranche(milieu, cles, m, n);
+                remplacer(tab, i, i + 1, moities);
+            } finally {
+                t.verrou.unlockWrite(s);
+            }
+        } finally {
+            restructuration.unlock();
+        }
+    }
+
+    /**
+     * Retire t de la table si elle est vide, sa voisine de gauche reprenant
+     * son intervalle ; sinon, si elle est presque vide, la fusionne avec la
+     * moins remplie de ses voisines, pourvu qu'elles tiennent ensemble dans
+     * la moitié de tailleMax. Ne fait rien si une autre restructuration est
+     * en cours (le retrait suivant dans t réessaiera).
+     */
+    private void fusionner(Tranche<E> t) {
+        if (!restructuration.tryLock()) {
+            return;
+        }
+        try {
+            Tranche<E>[] tab = tranches;
+            int i = Arrays.asList(tab).indexOf(t);
+            if (i < 0 || tab.length == 1) {
+                return;
+            }
+            if (i > 0) {
+                long s = t.verrou.writeLock();
+                try {
+                    if (t.arbre.isEmpty()) {
+                        // aucune clé à déplacer : les arbres des tranches restantes ne changent pas
+                        remplacer(tab, i, i + 1, tableau(0));
+                        return;
+                    }
+                } finally {
+                    t.verrou.unlockWrite(s);
+                }
+            }
+            // tailles lues sans verrou pour le choix, vérifiées ensuite
+            int j = i == 0 || (i < tab.length - 1 && tab[i + 1].arbre.size() < tab[i - 1].arbre.size()) ? i + 1
+                    : i - 1;
+            int k = Math.min(i, j);
+            Tranche<E> g = tab[k];
+            Tranche<E> d = tab[k + 1];
+            long sg = g.verrou.writeLock();
+            long sd = d.verrou.writeLock();
+            try {
+                int ng = g.arbre.size();
+                int nd = d.arbre.size();
+                if (t.arbre.size() >= TAILLE_MIN / 4 || ng + nd > tailleMax / 2) {
+                    return;
+                }
+                Object[] cles = Arrays.copyOf(g.arbre.toArray(), ng + nd);
+                System.arraycopy(d.arbre.toArray(), 0, cles, ng, nd);
+                Tranche<E>[] fusion = tableau(1);
+                fusion[0] = tranche(g.bas, cles, 0, ng + nd);
+                remplacer(tab, k, k + 2, fusion);
+            } finally {
+                d.verrou.unlockWrite(sd);
+                g.verrou.unlockWrite(sg);
+            }
+        } finally {
+            restructuration.unlock();
+        }
+    }
+
+    /**
+     * Fixe les bornes des tranches aux quantiles d'un échantillon de clés, par
+     * exemple avant une ingestion en masse dans un ensemble vide. Les clés
+     * présentes sont redistribuées ; les écritures attendent la fin de la
+     * répartition. Les tranches continuent ensuite de s'adapter.
+     *
+     * @param echantillon
+     *            des clés représentatives de la distribution attendue
+     * @param n
+     *            le nombre de tranches souhaité
+     */
+    @SuppressWarnings("unchecked")
+    public void partitionner(Collection<? extends E> echantillon, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("nombre de tranches " + n);
+        }
+        Object[] tri = echantillon.toArray();
+        Arrays.sort(tri, (Comparator<Object>) cmp);
+        restructuration.lock();
+        try {
+            Tranche<E>[] tab = tranches;
+            long[] tampons = new long[tab.length];
+            for (int i = 0; i < tab.length; i++) {
+                tampons[i] = tab[i].verrou.writeLock();
+            }
+            try {
+                List<Object> cles = new ArrayList<>();
+                for (Tranche<E> t : tab) {
+                    cles.addAll(t.arbre);
+                }
+                // bornes distinctes aux quantiles de l'échantillon
+                List<E> bornes = new ArrayList<>();
+                for (int i = 1; i < n && tri.length > 0; i++) {
+                    E b = (E) tri[(int) ((long) tri.length * i / n)];
+                    if (bornes.isEmpty() || cmp.compare(bornes.get(bornes.size() - 1), b) < 0) {
+                        bornes.add(b);
+                    }
+                }
+                Object[] tout = cles.toArray();
+                Tranche<E>[] nouvelles = tableau(bornes.size() + 1);
+                int debut = 0;
+                for (int i = 0; i < nouvelles.length; i++) {
+                    int fin = debut;
+                    if (i < bornes.size()) {
+                        while (fin < tout.length && cmp.compare((E) tout[fin], bornes.get(i)) < 0) {
+                            fin++;
+                        }
+                    } else {
+                        fin = tout.length;
+                    }
+                    nouvelles[i] = tranche(i == 0 ? null : bornes.get(i - 1), tout, debut, fin);
+                    debut = fin;
+                }
+                remplacer(tab, 0, tab.length, nouvelles);
+            } finally {
+                for (int i = tab.length - 1; i >= 0; i--) {
+                    tab[i].verrou.unlockWrite(tampons[i]);
+                }
+            }
+        } finally {
+            restructuration.unlock();
+        }
+    }
+
+    /**
+     * Renvoie le nombre actuel de tranches
+     */
+    public int nombreTranches() {
+        return tranches.length;
+    }
+
+    // Écritures
+
+    /**
+     * Prend le verrou exclusif de t, en comptant l'attente s'il est pris
+     */
+    private static long verrouiller(Tranche<?> t) {
+        t.ecritures++;
+        long s = t.verrou.tryWriteLock();
+        if (s == 0) {
+            t.conflits++;
+            s = t.verrou.writeLock();
+        }
+        return s;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Tranche<E>[] tab = tranches;
+            Tranche<E> t = tab[indice(tab, e)];
+            long s = verrouiller(t);
+            boolean ajoute;
+            int n;
+            try {
+                if (t.retiree) {
+                    continue;
+                }
+                ajoute = t.arbre.add(e);
+                n = t.arbre.size();
+            } finally {
+                t.verrou.unlockWrite(s);
+            }
+            int c = t.conflits;
+            if (n > tailleMax || (c > CONFLITS_MAX && c > t.ecritures / CONFLITS_PART && n >= TAILLE_MIN)) {
+                diviser(t);
+            }
+            return ajoute;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            Tranche<E>[] tab = tranches;
+            Tranche<E> t = tab[indice(tab, (E) o)];
+            long s = verrouiller(t);
+            boolean retire;
+            int n;
+            try {
+                if (t.retiree) {
+                    continue;
+                }
+                retire = t.arbre.remove(o);
+                n = t.arbre.size();
+            } finally {
+                t.verrou.unlockWrite(s);
+            }
+            if (retire && n < TAILLE_MIN / 4 && tab.length > 1) {
+                fusionner(t);
+            }
+            return retire;
+        }
+    }
+
+    @Override
+    public void clear() {
+        restructuration.lock();
+        try {
+            Tranche<E>[] tab = tranches;
+            long[] tampons = new long[tab.length];
+            for (int i = 0; i < tab.length; i++) {
+                tampons[i] = tab[i].verrou.writeLock();
+            }
+            Tranche<E>[] vide = tableau(1);
+            vide[0] = new Tranche<>(null, new ArbreRougeNoir<>(ordre));
+            remplacer(tab, 0, tab.length, vide);
+            for (int i = tab.length - 1; i >= 0; i--) {
+                tab[i].verrou.unlockWrite(tampons[i]);
+            }
+        } finally {
+            restructuration.unlock();
+        }
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        long n = 0;
+        for (Tranche<E> t : tranches) {
+            n += t.arbre.size();
+        }
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        E e = (E) o;
+        while (true) {
+            Tranche<E>[] tab = tranches;
+            Tranche<E> t = tab[indice(tab, e)];
+            long s = t.verrou.tryOptimisticRead();
+            if (s != 0) {
+                try {
+                    int r = t.arbre.rechercherBorne(o, PAS_MAX);
+                    if (r != ArbreRougeNoir.ABANDON && t.verrou.validate(s) && !t.retiree) {
+                        return r == 1;
+                    }
+                } catch (RuntimeException ex) {
+                    // état incohérent vu pendant une écriture : on relit sous verrou
+                }
+            }
+            s = t.verrou.readLock();
+            try {
+                if (!t.retiree) {
+                    return t.arbre.contains(o);
+                }
+            } finally {
+                t.verrou.unlockRead(s);
+            }
+        }
+    }
+
+    /**
+     * Copie dans tampon les clés qui suivent depart, en passant aux tranches
+     * suivantes tant que la tranche courante n'en a plus, sans dépasser la
+     * tranche qui contient fin
+     *
+     * @param depart
+     *            la clé de départ, null pour partir de la première clé
+     * @param fin
+     *            la dernière clé utile, null pour aller jusqu'au bout
+     * @return le nombre de clés copiées, toutes issues d'une même tranche
+     */
+    private int lire(E depart, boolean inclusif, E fin, Object[] tampon) {
+        lecture: while (true) {
+            Tranche<E>[] tab = tranches;
+            for (int i = depart == null ? 0 : indice(tab, depart); i < tab.length; i++) {
+                Tranche<E> t = tab[i];
+                if (fin != null && t.bas != null && cmp.compare(t.bas, fin) > 0) {
+                    return 0;
+                }
+                int n = ArbreRougeNoir.ABANDON;
+                long s = t.verrou.tryOptimisticRead();
+                if (s != 0) {
+                    try {
+                        n = t.arbre.parcourirBorne(depart, inclusif, false, tampon, PAS_MAX + 4 * tampon.length);
+                        if (!t.verrou.validate(s)) {
+                            n = ArbreRougeNoir.ABANDON;
+                        }
+                    } catch (RuntimeException ex) {
+                        n = ArbreRougeNoir.ABANDON;
+                    }
+                }
+                if (n == ArbreRougeNoir.ABANDON) {
+                    s = t.verrou.readLock();
+                    try {
+                        n = t.arbre.parcourirBorne(depart, inclusif, false, tampon, Integer.MAX_VALUE);
+                    } finally {
+                        t.verrou.unlockRead(s);
+                    }
+                }
+                if (t.retiree) {
+                    continue lecture;
+                }
+                if (n > 0) {
+                    return n;
+                }
+            }
+            return 0;
+        }
+    }
+
+    public Comparator<? super E> comparator() {
+        return ordre;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    @SuppressWarnings("unchecked")
+    public E first() {
+        Object[] tampon = new Object[1];
+        if (lire(null, true, null, tampon) == 0) {
+            throw new NoSuchElementException();
+        }
+        return (E) tampon[0];
+    }
+
+    /**
+     * Applique action, dans l'ordre croissant, aux clés comprises entre de et
+     * a. Seules les tranches qui recouvrent l'intervalle sont lues ; action
+     * est appelée hors de tout verrou et peut donc modifier l'ensemble.
+     */
+    @SuppressWarnings("unchecked")
+    public void parcourir(E de, boolean deInclus, E a, boolean aInclus, Consumer<? super E> action) {
+        if (de == null || a == null) {
+            throw new NullPointerException();
+        }
+        Object[] lot = new Object[LOT];
+        E depart = de;
+        boolean inclusif = deInclus;
+        while (true) {
+            int n = lire(depart, inclusif, a, lot);
+            for (int i = 0; i < n; i++) {
+                E e = (E) lot[i];
+                int c = cmp.compare(e, a);
+                if (c > 0 || (c == 0 && !aInclus)) {
+                    return;
+                }
+                action.accept(e);
+            }
+            if (n == 0) {
+                return;
+            }
+            depart = (E) lot[n - 1];
+            inclusif = false;
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur();
+    }
+
+    /**
+     * Itérateur faiblement cohérent : il relit les tranches par lots à partir
+     * de la dernière clé renvoyée.
+     */
+    private final class Iterateur implements Iterator<E> {
+        private final Object[] lot = new Object[LOT];
+        private int n;
+        private int i;
+        private boolean fini;
+        private E dernier;
+        private boolean retirable;
+
+        @Override
+        public boolean hasNext() {
+            if (i < n) {
+                return true;
+            }
+            if (fini) {
+                return false;
+            }
+            n = lire(dernier, false, null, lot);
+            i = 0;
+            fini = n == 0;
+            return n > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            dernier = (E) lot[i];
+            lot[i++] = null;
+            retirable = true;
+            return dernier;
+        }
+
+        @Override
+        public void remove() {
+            if (!retirable) {
+                throw new IllegalStateException();
+            }
+            ArbreRougeNoirPartitionne.this.remove(dernier);
+            retirable = false;
+        }
+    }
+}
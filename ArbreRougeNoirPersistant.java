@@ -0,0 +1,897 @@
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Arbre rouge-noir persistant : chaque instance est une version immuable de
+ * l'ensemble. {@link #avec} et {@link #sans} renvoient une nouvelle version
+ * en recopiant seulement les O(log n) noeuds du chemin de la racine à la clé
+ * (y compris ceux touchés par les rotations et les recolorations) ; tout le
+ * reste est partagé avec la version d'origine, qui reste intacte.
+ * </p>
+ *
+ * <p>
+ * Une version peut donc être lue par un nombre quelconque de threads sans
+ * verrou, et {@link #snapshot()} est en O(1). Pour un index alimenté en
+ * continu, un unique écrivain publie les versions successives à travers un
+ * {@link Editeur} ; les lecteurs y prennent une version cohérente et la
+ * parcourent pendant que l'écrivain continue.
+ * </p>
+ *
+ * <p>
+ * Les algorithmes d'insertion et de suppression sont ceux de Okasaki et de
+ * Kahrs pour les arbres rouge-noir fonctionnels.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ */
+public final class ArbreRougeNoirPersistant<E> extends AbstractSet<E> {
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+
+    /**
+     * Au-delà de ce nombre de noeuds, les deux moitiés d'une opération
+     * ensembliste sont calculées en parallèle
+     */
+    private static final int SEUIL_PARALLELE = 1 << 13;
+
+    private final Noeud<E> racine;
+    private final Comparator<? super E> cmp;
+
+    /**
+     * Noeud immuable. Une feuille vide est représentée par null, qui compte
+     * comme noire. Chaque noeud connaît la taille et la hauteur noire de son
+     * sous-arbre, utilisées par {@link #joindre}.
+     */
+    private static final class Noeud<E> {
+        final E cle;
+        final Noeud<E> gauche;
+        final Noeud<E> droit;
+        final boolean rouge;
+        final int taille;
+        /** nombre de noeuds noirs (celui-ci compris) sur un chemin vers une feuille */
+        final int hauteurNoire;
+
+        Noeud(boolean rouge, Noeud<E> gauche, E cle, Noeud<E> droit) {
+            this.cle = cle;
+            this.gauche = gauche;
+            this.droit = droit;
+            this.rouge = rouge;
+            taille = taille(gauche) + 1 + taille(droit);
+            hauteurNoire = hauteurNoire(gauche) + (rouge ? 0 : 1);
+        }
+    }
+
+    // Constructeurs
+
+    /**
+     * Crée un ensemble vide. Les éléments sont ordonnés selon l'ordre naturel
+     */
+    public ArbreRougeNoirPersistant() {
+        this(null, ORDRE_NATUREL);
+    }
+
+    /**
+     * Crée un ensemble vide ordonné par le comparateur
+     *
+     * @param cmp
+     *            le comparateur utilisé pour définir l'ordre des éléments
+     */
+    public ArbreRougeNoirPersistant(Comparator<? super E> cmp) {
+        this(null, cmp == null ? ORDRE_NATUREL : cmp);
+    }
+
+    /**
+     * Construit en O(n) (plus le tri si besoin) la version contenant les
+     * éléments de c, dans l'ordre naturel
+     *
+     * @param c
+     *            la collection à copier
+     */
+    @SuppressWarnings("unchecked")
+    public ArbreRougeNoirPersistant(Collection<? extends E> c) {
+        cmp = ORDRE_NATUREL;
+        Object[] tri = c.toArray();
+        int n = tri.length;
+        if (!(c instanceof SortedSet && ((SortedSet<?>) c).comparator() == null)) {
+            Arrays.sort(tri, (Comparator<Object>) cmp);
+            n = 0;
+            for (int i = 0; i < tri.length; i++) {
+                if (n == 0 || cmp.compare((E) tri[n - 1], (E) tri[i]) != 0) {
+                    tri[n++] = tri[i];
+                }
+            }
+        }
+        int niveauRouge = 0;
+        for (int m = n - 1; m >= 0; m = m / 2 - 1) {
+            niveauRouge++;
+        }
+        racine = construire(tri, 0, n - 1, 0, niveauRouge);
+    }
+
+    private ArbreRougeNoirPersistant(Noeud<E> racine, Comparator<? super E> cmp) {
+        this.racine = racine;
+        this.cmp = cmp;
+    }
+
+    private ArbreRougeNoirPersistant<E> version(Noeud<E> n) {
+        return n == racine ? this : new ArbreRougeNoirPersistant<>(noircir(n), cmp);
+    }
+
+    /**
+     * Construit le sous-arbre équilibré des clés tri[debut..fin], seul le
+     * dernier niveau (incomplet) étant rouge
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Noeud<E> construire(Object[] tri, int debut, int fin, int profondeur, int niveauRouge) {
+        if (debut > fin) {
+            return null;
+        }
+        int milieu = (debut + fin) >>> 1;
+        return new Noeud<>(profondeur == niveauRouge,
+                construire(tri, debut, milieu - 1, profondeur + 1, niveauRouge), (E) tri[milieu],
+                construire(tri, milieu + 1, fin, profondeur + 1, niveauRouge));
+    }
+
+    // Versions
+
+    /**
+     * Renvoie la version qui contient en plus la clé e
+     *
+     * @return la nouvelle version, ou cette version si elle contient déjà une
+     *         clé égale à e
+     */
+    public ArbreRougeNoirPersistant<E> avec(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        cmp.compare(e, e); // vérification du type, même sur un arbre vide
+        return version(inserer(racine, e));
+    }
+
+    /**
+     * Renvoie la version qui ne contient pas la clé o
+     *
+     * @return la nouvelle version, ou cette version si elle ne contient pas o
+     */
+    @SuppressWarnings("unchecked")
+    public ArbreRougeNoirPersistant<E> sans(Object o) {
+        if (!contains(o)) {
+            return this;
+        }
+        return version(supprimer(racine, (E) o));
+    }
+
+    /**
+     * Renvoie cette version : elle est immuable, et donc déjà un instantané
+     * cohérent, obtenu en O(1)
+     */
+    public ArbreRougeNoirPersistant<E> snapshot() {
+        return this;
+    }
+
+    /**
+     * Un ensemble persistant ne se modifie pas en place : cf {@link #avec}.
+     *
+     * @throws UnsupportedOperationException
+     *             toujours
+     */
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException("version immuable : utiliser avec()");
+    }
+
+    /**
+     * Un ensemble persistant ne se modifie pas en place : cf {@link #sans}.
+     *
+     * @throws UnsupportedOperationException
+     *             toujours
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException("version immuable : utiliser sans()");
+    }
+
+    // Insertion (Okasaki)
+
+    private Noeud<E> inserer(Noeud<E> n, E e) {
+        if (n == null) {
+            return new Noeud<>(true, null, e, null);
+        }
+        int c = cmp.compare(e, n.cle);
+        if (c < 0) {
+            Noeud<E> g = inserer(n.gauche, e);
+            if (g == n.gauche) {
+                return n;
+            }
+            return n.rouge ? new Noeud<>(true, g, n.cle, n.droit) : equilibrer(g, n.cle, n.droit);
+        } else if (c > 0) {
+            Noeud<E> d = inserer(n.droit, e);
+            if (d == n.droit) {
+                return n;
+            }
+            return n.rouge ? new Noeud<>(true, n.gauche, n.cle, d) : equilibrer(n.gauche, n.cle, d);
+        }
+        return n;
+    }
+
+    /**
+     * Construit le noeud noir (g, x, d) en éliminant un éventuel couple de
+     * noeuds rouges consécutifs dans g ou d : le résultat est alors un noeud
+     * rouge à deux fils noirs.
+     */
+    private static <E> Noeud<E> equilibrer(Noeud<E> g, E x, Noeud<E> d) {
+        if (estRouge(g) && estRouge(d)) {
+            return new Noeud<>(true, noir(g), x, noir(d));
+        }
+        if (estRouge(g)) {
+            if (estRouge(g.gauche)) {
+                return new Noeud<>(true, noir(g.gauche), g.cle, new Noeud<>(false, g.droit, x, d));
+            }
+            if (estRouge(g.droit)) {
+                Noeud<E> gd = g.droit;
+                return new Noeud<>(true, new Noeud<>(false, g.gauche, g.cle, gd.gauche), gd.cle,
+                        new Noeud<>(false, gd.droit, x, d));
+            }
+        }
+        if (estRouge(d)) {
+            if (estRouge(d.droit)) {
+                return new Noeud<>(true, new Noeud<>(false, g, x, d.gauche), d.cle, noir(d.droit));
+            }
+            if (estRouge(d.gauche)) {
+                Noeud<E> dg = d.gauche;
+                return new Noeud<>(true, new Noeud<>(false, g, x, dg.gauche), dg.cle,
+                        new Noeud<>(false, dg.droit, d.cle, d.droit));
+            }
+        }
+        return new Noeud<>(false, g, x, d);
+    }
+
+    // Suppression (Kahrs). La clé est présente dans le sous-arbre n.
+
+    private Noeud<E> supprimer(Noeud<E> n, E e) {
+        int c = cmp.compare(e, n.cle);
+        if (c < 0) {
+            return estNoir(n.gauche) ? equilibrerGauche(supprimer(n.gauche, e), n.cle, n.droit)
+                    : new Noeud<>(true, supprimer(n.gauche, e), n.cle, n.droit);
+        } else if (c > 0) {
+            return estNoir(n.droit) ? equilibrerDroit(n.gauche, n.cle, supprimer(n.droit, e))
+                    : new Noeud<>(true, n.gauche, n.cle, supprimer(n.droit, e));
+        }
+        return fusionner(n.gauche, n.droit);
+    }
+
+    /**
+     * Reconstruit le noeud (g, x, d) dont le sous-arbre gauche g a perdu un
+     * niveau noir
+     */
+    private static <E> Noeud<E> equilibrerGauche(Noeud<E> g, E x, Noeud<E> d) {
+        if (estRouge(g)) {
+            return new Noeud<>(true, noir(g), x, d);
+        }
+        if (estNoir(d)) {
+            return equilibrer(g, x, rouge(d));
+        }
+        // d est rouge et son fils gauche est noir
+        Noeud<E> dg = d.gauche;
+        return new Noeud<>(true, new Noeud<>(false, g, x, dg.gauche), dg.cle,
+                equilibrer(dg.droit, d.cle, rouge(d.droit)));
+    }
+
+    /**
+     * Reconstruit le noeud (g, x, d) dont le sous-arbre droit d a perdu un
+     * niveau noir
+     */
+    private static <E> Noeud<E> equilibrerDroit(Noeud<E> g, E x, Noeud<E> d) {
+        if (estRouge(d)) {
+            return new Noeud<>(true, g, x, noir(d));
+        }
+        if (estNoir(g)) {
+            return equilibrer(rouge(g), x, d);
+        }
+        // g est rouge et son fils droit est noir
+        Noeud<E> gd = g.droit;
+        return new Noeud<>(true, equilibrer(rouge(g.gauche), g.cle, gd.gauche), gd.cle,
+                new Noeud<>(false, gd.droit, x, d));
+    }
+
+    /**
+     * Fusionne deux sous-arbres de même hauteur noire dont toutes les clés de
+     * g précèdent celles de d
+     */
+    private static <E> Noeud<E> fusionner(Noeud<E> g, Noeud<E> d) {
+        if (g == null) {
+            return d;
+        }
+        if (d == null) {
+            return g;
+        }
+        if (g.rouge && d.rouge) {
+            Noeud<E> m = fusionner(g.droit, d.gauche);
+            if (estRouge(m)) {
+                return new Noeud<>(true, new Noeud<>(true, g.gauche, g.cle, m.gauche), m.cle,
+                        new Noeud<>(true, m.droit, d.cle, d.droit));
+            }
+            return new Noeud<>(true, g.gauche, g.cle, new Noeud<>(true, m, d.cle, d.droit));
+        }
+        if (!g.rouge && !d.rouge) {
+            Noeud<E> m = fusionner(g.droit, d.gauche);
+            if (estRouge(m)) {
+                return new Noeud<>(true, new Noeud<>(false, g.gauche, g.cle, m.gauche), m.cle,
+                        new Noeud<>(false, m.droit, d.cle, d.droit));
+            }
+            return equilibrerGauche(g.gauche, g.cle, new Noeud<>(false, m, d.cle, d.droit));
+        }
+        if (d.rouge) {
+            return new Noeud<>(true, fusionner(g, d.gauche), d.cle, d.droit);
+        }
+        return new Noeud<>(true, g.gauche, g.cle, fusionner(g.droit, d));
+    }
+
+    private static boolean estRouge(Noeud<?> n) {
+        return n != null && n.rouge;
+    }
+
+    private static boolean estNoir(Noeud<?> n) {
+        return n != null && !n.rouge;
+    }
+
+    private static <E> Noeud<E> noir(Noeud<E> n) {
+        return n.rouge ? new Noeud<>(false, n.gauche, n.cle, n.droit) : n;
+    }
+
+    private static <E> Noeud<E> rouge(Noeud<E> n) {
+        return n.rouge ? n : new Noeud<>(true, n.gauche, n.cle, n.droit);
+    }
+
+    private static <E> Noeud<E> noircir(Noeud<E> n) {
+        return n == null ? null : noir(n);
+    }
+
+    private static int taille(Noeud<?> n) {
+        return n == null ? 0 : n.taille;
+    }
+
+    private static int hauteurNoire(Noeud<?> n) {
+        return n == null ? 0 : n.hauteurNoire;
+    }
+
+    // Jointure et séparation
+
+    /**
+     * Renvoie l'arbre formé des clés de g, de x puis des clés de d, toutes
+     * les clés de g précédant x et x précédant celles de d. Le coût est en
+     * O(|hauteurNoire(g) - hauteurNoire(d)| + 1) : on descend le long du bord
+     * de l'arbre le plus haut jusqu'à la hauteur noire de l'autre, on y
+     * accroche un noeud rouge, puis on élimine en remontant un éventuel
+     * couple rouge-rouge par une rotation.
+     *
+     * @return la racine de l'arbre joint, éventuellement rouge
+     */
+    private static <E> Noeud<E> joindre(Noeud<E> g, E x, Noeud<E> d) {
+        g = noircir(g);
+        d = noircir(d);
+        int hg = hauteurNoire(g);
+        int hd = hauteurNoire(d);
+        if (hg > hd) {
+            Noeud<E> t = joindreDroite(g, x, d, hd);
+            return t.rouge && estRouge(t.droit) ? noir(t) : t;
+        }
+        if (hd > hg) {
+            Noeud<E> t = joindreGauche(g, x, d, hg);
+            return t.rouge && estRouge(t.gauche) ? noir(t) : t;
+        }
+        return new Noeud<>(true, g, x, d);
+    }
+
+    /**
+     * Descend le bord droit de g jusqu'au premier noeud noir (ou vide) de
+     * hauteur noire h, et le remplace par le noeud rouge (ce noeud, x, d)
+     */
+    private static <E> Noeud<E> joindreDroite(Noeud<E> g, E x, Noeud<E> d, int h) {
+        if (!estRouge(g) && hauteurNoire(g) == h) {
+            return new Noeud<>(true, g, x, d);
+        }
+        Noeud<E> r = joindreDroite(g.droit, x, d, h);
+        if (!g.rouge && r.rouge && estRouge(r.droit)) {
+            // rotation gauche : r remonte, son fils droit devient noir
+            return new Noeud<>(true, new Noeud<>(false, g.gauche, g.cle, r.gauche), r.cle, noir(r.droit));
+        }
+        return new Noeud<>(g.rouge, g.gauche, g.cle, r);
+    }
+
+    /**
+     * Symétrique de {@link #joindreDroite} le long du bord gauche de d
+     */
+    private static <E> Noeud<E> joindreGauche(Noeud<E> g, E x, Noeud<E> d, int h) {
+        if (!estRouge(d) && hauteurNoire(d) == h) {
+            return new Noeud<>(true, g, x, d);
+        }
+        Noeud<E> r = joindreGauche(g, x, d.gauche, h);
+        if (!d.rouge && r.rouge && estRouge(r.gauche)) {
+            return new Noeud<>(true, noir(r.gauche), r.cle, new Noeud<>(false, r.droit, d.cle, d.droit));
+        }
+        return new Noeud<>(d.rouge, r, d.cle, d.droit);
+    }
+
+    /**
+     * Joint g et d, toutes les clés de g précédant celles de d
+     */
+    private static <E> Noeud<E> joindre(Noeud<E> g, Noeud<E> d) {
+        if (g == null) {
+            return d;
+        }
+        if (d == null) {
+            return g;
+        }
+        Noeud<E> m = g;
+        while (m.droit != null) {
+            m = m.droit;
+        }
+        return joindre(sansDernier(g), m.cle, d);
+    }
+
+    /**
+     * Renvoie le sous-arbre n privé de sa plus grande clé. Les jointures le
+     * long du bord droit coûtent au total O(log n).
+     */
+    private static <E> Noeud<E> sansDernier(Noeud<E> n) {
+        if (n.droit == null) {
+            return n.gauche;
+        }
+        return joindre(n.gauche, n.cle, sansDernier(n.droit));
+    }
+
+    /**
+     * Résultat de {@link #separer} : les clés qui précèdent la clé de coupe,
+     * la clé de l'arbre égale à celle-ci (null si absente) et celles qui la
+     * suivent
+     */
+    private static final class Coupe<E> {
+        final Noeud<E> gauche;
+        final E cle;
+        final Noeud<E> droit;
+
+        Coupe(Noeud<E> gauche, E cle, Noeud<E> droit) {
+            this.gauche = gauche;
+            this.cle = cle;
+            this.droit = droit;
+        }
+    }
+
+    /**
+     * Coupe le sous-arbre n autour de e, en O(log n) jointures le long du
+     * chemin vers e
+     */
+    private Coupe<E> separer(Noeud<E> n, E e) {
+        if (n == null) {
+            return new Coupe<>(null, null, null);
+        }
+        int c = cmp.compare(e, n.cle);
+        if (c == 0) {
+            return new Coupe<>(n.gauche, n.cle, n.droit);
+        }
+        if (c < 0) {
+            Coupe<E> s = separer(n.gauche, e);
+            return new Coupe<>(s.gauche, s.cle, joindre(s.droit, n.cle, n.droit));
+        }
+        Coupe<E> s = separer(n.droit, e);
+        return new Coupe<>(joindre(n.gauche, n.cle, s.gauche), s.cle, s.droit);
+    }
+
+    // Opérations ensemblistes
+
+    private enum Operation {
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    /**
+     * Diviser pour régner : a est coupé par la racine de b (ou l'inverse pour
+     * la différence), les deux moitiés sont combinées récursivement, en
+     * parallèle si elles sont assez grosses, puis jointes. Le travail est en
+     * O(m log(n/m + 1)) pour des tailles m &lt;= n.
+     */
+    private final class Combinaison extends RecursiveTask<Noeud<E>> {
+        private static final long serialVersionUID = 1L;
+        private final Operation op;
+        private final Noeud<E> a;
+        private final Noeud<E> b;
+
+        Combinaison(Operation op, Noeud<E> a, Noeud<E> b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected Noeud<E> compute() {
+            return combiner(op, a, b);
+        }
+    }
+
+    private Noeud<E> combiner(Operation op, Noeud<E> a, Noeud<E> b) {
+        if (a == null || b == null) {
+            return op == Operation.UNION ? (a == null ? b : a)
+                    : op == Operation.INTERSECTION ? null : a;
+        }
+        if (a == b) {
+            // sous-arbre partagé entre deux versions
+            return op == Operation.DIFFERENCE ? null : a;
+        }
+        // la différence coupe a pour garder ses clés ; les autres coupent b
+        Noeud<E> pivot = op == Operation.DIFFERENCE ? b : a;
+        Coupe<E> s = separer(op == Operation.DIFFERENCE ? a : b, pivot.cle);
+        Noeud<E> g;
+        Noeud<E> d;
+        if (taille(a) + taille(b) > SEUIL_PARALLELE) {
+            Combinaison tache = new Combinaison(op, op == Operation.DIFFERENCE ? s.gauche : a.gauche,
+                    op == Operation.DIFFERENCE ? b.gauche : s.gauche);
+            tache.fork();
+            d = op == Operation.DIFFERENCE ? combiner(op, s.droit, b.droit) : combiner(op, a.droit, s.droit);
+            g = tache.join();
+        } else {
+            g = op == Operation.DIFFERENCE ? combiner(op, s.gauche, b.gauche) : combiner(op, a.gauche, s.gauche);
+            d = op == Operation.DIFFERENCE ? combiner(op, s.droit, b.droit) : combiner(op, a.droit, s.droit);
+        }
+        if (op == Operation.UNION || (op == Operation.INTERSECTION && s.cle != null)) {
+            return joindre(g, a.cle, d);
+        }
+        return joindre(g, d);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArbreRougeNoirPersistant<E> combiner(Operation op, Collection<? extends E> autre) {
+        Noeud<E> b = memeOrdre(autre) ? ((ArbreRougeNoirPersistant<E>) autre).racine
+                : new ArbreRougeNoirPersistant<E>(cmp).avecTous(autre).racine;
+        Noeud<E> n = taille(racine) + taille(b) > SEUIL_PARALLELE
+                ? ForkJoinPool.commonPool().invoke(new Combinaison(op, racine, b))
+                : combiner(op, racine, b);
+        return version(n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean memeOrdre(Collection<?> c) {
+        return c instanceof ArbreRougeNoirPersistant && ((ArbreRougeNoirPersistant<E>) c).cmp.equals(cmp);
+    }
+
+    /**
+     * Renvoie la version contenant les clés de cette version et celles de
+     * autre (à clés égales, celle de cette version est gardée)
+     */
+    public ArbreRougeNoirPersistant<E> union(Collection<? extends E> autre) {
+        return combiner(Operation.UNION, autre);
+    }
+
+    /**
+     * Renvoie la version contenant les clés de cette version présentes dans
+     * autre
+     */
+    public ArbreRougeNoirPersistant<E> intersection(Collection<? extends E> autre) {
+        return combiner(Operation.INTERSECTION, autre);
+    }
+
+    /**
+     * Renvoie la version contenant les clés de cette version absentes de
+     * autre
+     */
+    public ArbreRougeNoirPersistant<E> difference(Collection<? extends E> autre) {
+        return combiner(Operation.DIFFERENCE, autre);
+    }
+
+    /**
+     * Renvoie la version contenant en plus tous les éléments de c : une
+     * union si c est un ensemble persistant de même ordre, des insertions
+     * successives sinon
+     */
+    public ArbreRougeNoirPersistant<E> avecTous(Collection<? extends E> c) {
+        if (memeOrdre(c)) {
+            return union(c);
+        }
+        ArbreRougeNoirPersistant<E> v = this;
+        for (E e : c) {
+            v = v.avec(e);
+        }
+        return v;
+    }
+
+    /**
+     * Renvoie en O(log n) la version contenant les clés strictement
+     * inférieures à e
+     */
+    public ArbreRougeNoirPersistant<E> avant(E e) {
+        return version(separer(racine, e).gauche);
+    }
+
+    /**
+     * Renvoie en O(log n) la version contenant les clés strictement
+     * supérieures à e
+     */
+    public ArbreRougeNoirPersistant<E> apres(E e) {
+        return version(separer(racine, e).droit);
+    }
+
+    /**
+     * Renvoie en O(log n) la version contenant les clés de cette version
+     * suivies de celles de autre
+     *
+     * @throws IllegalArgumentException
+     *             si les deux versions n'ont pas le même ordre, ou si une clé
+     *             de autre ne suit pas toutes celles de cette version
+     */
+    public ArbreRougeNoirPersistant<E> concatener(ArbreRougeNoirPersistant<E> autre) {
+        if (!memeOrdre(autre)) {
+            throw new IllegalArgumentException("ordres différents");
+        }
+        if (racine == null || autre.racine == null) {
+            return racine == null ? autre : this;
+        }
+        if (cmp.compare(last(), autre.first()) >= 0) {
+            throw new IllegalArgumentException("les clés se chevauchent");
+        }
+        return version(joindre(racine, autre.racine));
+    }
+
+    /**
+     * Pour un ensemble persistant de même ordre, l'inclusion se teste par une
+     * différence, sans rechercher chaque clé
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsAll(Collection<?> c) {
+        if (memeOrdre(c)) {
+            ArbreRougeNoirPersistant<E> autre = (ArbreRougeNoirPersistant<E>) c;
+            return autre.size() <= size() && autre.difference(this).isEmpty();
+        }
+        return super.containsAll(c);
+    }
+
+    /**
+     * Deux ensembles persistants de même ordre sont comparés par une
+     * différence ; deux versions qui partagent leur racine sont égales sans
+     * autre examen
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o instanceof Collection && memeOrdre((Collection<?>) o)) {
+            ArbreRougeNoirPersistant<E> autre = (ArbreRougeNoirPersistant<E>) o;
+            return racine == autre.racine || (size() == autre.size() && difference(autre).isEmpty());
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        return taille(racine);
+    }
+
+    public Comparator<? super E> comparator() {
+        return cmp == ORDRE_NATUREL ? null : cmp;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        Noeud<E> x = racine;
+        while (x != null) {
+            int c = cmp.compare((E) o, x.cle);
+            if (c == 0) {
+                return true;
+            }
+            x = c < 0 ? x.gauche : x.droit;
+        }
+        return false;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public E first() {
+        if (racine == null) {
+            throw new NoSuchElementException();
+        }
+        Noeud<E> x = racine;
+        while (x.gauche != null) {
+            x = x.gauche;
+        }
+        return x.cle;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public E last() {
+        if (racine == null) {
+            throw new NoSuchElementException();
+        }
+        Noeud<E> x = racine;
+        while (x.droit != null) {
+            x = x.droit;
+        }
+        return x.cle;
+    }
+
+    public E ceiling(E e) {
+        return plafond(e, true);
+    }
+
+    public E higher(E e) {
+        return plafond(e, false);
+    }
+
+    public E floor(E e) {
+        return plancher(e, true);
+    }
+
+    public E lower(E e) {
+        return plancher(e, false);
+    }
+
+    private E plafond(E e, boolean inclusif) {
+        E meilleur = null;
+        Noeud<E> x = racine;
+        while (x != null) {
+            int c = cmp.compare(e, x.cle);
+            if (c == 0 && inclusif) {
+                return x.cle;
+            }
+            if (c < 0) {
+                meilleur = x.cle;
+                x = x.gauche;
+            } else {
+                x = x.droit;
+            }
+        }
+        return meilleur;
+    }
+
+    private E plancher(E e, boolean inclusif) {
+        E meilleur = null;
+        Noeud<E> x = racine;
+        while (x != null) {
+            int c = cmp.compare(e, x.cle);
+            if (c == 0 && inclusif) {
+                return x.cle;
+            }
+            if (c > 0) {
+                meilleur = x.cle;
+                x = x.droit;
+            } else {
+                x = x.gauche;
+            }
+        }
+        return meilleur;
+    }
+
+    /**
+     * Renvoie la hauteur de l'arbre (0 pour un arbre vide)
+     */
+    public int hauteur() {
+        return hauteur(racine);
+    }
+
+    private static int hauteur(Noeud<?> n) {
+        return n == null ? 0 : 1 + Math.max(hauteur(n.gauche), hauteur(n.droit));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur(false);
+    }
+
+    public Iterator<E> descendingIterator() {
+        return new Iterateur(true);
+    }
+
+    /**
+     * Parcours infixe avec une pile des ancêtres restant à visiter : les
+     * noeuds n'ont pas de lien vers leur père, puisqu'ils sont partagés entre
+     * versions.
+     */
+    private final class Iterateur implements Iterator<E> {
+        private final ArrayDeque<Noeud<E>> pile = new ArrayDeque<>();
+        private final boolean decroissant;
+
+        Iterateur(boolean decroissant) {
+            this.decroissant = decroissant;
+            descendre(racine);
+        }
+
+        private void descendre(Noeud<E> n) {
+            while (n != null) {
+                pile.push(n);
+                n = decroissant ? n.droit : n.gauche;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pile.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (pile.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Noeud<E> n = pile.pop();
+            descendre(decroissant ? n.gauche : n.droit);
+            return n.cle;
+        }
+    }
+
+    /**
+     * <p>
+     * Point de publication des versions d'un ensemble persistant. L'écrivain
+     * (un seul thread, ou plusieurs qui se synchronisent entre eux) appelle
+     * {@link #add} et {@link #remove}, qui publient la nouvelle version par une
+     * écriture volatile ; les lecteurs obtiennent sans verrou la dernière
+     * version publiée avec {@link #snapshot()} et peuvent la lire aussi
+     * longtemps qu'ils le souhaitent.
+     * </p>
+     *
+     * @param <E>
+     *            le type des clés stockées dans l'arbre
+     */
+    public static final class Editeur<E> {
+        private volatile ArbreRougeNoirPersistant<E> courante;
+
+        public Editeur(ArbreRougeNoirPersistant<E> initiale) {
+            courante = initiale;
+        }
+
+        public Editeur() {
+            this(new ArbreRougeNoirPersistant<>());
+        }
+
+        public boolean add(E e) {
+            ArbreRougeNoirPersistant<E> v = courante;
+            ArbreRougeNoirPersistant<E> w = v.avec(e);
+            courante = w;
+            return w != v;
+        }
+
+        public boolean remove(Object o) {
+            ArbreRougeNoirPersistant<E> v = courante;
+            ArbreRougeNoirPersistant<E> w = v.sans(o);
+            courante = w;
+            return w != v;
+        }
+
+        /**
+         * Publie une version construite ailleurs (par exemple par une suite
+         * d'appels à avec sur une version obtenue par snapshot)
+         */
+        public void publier(ArbreRougeNoirPersistant<E> version) {
+            courante = version;
+        }
+
+        /**
+         * Renvoie en O(1) la dernière version publiée
+         */
+        public ArbreRougeNoirPersistant<E> snapshot() {
+            return courante;
+        }
+    }
+}
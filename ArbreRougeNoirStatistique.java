@@ -0,0 +1,251 @@
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Arbre rouge-noir augmenté : chaque noeud connaît la taille de son
+ * sous-arbre et, si un {@link Monoide} est fourni, l'agrégat des clés de son
+ * sous-arbre. Ces informations sont recalculées à chaque rotation et le long
+ * du chemin d'insertion ou de suppression, ce qui donne en O(log n) le rang
+ * d'une clé, la k-ième clé, les quantiles, le nombre de clés d'un intervalle
+ * et l'agrégat d'un intervalle.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés stockées dans l'arbre
+ * @param <A>
+ *            le type des agrégats (inutilisé sans monoïde)
+ */
+public class ArbreRougeNoirStatistique<E, A> extends ArbreRougeNoir<E> {
+    private final Monoide<? super E, A> monoide;
+
+    private class NoeudStatistique extends Noeud {
+        int taille;
+        A agregat;
+
+        NoeudStatistique(E cle) {
+            super(cle);
+        }
+    }
+
+    // Constructeurs
+
+    /**
+     * Crée un arbre vide, sans agrégat. Les éléments sont ordonnés selon
+     * l'ordre naturel
+     */
+    public ArbreRougeNoirStatistique() {
+        this((Comparator<? super E>) null, null);
+    }
+
+    /**
+     * Crée un arbre vide maintenant les agrégats de monoide
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     * @param monoide
+     *            le monoïde des agrégats, null pour ne maintenir que les
+     *            tailles
+     */
+    public ArbreRougeNoirStatistique(Comparator<? super E> cmp, Monoide<? super E, A> monoide) {
+        super(cmp);
+        this.monoide = monoide;
+    }
+
+    /**
+     * Constructeur par recopie, dans l'ordre naturel et sans agrégat
+     *
+     * @param c
+     *            la collection à copier
+     */
+    public ArbreRougeNoirStatistique(Collection<? extends E> c) {
+        this((Comparator<? super E>) null, null);
+        addAll(c);
+    }
+
+    // Maintien des augmentations
+
+    @Override
+    Noeud creerNoeud(E cle) {
+        Noeud n = reprendre(cle);
+        if (n == null) {
+            return new NoeudStatistique(cle);
+        }
+        // un noeud libre garde les augmentations de sa vie précédente
+        NoeudStatistique s = statistique(n);
+        s.taille = 1;
+        s.agregat = null;
+        return s;
+    }
+
+    @Override
+    void mettreAJour(Noeud n) {
+        if (n == sentinelle) {
+            return;
+        }
+        NoeudStatistique s = statistique(n);
+        s.taille = taille(n.gauche) + 1 + taille(n.droit);
+        if (monoide != null) {
+            s.agregat = monoide.combiner(monoide.combiner(agregat(n.gauche), monoide.valeur(n.cle)),
+                    agregat(n.droit));
+        }
+    }
+
+    @Override
+    void remonter(Noeud n) {
+        for (; n != sentinelle; n = n.pere) {
+            mettreAJour(n);
+        }
+    }
+
+    /**
+     * Renvoie n avec son type de noeud statistique. Tous les noeuds viennent
+     * de creerNoeud, la conversion est donc sûre ; elle n'est pas vérifiable
+     * car NoeudStatistique dépend de E et A, effacés à l'exécution.
+     */
+    @SuppressWarnings("unchecked")
+    private NoeudStatistique statistique(Noeud n) {
+        return (NoeudStatistique) n;
+    }
+
+    private int taille(Noeud n) {
+        return n == sentinelle ? 0 : statistique(n).taille;
+    }
+
+    private A agregat(Noeud n) {
+        return n == sentinelle ? monoide.neutre() : statistique(n).agregat;
+    }
+
+    // Statistiques d'ordre
+
+    /**
+     * Renvoie le nombre de clés strictement inférieures à e
+     */
+    public int rang(E e) {
+        int r = 0;
+        Noeud x = racine;
+        while (x != sentinelle) {
+            if (comparer(e, x.cle) <= 0) {
+                x = x.gauche;
+            } else {
+                r += taille(x.gauche) + 1;
+                x = x.droit;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Renvoie la k-ième plus petite clé, la première étant d'indice 0
+     *
+     * @throws IndexOutOfBoundsException
+     *             si k n'est pas dans [0, size())
+     */
+    public E selectionner(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException(k);
+        }
+        Noeud x = racine;
+        while (true) {
+            int g = taille(x.gauche);
+            if (k < g) {
+                x = x.gauche;
+            } else if (k == g) {
+                return x.cle;
+            } else {
+                k -= g + 1;
+                x = x.droit;
+            }
+        }
+    }
+
+    /**
+     * Renvoie le quantile q (méthode du rang le plus proche) : la plus petite
+     * clé dont au moins une proportion q des clés sont inférieures ou égales
+     *
+     * @param q
+     *            dans [0, 1], 0.99 pour le 99e centile
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    public E quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("quantile hors de [0, 1] : " + q);
+        }
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return selectionner(Math.max(0, (int) Math.ceil(q * size()) - 1));
+    }
+
+    /**
+     * Renvoie le nombre de clés de l'intervalle [de, a)
+     */
+    public int compter(E de, E a) {
+        return comparer(de, a) >= 0 ? 0 : rang(a) - rang(de);
+    }
+
+    /**
+     * Renvoie l'agrégat, dans l'ordre, des clés de l'intervalle [de, a)
+     *
+     * @throws IllegalStateException
+     *             si l'arbre a été créé sans monoïde
+     */
+    public A agreger(E de, E a) {
+        if (monoide == null) {
+            throw new IllegalStateException("arbre créé sans monoïde");
+        }
+        if (comparer(de, a) >= 0) {
+            return monoide.neutre();
+        }
+        // descente jusqu'au premier noeud dans [de, a), où les chemins vers
+        // les deux bornes se séparent
+        Noeud x = racine;
+        while (x != sentinelle) {
+            if (comparer(x.cle, de) < 0) {
+                x = x.droit;
+            } else if (comparer(x.cle, a) >= 0) {
+                x = x.gauche;
+            } else {
+                return monoide.combiner(monoide.combiner(agregerDepuis(x.gauche, de), monoide.valeur(x.cle)),
+                        agregerAvant(x.droit, a));
+            }
+        }
+        return monoide.neutre();
+    }
+
+    /**
+     * Agrégat des clés &gt;= de du sous-arbre x : chaque morceau trouvé en
+     * descendant précède ceux déjà trouvés
+     */
+    private A agregerDepuis(Noeud x, E de) {
+        A r = monoide.neutre();
+        while (x != sentinelle) {
+            if (comparer(x.cle, de) >= 0) {
+                r = monoide.combiner(monoide.combiner(monoide.valeur(x.cle), agregat(x.droit)), r);
+                x = x.gauche;
+            } else {
+                x = x.droit;
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Agrégat des clés &lt; a du sous-arbre x : chaque morceau trouvé en
+     * descendant suit ceux déjà trouvés
+     */
+    private A agregerAvant(Noeud x, E a) {
+        A r = monoide.neutre();
+        while (x != sentinelle) {
+            if (comparer(x.cle, a) < 0) {
+                r = monoide.combiner(r, monoide.combiner(agregat(x.gauche), monoide.valeur(x.cle)));
+                x = x.droit;
+            } else {
+                x = x.gauche;
+            }
+        }
+        return r;
+    }
+}
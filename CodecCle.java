@@ -0,0 +1,182 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Codage binaire des clés dans les instantanés d'arbres (cf
+ * {@link ArbreRougeNoir#sauvegarder} et {@link ABR#sauvegarder}). Les tampons
+ * reçus sont en petit-boutiste. L'identifiant du codec est écrit dans
+ * l'en-tête de l'instantané et vérifié à la relecture.
+ * </p>
+ *
+ * <p>
+ * Les codecs de largeur fixe peuvent décoder les clés par lots (cf
+ * {@link #lire(ByteBuffer, Object[], int, int)}) : c'est ce que font
+ * {@link #ENTIERS} et {@link #LONGS}, qui copient les valeurs en bloc depuis
+ * le fichier projeté avant de les emballer.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés
+ */
+public interface CodecCle<E> {
+    /** Integer sur 4 octets */
+    CodecCle<Integer> ENTIERS = new CodecCle<Integer>() {
+        @Override
+        public int identifiant() {
+            return 1;
+        }
+
+        @Override
+        public int largeur() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public int taille(Integer cle) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void ecrire(Integer cle, ByteBuffer tampon) {
+            tampon.putInt(cle);
+        }
+
+        @Override
+        public Integer lire(ByteBuffer tampon) {
+            return tampon.getInt();
+        }
+
+        @Override
+        public void lire(ByteBuffer tampon, Object[] cles, int debut, int n) {
+            IntBuffer vue = tampon.asIntBuffer();
+            int[] lot = new int[Math.min(n, 4096)];
+            for (int i = 0; i < n; i += lot.length) {
+                int m = Math.min(lot.length, n - i);
+                vue.get(lot, 0, m);
+                for (int j = 0; j < m; j++) {
+                    cles[debut + i + j] = lot[j];
+                }
+            }
+            tampon.position(tampon.position() + n * Integer.BYTES);
+        }
+    };
+
+    /** Long sur 8 octets */
+    CodecCle<Long> LONGS = new CodecCle<Long>() {
+        @Override
+        public int identifiant() {
+            return 2;
+        }
+
+        @Override
+        public int largeur() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public int taille(Long cle) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void ecrire(Long cle, ByteBuffer tampon) {
+            tampon.putLong(cle);
+        }
+
+        @Override
+        public Long lire(ByteBuffer tampon) {
+            return tampon.getLong();
+        }
+
+        @Override
+        public void lire(ByteBuffer tampon, Object[] cles, int debut, int n) {
+            LongBuffer vue = tampon.asLongBuffer();
+            long[] lot = new long[Math.min(n, 4096)];
+            for (int i = 0; i < n; i += lot.length) {
+                int m = Math.min(lot.length, n - i);
+                vue.get(lot, 0, m);
+                for (int j = 0; j < m; j++) {
+                    cles[debut + i + j] = lot[j];
+                }
+            }
+            tampon.position(tampon.position() + n * Long.BYTES);
+        }
+    };
+
+    /** String en UTF-8, précédée de sa longueur en octets sur 4 octets */
+    CodecCle<String> CHAINES = new CodecCle<String>() {
+        @Override
+        public int identifiant() {
+            return 3;
+        }
+
+        @Override
+        public int taille(String cle) {
+            // majorant : trois octets UTF-8 par char au plus
+            return Integer.BYTES + 3 * cle.length();
+        }
+
+        @Override
+        public void ecrire(String cle, ByteBuffer tampon) {
+            byte[] octets = cle.getBytes(StandardCharsets.UTF_8);
+            tampon.putInt(octets.length);
+            tampon.put(octets);
+        }
+
+        @Override
+        public String lire(ByteBuffer tampon) {
+            int n = tampon.getInt();
+            if (n < 0 || n > tampon.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            byte[] octets = new byte[n];
+            tampon.get(octets);
+            return new String(octets, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Renvoie l'identifiant du codec, propre au format des clés
+     */
+    int identifiant();
+
+    /**
+     * Renvoie le nombre d'octets de chaque clé pour un codage de largeur
+     * fixe, 0 si la largeur varie d'une clé à l'autre
+     */
+    default int largeur() {
+        return 0;
+    }
+
+    /**
+     * Renvoie un majorant du nombre d'octets qu'occupera cle une fois codée
+     */
+    int taille(E cle);
+
+    /**
+     * Écrit cle à la position courante du tampon
+     */
+    void ecrire(E cle, ByteBuffer tampon);
+
+    /**
+     * Lit une clé à la position courante du tampon
+     *
+     * @throws BufferUnderflowException
+     *             si la clé dépasse la fin du tampon
+     */
+    E lire(ByteBuffer tampon);
+
+    /**
+     * Lit n clés consécutives dans cles[debut..debut + n[. Réservé aux
+     * codecs de largeur fixe : le tampon contient au moins les n clés.
+     */
+    default void lire(ByteBuffer tampon, Object[] cles, int debut, int n) {
+        for (int i = 0; i < n; i++) {
+            cles[debut + i] = lire(tampon);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * <p>
+ * Estimation de la taille des objets sur une JVM HotSpot : en-tête, champs
+ * référence (4 ou 8 octets selon les références compressées) et champs
+ * primitifs, arrondis à l'alignement des objets. Le modèle ignore le
+ * réordonnancement fin des champs, ce qui est exact pour les noeuds d'arbre
+ * (des références et au plus un champ primitif). Pour un relevé exact,
+ * utiliser JOL (org.openjdk.jol) sur les mêmes classes.
+ * </p>
+ *
+ * <p>
+ * {@link #main} affiche les octets par élément des différents arbres pour la
+ * JVM courante et pour les configurations usuelles :
+ * </p>
+ *
+ * <pre>
+ * java Empreinte
+ * java -XX:-UseCompressedOops Empreinte
+ * </pre>
+ */
+public final class Empreinte {
+    /** taille de l'en-tête des objets */
+    private final int entete;
+    /** taille d'une référence */
+    private final int reference;
+    /** alignement des objets */
+    private final int alignement;
+
+    public Empreinte(int entete, int reference, int alignement) {
+        this.entete = entete;
+        this.reference = reference;
+        this.alignement = alignement;
+    }
+
+    /**
+     * Renvoie le modèle de la JVM courante, lu dans ses options (HotSpot) ;
+     * à défaut celui d'une JVM 64 bits par défaut (tas de moins de 32 Go)
+     */
+    public static Empreinte jvmCourante() {
+        try {
+            HotSpotDiagnosticMXBean hs = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            boolean oopsCompressees = Boolean.parseBoolean(hs.getVMOption("UseCompressedOops").getValue());
+            boolean classesCompressees = Boolean.parseBoolean(hs.getVMOption("UseCompressedClassPointers").getValue());
+            int alignement = Integer.parseInt(hs.getVMOption("ObjectAlignmentInBytes").getValue());
+            int entete = classesCompressees ? 12 : 16;
+            try {
+                // en-têtes compacts (JDK 24 et suivants)
+                if (Boolean.parseBoolean(hs.getVMOption("UseCompactObjectHeaders").getValue())) {
+                    entete = 8;
+                }
+            } catch (IllegalArgumentException e) {
+                // option inconnue de cette JVM
+            }
+            return new Empreinte(entete, oopsCompressees ? 4 : 8, alignement);
+        } catch (RuntimeException | LinkageError e) {
+            return new Empreinte(12, 4, 8);
+        }
+    }
+
+    /**
+     * Renvoie la taille d'un objet ayant references champs référence et
+     * octetsPrimitifs octets de champs primitifs
+     */
+    public long objet(int references, int octetsPrimitifs) {
+        long brut = entete + (long) references * reference + octetsPrimitifs;
+        return (brut + alignement - 1) / alignement * alignement;
+    }
+
+    @Override
+    public String toString() {
+        return "en-tête " + entete + " o, références " + reference + " o, alignement " + alignement + " o";
+    }
+
+    /**
+     * Affiche les octets par noeud (hors clés) de chaque arbre
+     */
+    public static void main(String[] args) {
+        Empreinte[] modeles = { jvmCourante(), new Empreinte(12, 4, 8), new Empreinte(12, 8, 8),
+                new Empreinte(8, 4, 8) };
+        String[] noms = { "JVM courante", "références compressées", "tas > 32 Go", "en-têtes compacts" };
+        for (int i = 0; i < modeles.length; i++) {
+            Empreinte m = modeles[i];
+            System.out.println(noms[i] + " (" + m + ")");
+            // cle, gauche, droit, pere, couleur (référence vers l'enum) et
+            // la référence implicite vers l'arbre englobant
+            ligne("ArbreRougeNoir", m.objet(6, 0));
+            ligne("ArbreRougeNoirCompact", m.objet(4, 1));
+            ligne("ArbreRougeNoirCompact sans pères", m.objet(3, 1));
+            // cle, valeur, gauche, droit, pere, couleur (boolean)
+            ligne("TreeSet", m.objet(5, 1));
+            // cle, gauche, droit, pere, la référence vers l'arbre et le poids
+            // (int : hauteur AVL ou priorité d'arbre-tas)
+            ligne("ABR", m.objet(5, 4));
+        }
+    }
+
+    private static void ligne(String arbre, long octets) {
+        System.out.printf("  %-34s %3d o/élément%n", arbre, octets);
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Ensemble trié immuable, obtenu par {@link ArbreRougeNoir#freeze()}. Les clés
+ * sont rangées dans un tableau selon l'ordre d'Eytzinger (parcours en largeur
+ * d'un arbre binaire complet) : la racine est à l'indice 1 et les fils de
+ * l'indice k sont aux indices 2k et 2k + 1. Une recherche descend le tableau
+ * sans pointeur à suivre ; les premiers niveaux, partagés par toutes les
+ * recherches, tiennent dans quelques lignes de cache, et les descendants d'un
+ * indice sur plusieurs niveaux sont contigus.
+ * </p>
+ *
+ * <p>
+ * La descente ne teste pas l'égalité : elle fait exactement un pas par niveau
+ * et le résultat se lit sur l'indice d'arrivée. Le dernier virage à gauche
+ * donne la plus petite clé au-dessus de la cible, le dernier virage à droite
+ * la plus grande en dessous (cf {@link #plafond} et {@link #plancher}). Le
+ * choix du fils reste un if : le JIT en fait un transfert conditionnel quand
+ * il est imprévisible, et sinon le processeur charge par anticipation la clé
+ * du niveau suivant, ce qui tient lieu de préchargement.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés
+ */
+public class EnsembleFige<E> extends AbstractSet<E> {
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+
+    /** les clés dans l'ordre d'Eytzinger, à partir de l'indice 1 */
+    private final Object[] cles;
+    /** rang de chaque clé dans l'ordre croissant */
+    private final int[] rangs;
+    private final int taille;
+    private final Comparator<? super E> cmp;
+
+    /**
+     * Crée l'ensemble des taille premières clés de tri, qui doivent être
+     * triées sans doublon
+     *
+     * @param cmp
+     *            le comparateur, null pour l'ordre naturel
+     */
+    EnsembleFige(Object[] tri, int taille, Comparator<? super E> cmp) {
+        this.cmp = cmp == null ? ORDRE_NATUREL : cmp;
+        this.taille = taille;
+        rangs = rangs(taille);
+        cles = new Object[taille + 1];
+        for (int k = 1; k <= taille; k++) {
+            cles[k] = tri[rangs[k]];
+        }
+    }
+
+    // Navigation dans le tableau
+
+    /**
+     * Renvoie l'indice de la plus petite clé d'un tableau de n clés (0 s'il
+     * est vide)
+     */
+    static int premier(int n) {
+        if (n == 0) {
+            return 0;
+        }
+        int k = 1;
+        while (2 * k <= n) {
+            k = 2 * k;
+        }
+        return k;
+    }
+
+    /**
+     * Renvoie l'indice de la plus grande clé d'un tableau de n clés (0 s'il
+     * est vide)
+     */
+    static int dernier(int n) {
+        if (n == 0) {
+            return 0;
+        }
+        int k = 1;
+        while (2 * k + 1 <= n) {
+            k = 2 * k + 1;
+        }
+        return k;
+    }
+
+    /**
+     * Renvoie l'indice de la clé qui suit celle de l'indice k, 0 après la
+     * plus grande : le minimum du fils droit s'il existe, sinon l'ancêtre
+     * dont on remonte le fils gauche
+     */
+    static int suivant(int k, int n) {
+        if (2 * k + 1 <= n) {
+            k = 2 * k + 1;
+            while (2 * k <= n) {
+                k = 2 * k;
+            }
+            return k;
+        }
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * Renvoie l'indice à partir duquel la descente vers la clé k tourne à
+     * gauche pour la dernière fois, c'est-à-dire le plafond de la cible
+     * (0 s'il n'y en a pas)
+     */
+    static int plafond(int k) {
+        return k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+    }
+
+    /**
+     * Renvoie l'indice où la descente arrivée en k a tourné à droite pour la
+     * dernière fois, c'est-à-dire le plancher de la cible (0 s'il n'y en a
+     * pas)
+     */
+    static int plancher(int k) {
+        return k >>> (Integer.numberOfTrailingZeros(k) + 1);
+    }
+
+    /**
+     * Renvoie, pour chaque indice d'un tableau de n clés, le rang de sa clé
+     * dans l'ordre croissant (l'indice 0 est inutilisé). Les ensembles figés
+     * rangent la clé de rang i de leur tri à l'indice où rangs vaut i.
+     */
+    static int[] rangs(int n) {
+        int[] rangs = new int[n + 1];
+        int k = premier(n);
+        for (int i = 0; i < n; i++) {
+            rangs[k] = i;
+            k = suivant(k, n);
+        }
+        return rangs;
+    }
+
+    /**
+     * Renvoie le rang de la clé de l'indice k, ou le nombre de clés si k
+     * vaut 0 (pas de plafond) : c'est le nombre de clés avant le plafond
+     */
+    static int rangIndice(int[] rangs, int k) {
+        return k == 0 ? rangs.length - 1 : rangs[k];
+    }
+
+    /**
+     * Parcours dans l'ordre croissant des clés dont le rang est entre ceux
+     * des indices debut (inclus) et fin (exclu), cf {@link #rangIndice}. Le
+     * nombre de clés est fixé au départ : le parcours s'arrête sans
+     * comparer. Les itérateurs des ensembles figés lisent la clé de l'indice
+     * renvoyé par {@link #avancer()}.
+     */
+    abstract static class Parcours {
+        private final int n;
+        private int k;
+        private int restant;
+
+        Parcours(int[] rangs, int debut, int fin) {
+            n = rangs.length - 1;
+            k = debut;
+            restant = Math.max(rangIndice(rangs, fin) - rangIndice(rangs, debut), 0);
+        }
+
+        public boolean hasNext() {
+            return restant > 0;
+        }
+
+        /**
+         * Passe à la clé suivante et renvoie l'indice de la clé courante
+         *
+         * @throws NoSuchElementException
+         *             si le parcours est fini
+         */
+        final int avancer() {
+            if (restant == 0) {
+                throw new NoSuchElementException();
+            }
+            int i = k;
+            k = suivant(k, n);
+            restant--;
+            return i;
+        }
+    }
+
+    /**
+     * Descend le tableau : à droite si la clé est avant e (ou égale, si
+     * egalADroite), à gauche sinon
+     *
+     * @return l'indice d'arrivée, hors du tableau
+     */
+    @SuppressWarnings("unchecked")
+    private int descendre(E e, boolean egalADroite) {
+        Object[] t = cles;
+        int n = taille;
+        int seuil = egalADroite ? 1 : 0;
+        int k = 1;
+        while (k <= n) {
+            if (cmp.compare((E) t[k], e) < seuil) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        return k;
+    }
+
+    // Lectures
+
+    @Override
+    public int size() {
+        return taille;
+    }
+
+    public Comparator<? super E> comparator() {
+        return cmp == ORDRE_NATUREL ? null : cmp;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null || taille == 0) {
+            return false;
+        }
+        E e = (E) o;
+        int k = plancher(descendre(e, true));
+        return k != 0 && cmp.compare((E) cles[k], e) == 0;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    @SuppressWarnings("unchecked")
+    public E first() {
+        if (taille == 0) {
+            throw new NoSuchElementException();
+        }
+        return (E) cles[premier(taille)];
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    @SuppressWarnings("unchecked")
+    public E last() {
+        if (taille == 0) {
+            throw new NoSuchElementException();
+        }
+        return (E) cles[dernier(taille)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E ceiling(E e) {
+        return (E) cles[plafond(descendre(e, false))];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E higher(E e) {
+        return (E) cles[plafond(descendre(e, true))];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E floor(E e) {
+        return (E) cles[plancher(descendre(e, true))];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E lower(E e) {
+        return (E) cles[plancher(descendre(e, false))];
+    }
+
+    /**
+     * Renvoie le nombre de clés strictement inférieures à e
+     */
+    public int rang(E e) {
+        return rangIndice(rangs, plafond(descendre(e, false)));
+    }
+
+    /**
+     * Renvoie le nombre de clés de l'intervalle [de, a[
+     */
+    public int compter(E de, E a) {
+        return cmp.compare(de, a) >= 0 ? 0 : rang(a) - rang(de);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterateur(premier(taille), 0);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés de
+     * l'intervalle [de, a[
+     */
+    public Iterator<E> intervalle(E de, E a) {
+        return intervalle(de, true, a, false);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés comprises
+     * entre de et a. Les rangs des bornes sont calculés au départ : le
+     * parcours s'arrête au bon nombre de clés sans plus comparer.
+     */
+    public Iterator<E> intervalle(E de, boolean deInclus, E a, boolean aInclus) {
+        return new Iterateur(plafond(descendre(de, !deInclus)), plafond(descendre(a, aInclus)));
+    }
+
+    private final class Iterateur extends Parcours implements Iterator<E> {
+        Iterateur(int debut, int fin) {
+            super(rangs, debut, fin);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            return (E) cles[avancer()];
+        }
+    }
+}
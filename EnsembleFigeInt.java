@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>
+ * Ensemble trié immuable de clés int, obtenu par
+ * {@link IntArbreRougeNoir#freeze()}. Les clés sont dans un tableau selon
+ * l'ordre d'Eytzinger, comme pour {@link EnsembleFige} : la descente fait un
+ * pas par niveau, sans test d'égalité ni pointeur à suivre.
+ * </p>
+ *
+ * <p>
+ * floor, ceiling, lower et higher lèvent NoSuchElementException s'il n'y a
+ * pas de clé qui convienne, comme first et last sur un ensemble vide.
+ * </p>
+ */
+public class EnsembleFigeInt {
+    /** les clés dans l'ordre d'Eytzinger, à partir de l'indice 1 */
+    private final int[] cles;
+    /** rang de chaque clé dans l'ordre croissant */
+    private final int[] rangs;
+    private final int taille;
+
+    /**
+     * Crée l'ensemble des taille premières clés de tri, qui doivent être
+     * triées sans doublon
+     */
+    EnsembleFigeInt(int[] tri, int taille) {
+        this.taille = taille;
+        rangs = EnsembleFige.rangs(taille);
+        cles = new int[taille + 1];
+        for (int k = 1; k <= taille; k++) {
+            cles[k] = tri[rangs[k]];
+        }
+    }
+
+    /**
+     * Descend le tableau vers cle ; les clés égales sont laissées à gauche
+     *
+     * @return l'indice d'arrivée, hors du tableau
+     */
+    private int descendre(int cle) {
+        int[] t = cles;
+        int n = taille;
+        int k = 1;
+        while (k <= n) {
+            if (t[k] < cle) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Descend le tableau vers cle ; les clés égales sont laissées à droite
+     */
+    private int descendreApres(int cle) {
+        int[] t = cles;
+        int n = taille;
+        int k = 1;
+        while (k <= n) {
+            if (t[k] <= cle) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        return k;
+    }
+
+    private int cle(int k) {
+        if (k == 0) {
+            throw new NoSuchElementException();
+        }
+        return cles[k];
+    }
+
+    // Lectures
+
+    public int size() {
+        return taille;
+    }
+
+    public boolean isEmpty() {
+        return taille == 0;
+    }
+
+    public boolean contains(int cle) {
+        int k = EnsembleFige.plancher(descendreApres(cle));
+        return k != 0 && cles[k] == cle;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public int first() {
+        return cle(EnsembleFige.premier(taille));
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public int last() {
+        return cle(EnsembleFige.dernier(taille));
+    }
+
+    public int ceiling(int cle) {
+        return cle(EnsembleFige.plafond(descendre(cle)));
+    }
+
+    public int higher(int cle) {
+        return cle(EnsembleFige.plafond(descendreApres(cle)));
+    }
+
+    public int floor(int cle) {
+        return cle(EnsembleFige.plancher(descendreApres(cle)));
+    }
+
+    public int lower(int cle) {
+        return cle(EnsembleFige.plancher(descendre(cle)));
+    }
+
+    /**
+     * Renvoie le nombre de clés strictement inférieures à cle
+     */
+    public int rang(int cle) {
+        return EnsembleFige.rangIndice(rangs, EnsembleFige.plafond(descendre(cle)));
+    }
+
+    /**
+     * Renvoie le nombre de clés de l'intervalle [de, a[
+     */
+    public int compter(int de, int a) {
+        return de >= a ? 0 : rang(a) - rang(de);
+    }
+
+    /**
+     * Renvoie un itérateur sur les clés dans l'ordre croissant
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Iterateur(EnsembleFige.premier(taille), 0);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés de
+     * l'intervalle [de, a[
+     */
+    public PrimitiveIterator.OfInt intervalle(int de, int a) {
+        return intervalle(de, true, a, false);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés comprises
+     * entre de et a
+     */
+    public PrimitiveIterator.OfInt intervalle(int de, boolean deInclus, int a, boolean aInclus) {
+        return new Iterateur(EnsembleFige.plafond(deInclus ? descendre(de) : descendreApres(de)),
+                EnsembleFige.plafond(aInclus ? descendreApres(a) : descendre(a)));
+    }
+
+    /**
+     * Renvoie les clés dans l'ordre croissant
+     */
+    public int[] toArray() {
+        int[] t = new int[taille];
+        for (int k = 1; k <= taille; k++) {
+            t[rangs[k]] = cles[k];
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private final class Iterateur extends EnsembleFige.Parcours implements PrimitiveIterator.OfInt {
+        Iterateur(int debut, int fin) {
+            super(rangs, debut, fin);
+        }
+
+        @Override
+        public int nextInt() {
+            return cles[avancer()];
+        }
+    }
+}
@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>
+ * Ensemble trié immuable de clés long, obtenu par
+ * {@link LongArbreRougeNoir#freeze()}. Les clés sont dans un tableau selon
+ * l'ordre d'Eytzinger, comme pour {@link EnsembleFige} : la descente fait un
+ * pas par niveau, sans test d'égalité ni pointeur à suivre.
+ * </p>
+ *
+ * <p>
+ * floor, ceiling, lower et higher lèvent NoSuchElementException s'il n'y a
+ * pas de clé qui convienne, comme first et last sur un ensemble vide.
+ * </p>
+ */
+public class EnsembleFigeLong {
+    /** les clés dans l'ordre d'Eytzinger, à partir de l'indice 1 */
+    private final long[] cles;
+    /** rang de chaque clé dans l'ordre croissant */
+    private final int[] rangs;
+    private final int taille;
+
+    /**
+     * Crée l'ensemble des taille premières clés de tri, qui doivent être
+     * triées sans doublon
+     */
+    EnsembleFigeLong(long[] tri, int taille) {
+        this.taille = taille;
+        rangs = EnsembleFige.rangs(taille);
+        cles = new long[taille + 1];
+        for (int k = 1; k <= taille; k++) {
+            cles[k] = tri[rangs[k]];
+        }
+    }
+
+    /**
+     * Descend le tableau vers cle ; les clés égales sont laissées à gauche
+     *
+     * @return l'indice d'arrivée, hors du tableau
+     */
+    private int descendre(long cle) {
+        long[] t = cles;
+        int n = taille;
+        int k = 1;
+        while (k <= n) {
+            if (t[k] < cle) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Descend le tableau vers cle ; les clés égales sont laissées à droite
+     */
+    private int descendreApres(long cle) {
+        long[] t = cles;
+        int n = taille;
+        int k = 1;
+        while (k <= n) {
+            if (t[k] <= cle) {
+                k = 2 * k + 1;
+            } else {
+                k = 2 * k;
+            }
+        }
+        return k;
+    }
+
+    private long cle(int k) {
+        if (k == 0) {
+            throw new NoSuchElementException();
+        }
+        return cles[k];
+    }
+
+    // Lectures
+
+    public int size() {
+        return taille;
+    }
+
+    public boolean isEmpty() {
+        return taille == 0;
+    }
+
+    public boolean contains(long cle) {
+        int k = EnsembleFige.plancher(descendreApres(cle));
+        return k != 0 && cles[k] == cle;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public long first() {
+        return cle(EnsembleFige.premier(taille));
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'ensemble est vide
+     */
+    public long last() {
+        return cle(EnsembleFige.dernier(taille));
+    }
+
+    public long ceiling(long cle) {
+        return cle(EnsembleFige.plafond(descendre(cle)));
+    }
+
+    public long higher(long cle) {
+        return cle(EnsembleFige.plafond(descendreApres(cle)));
+    }
+
+    public long floor(long cle) {
+        return cle(EnsembleFige.plancher(descendreApres(cle)));
+    }
+
+    public long lower(long cle) {
+        return cle(EnsembleFige.plancher(descendre(cle)));
+    }
+
+    /**
+     * Renvoie le nombre de clés strictement inférieures à cle
+     */
+    public int rang(long cle) {
+        return EnsembleFige.rangIndice(rangs, EnsembleFige.plafond(descendre(cle)));
+    }
+
+    /**
+     * Renvoie le nombre de clés de l'intervalle [de, a[
+     */
+    public int compter(long de, long a) {
+        return de >= a ? 0 : rang(a) - rang(de);
+    }
+
+    /**
+     * Renvoie un itérateur sur les clés dans l'ordre croissant
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new Iterateur(EnsembleFige.premier(taille), 0);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés de
+     * l'intervalle [de, a[
+     */
+    public PrimitiveIterator.OfLong intervalle(long de, long a) {
+        return intervalle(de, true, a, false);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés comprises
+     * entre de et a
+     */
+    public PrimitiveIterator.OfLong intervalle(long de, boolean deInclus, long a, boolean aInclus) {
+        return new Iterateur(EnsembleFige.plafond(deInclus ? descendre(de) : descendreApres(de)),
+                EnsembleFige.plafond(aInclus ? descendreApres(a) : descendre(a)));
+    }
+
+    /**
+     * Renvoie les clés dans l'ordre croissant
+     */
+    public long[] toArray() {
+        long[] t = new long[taille];
+        for (int k = 1; k <= taille; k++) {
+            t[rangs[k]] = cles[k];
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private final class Iterateur extends EnsembleFige.Parcours implements PrimitiveIterator.OfLong {
+        Iterateur(int debut, int fin) {
+            super(rangs, debut, fin);
+        }
+
+        @Override
+        public long nextLong() {
+            return cles[avancer()];
+        }
+    }
+}
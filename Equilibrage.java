@@ -0,0 +1,41 @@
+/**
+ * Stratégie d'équilibrage d'un {@link ABR}, choisie à la création de
+ * l'arbre. Toutes conservent l'ordre infixe des noeuds (rotations et
+ * reconstructions), si bien que la recherche, les itérateurs et le
+ * Spliterator sont les mêmes pour toutes.
+ */
+public enum Equilibrage {
+    /**
+     * Aucun équilibrage : un arbre construit sur des clés triées dégénère en
+     * liste chaînée
+     */
+    AUCUN,
+    /**
+     * Arbre AVL : les hauteurs des deux sous-arbres de chaque noeud diffèrent
+     * d'au plus un, rétabli par rotations en remontant après chaque ajout ou
+     * suppression. Chaque noeud garde sa hauteur.
+     */
+    AVL,
+    /**
+     * Arbre-tas (treap) : chaque noeud reçoit une priorité aléatoire et
+     * l'arbre est un tas pour ces priorités, ce qui lui donne la forme d'un
+     * arbre construit dans un ordre aléatoire (hauteur logarithmique en
+     * moyenne). Chaque noeud garde sa priorité.
+     */
+    ARBRE_TAS,
+    /**
+     * Arbre évasé (splay tree) : chaque noeud ajouté ou trouvé par une
+     * recherche est remonté à la racine. Le coût est logarithmique en amorti,
+     * et bien moindre quand les accès se concentrent sur quelques clés
+     * chaudes. Même contains modifie la forme de l'arbre.
+     */
+    EVASE,
+    /**
+     * Arbre à bouc émissaire (scapegoat tree) : aucune information dans les
+     * noeuds ; quand un ajout crée un noeud trop profond, son plus proche
+     * ancêtre déséquilibré est reconstruit parfaitement équilibré, et tout
+     * l'arbre l'est quand les suppressions l'ont trop vidé. Coût
+     * logarithmique en amorti.
+     */
+    BOUC_EMISSAIRE
+}
@@ -0,0 +1,266 @@
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Frontal d'ingestion d'un {@link ArbreRougeNoirConcurrent} : au lieu de se
+ * disputer le verrou de l'arbre, les producteurs déposent leurs clés dans une
+ * file sans verrou, et un unique thread écrivain les applique par lots. Chaque
+ * lot est trié puis inséré en une seule prise du verrou, dans l'ordre des
+ * clés, chaque recherche partant du noeud de la clé précédente (cf
+ * ArbreRougeNoir.ajouterTrie). Les lecteurs de l'arbre ne sont pas
+ * concernés.
+ * </p>
+ *
+ * <p>
+ * Un lot part dès qu'il compte tailleLot clés, ou quand sa première clé a
+ * attendu latence. Au plus capacite clés peuvent être en attente : au-delà,
+ * {@link #soumettre} bloque et {@link #offrir} refuse. Les producteurs
+ * n'attendent que sur un Semaphore et ne prennent aucun moniteur ; ils
+ * peuvent donc être des threads virtuels.
+ * </p>
+ *
+ * <p>
+ * Chaque soumission renvoie un CompletableFuture qui reçoit, une fois le lot
+ * appliqué, true si la clé a été ajoutée et false si elle était déjà
+ * présente (ou soumise plus tôt dans le même lot). Il est complété par le
+ * thread écrivain : les traitements lourds qui en dépendent doivent passer
+ * par les variantes Async.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés
+ */
+public class IngestionParLots<E> implements AutoCloseable {
+    /** nombre maximal de clés par lot par défaut */
+    public static final int TAILLE_LOT_DEFAUT = 1024;
+    /** nombre maximal de clés en attente par défaut */
+    public static final int CAPACITE_DEFAUT = 1 << 16;
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> ORDRE_NATUREL = (e1, e2) -> ((Comparable<Object>) e1).compareTo(e2);
+
+    private static final class Soumission<E> {
+        final E cle;
+        final CompletableFuture<Boolean> accuse = new CompletableFuture<>();
+
+        Soumission(E cle) {
+            this.cle = cle;
+        }
+    }
+
+    private final ArbreRougeNoirConcurrent<E> arbre;
+    private final Comparator<? super E> cmp;
+    private final int tailleLot;
+    private final long latence;
+    private final ConcurrentLinkedQueue<Soumission<E>> file = new ConcurrentLinkedQueue<>();
+    /** places libres dans la file */
+    private final Semaphore places;
+    private final Thread ecrivain;
+    /** true quand l'écrivain est (ou va être) endormi et doit être réveillé */
+    private volatile boolean endormi;
+    private volatile boolean ferme;
+
+    /**
+     * Crée le frontal avec les réglages par défaut : lots de 1024 clés, 1 ms
+     * de latence, 65536 clés en attente au plus
+     */
+    public IngestionParLots(ArbreRougeNoirConcurrent<E> arbre) {
+        this(arbre, TAILLE_LOT_DEFAUT, Duration.ofMillis(1), CAPACITE_DEFAUT);
+    }
+
+    /**
+     * Crée le frontal et démarre son thread écrivain
+     *
+     * @param arbre
+     *            l'arbre alimenté
+     * @param tailleLot
+     *            le nombre maximal de clés par lot
+     * @param latence
+     *            le temps maximal pendant lequel un lot incomplet attend
+     *            d'autres clés
+     * @param capacite
+     *            le nombre maximal de clés soumises et pas encore appliquées
+     */
+    public IngestionParLots(ArbreRougeNoirConcurrent<E> arbre, int tailleLot, Duration latence, int capacite) {
+        if (tailleLot < 1 || capacite < tailleLot || latence.isNegative()) {
+            throw new IllegalArgumentException("lot " + tailleLot + ", capacité " + capacite + ", latence " + latence);
+        }
+        this.arbre = arbre;
+        Comparator<? super E> c = arbre.comparator();
+        cmp = c != null ? c : ORDRE_NATUREL;
+        this.tailleLot = tailleLot;
+        this.latence = latence.toNanos();
+        places = new Semaphore(capacite);
+        ecrivain = new Thread(this::ecrire, "ingestion");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    // Producteurs
+
+    /**
+     * Soumet une clé, en attendant une place si la file est pleine
+     *
+     * @return l'accusé de l'insertion
+     * @throws InterruptedException
+     *             si le thread est interrompu pendant l'attente
+     * @throws IllegalStateException
+     *             si le frontal est fermé
+     */
+    public CompletableFuture<Boolean> soumettre(E cle) throws InterruptedException {
+        Soumission<E> s = new Soumission<>(verifier(cle));
+        places.acquire();
+        return deposer(s);
+    }
+
+    /**
+     * Soumet une clé si la file n'est pas pleine
+     *
+     * @return l'accusé de l'insertion, null si la file est pleine
+     * @throws IllegalStateException
+     *             si le frontal est fermé
+     */
+    public CompletableFuture<Boolean> offrir(E cle) {
+        Soumission<E> s = new Soumission<>(verifier(cle));
+        return places.tryAcquire() ? deposer(s) : null;
+    }
+
+    private E verifier(E cle) {
+        cmp.compare(cle, cle); // vérification du type et de null
+        if (ferme) {
+            throw new IllegalStateException("ingestion fermée");
+        }
+        return cle;
+    }
+
+    private CompletableFuture<Boolean> deposer(Soumission<E> s) {
+        file.add(s);
+        // l'écrivain ne sort qu'en trouvant la file vide après avoir vu ferme :
+        // si s y est encore, il ne la verra pas
+        if (ferme && file.remove(s)) {
+            places.release();
+            throw new IllegalStateException("ingestion fermée");
+        }
+        if (endormi) {
+            LockSupport.unpark(ecrivain);
+        }
+        return s.accuse;
+    }
+
+    // Écrivain
+
+    /**
+     * Endort l'écrivain jusqu'à la prochaine soumission, au plus nanos (0
+     * pour ne pas borner l'attente)
+     */
+    private void dormir(long nanos) {
+        endormi = true;
+        if (file.isEmpty() && !ferme) {
+            if (nanos == 0) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, nanos);
+            }
+        }
+        endormi = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void ecrire() {
+        Soumission<E>[] lot = (Soumission<E>[]) new Soumission<?>[tailleLot];
+        Object[] cles = new Object[tailleLot];
+        boolean[] ajoutes = new boolean[tailleLot];
+        Comparator<Soumission<E>> ordre = (a, b) -> cmp.compare(a.cle, b.cle);
+        while (true) {
+            Soumission<E> s = file.poll();
+            if (s == null) {
+                // file relue après ferme : un dépôt plus tardif voit ferme et se retire
+                if (ferme && file.isEmpty()) {
+                    return;
+                }
+                dormir(0);
+                continue;
+            }
+            int n = 0;
+            lot[n++] = s;
+            long limite = System.nanoTime() + latence;
+            while (n < tailleLot) {
+                s = file.poll();
+                if (s != null) {
+                    lot[n++] = s;
+                    continue;
+                }
+                long reste = limite - System.nanoTime();
+                if (reste <= 0 || ferme) {
+                    break;
+                }
+                dormir(reste);
+            }
+            appliquer(lot, n, cles, ajoutes, ordre);
+        }
+    }
+
+    /**
+     * Applique les n soumissions de lot puis libère leurs places. Un échec
+     * (du comparateur pendant le tri, par exemple) est transmis aux accusés
+     * des clés qui n'ont pas été appliquées au lieu d'arrêter l'écrivain ;
+     * celles qui l'ont été reçoivent leur résultat.
+     */
+    private void appliquer(Soumission<E>[] lot, int n, Object[] cles, boolean[] ajoutes,
+            Comparator<Soumission<E>> ordre) {
+        int appliquees = 0;
+        try {
+            // tri stable : entre deux clés égales, la première soumise est ajoutée
+            Arrays.sort(lot, 0, n, ordre);
+            for (int i = 0; i < n; i++) {
+                cles[i] = lot[i].cle;
+            }
+            try {
+                arbre.ajouterTrie(cles, n, ajoutes);
+                appliquees = n;
+            } catch (ArbreRougeNoir.LotInterrompu e) {
+                appliquees = e.appliquees;
+                throw e.getCause();
+            }
+        } catch (Throwable e) {
+            for (int i = appliquees; i < n; i++) {
+                lot[i].accuse.completeExceptionally(e);
+            }
+        } finally {
+            for (int i = 0; i < appliquees; i++) {
+                lot[i].accuse.complete(ajoutes[i]);
+            }
+            Arrays.fill(lot, 0, n, null);
+            Arrays.fill(cles, 0, n, null);
+            places.release(n);
+        }
+    }
+
+    /**
+     * Refuse toute nouvelle soumission, puis attend que les clés déjà
+     * soumises soient appliquées. Une interruption pendant l'attente ne
+     * l'abrège pas : elle est remise sur le thread appelant au retour.
+     */
+    @Override
+    public void close() {
+        ferme = true;
+        LockSupport.unpark(ecrivain);
+        boolean interrompu = false;
+        while (true) {
+            try {
+                ecrivain.join();
+                break;
+            } catch (InterruptedException e) {
+                interrompu = true;
+            }
+        }
+        if (interrompu) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
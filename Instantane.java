@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.zip.CRC32C;
+
+/**
+ * <p>
+ * Format binaire des instantanés d'arbres : un en-tête de 32 octets suivi des
+ * clés dans l'ordre croissant, codées par un {@link CodecCle}. Tout est en
+ * petit-boutiste.
+ * </p>
+ *
+ * <pre>
+ *  0  int   magie "ARBR"
+ *  4  short version du format
+ *  6  short réservé (0)
+ *  8  int   identifiant du codec
+ * 12  int   CRC32C des clés
+ * 16  long  nombre de clés
+ * 24  long  nombre d'octets des clés
+ * </pre>
+ *
+ * <p>
+ * L'écriture passe par un fichier temporaire renommé à la fin : un
+ * instantané est complet ou absent. La lecture projette le fichier en mémoire
+ * par fenêtres d'au plus 1 Go, vérifie la somme de contrôle, puis décode les
+ * clés dans un tableau trié prêt pour une construction en bloc.
+ * </p>
+ */
+final class Instantane {
+    static final int MAGIE = 0x52425241; // "ARBR" lu en petit-boutiste
+    static final short VERSION = 1;
+    static final int TAILLE_ENTETE = 32;
+    /** taille maximale d'une fenêtre projetée en mémoire */
+    private static final long FENETRE = 1L << 30;
+    /** taille du tampon d'écriture */
+    private static final int TAMPON = 1 << 20;
+
+    private Instantane() {
+    }
+
+    /**
+     * Écrit les taille clés renvoyées par cles, qui doivent être dans l'ordre
+     * croissant, dans fichier
+     *
+     * @throws ConcurrentModificationException
+     *             si cles ne renvoie pas exactement taille clés
+     */
+    static <E> void ecrire(Iterator<? extends E> cles, int taille, CodecCle<? super E> codec, Path fichier)
+            throws IOException {
+        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer tampon = ByteBuffer.allocateDirect(TAMPON).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C crc = new CRC32C();
+            long longueur = 0;
+            long n = 0;
+            canal.position(TAILLE_ENTETE);
+            while (cles.hasNext()) {
+                E cle = cles.next();
+                int t = codec.taille(cle);
+                if (t > tampon.remaining()) {
+                    longueur += vider(tampon, canal, crc);
+                    if (t > tampon.capacity()) {
+                        tampon = ByteBuffer.allocateDirect(t).order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                }
+                codec.ecrire(cle, tampon);
+                n++;
+            }
+            longueur += vider(tampon, canal, crc);
+            if (n != taille) {
+                throw new ConcurrentModificationException();
+            }
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+            entete.putInt(MAGIE).putShort(VERSION).putShort((short) 0).putInt(codec.identifiant())
+                    .putInt((int) crc.getValue()).putLong(n).putLong(longueur).flip();
+            while (entete.hasRemaining()) {
+                canal.write(entete, entete.position());
+            }
+            canal.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+        Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Écrit le contenu du tampon à la suite du fichier
+     *
+     * @return le nombre d'octets écrits
+     */
+    private static int vider(ByteBuffer tampon, FileChannel canal, CRC32C crc) throws IOException {
+        tampon.flip();
+        int n = tampon.remaining();
+        crc.update(tampon.duplicate());
+        while (tampon.hasRemaining()) {
+            canal.write(tampon);
+        }
+        tampon.clear();
+        return n;
+    }
+
+    /**
+     * Lit un instantané
+     *
+     * @param cmp
+     *            l'ordre dans lequel les clés doivent être rangées
+     * @param distinctes
+     *            true si les clés doivent être strictement croissantes
+     * @return les clés, dans l'ordre croissant
+     * @throws IOException
+     *             si le fichier n'est pas un instantané écrit avec ce codec,
+     *             est tronqué ou corrompu, ou si ses clés ne sont pas triées
+     *             selon cmp
+     */
+    @SuppressWarnings("unchecked")
+    static <E> Object[] lire(Path fichier, CodecCle<E> codec, Comparator<? super E> cmp, boolean distinctes)
+            throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE).order(ByteOrder.LITTLE_ENDIAN);
+            while (entete.hasRemaining() && canal.read(entete, entete.position()) >= 0) {
+            }
+            if (entete.hasRemaining() || entete.getInt(0) != MAGIE) {
+                throw new IOException(fichier + " n'est pas un instantané");
+            }
+            if (entete.getShort(4) != VERSION) {
+                throw new IOException(fichier + " : version " + entete.getShort(4) + " non prise en charge");
+            }
+            if (entete.getInt(8) != codec.identifiant()) {
+                throw new IOException(fichier + " : clés écrites par le codec " + entete.getInt(8) + ", pas "
+                        + codec.identifiant());
+            }
+            int crcAttendu = entete.getInt(12);
+            long taille = entete.getLong(16);
+            long longueur = entete.getLong(24);
+            if (longueur < 0 || TAILLE_ENTETE + longueur != canal.size()) {
+                throw new IOException(fichier + " : tronqué");
+            }
+            if (taille < 0 || taille > Integer.MAX_VALUE - 8
+                    || (codec.largeur() > 0 && taille * codec.largeur() != longueur)) {
+                throw new IOException(fichier + " : nombre de clés incohérent");
+            }
+
+            CRC32C crc = new CRC32C();
+            for (long p = 0; p < longueur; p += FENETRE) {
+                crc.update(canal.map(FileChannel.MapMode.READ_ONLY, TAILLE_ENTETE + p, Math.min(FENETRE, longueur - p)));
+            }
+            if ((int) crc.getValue() != crcAttendu) {
+                throw new IOException(fichier + " : somme de contrôle erronée");
+            }
+
+            Object[] cles = new Object[(int) taille];
+            int n = 0;
+            long position = TAILLE_ENTETE;
+            long fin = TAILLE_ENTETE + longueur;
+            while (n < cles.length) {
+                long reste = fin - position;
+                MappedByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, position, Math.min(FENETRE, reste));
+                fenetre.order(ByteOrder.LITTLE_ENDIAN);
+                int lues = 0;
+                if (codec.largeur() > 0) {
+                    lues = Math.min(cles.length - n, fenetre.capacity() / codec.largeur());
+                    codec.lire(fenetre, cles, n, lues);
+                } else {
+                    // une clé à cheval sur deux fenêtres est relue au début de la suivante
+                    int debutCle = 0;
+                    try {
+                        while (n + lues < cles.length) {
+                            debutCle = fenetre.position();
+                            cles[n + lues] = codec.lire(fenetre);
+                            lues++;
+                        }
+                    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                        if (reste <= FENETRE || lues == 0) {
+                            throw new IOException(fichier + " : clé illisible à l'octet " + (position + debutCle), e);
+                        }
+                        fenetre.position(debutCle);
+                    }
+                }
+                for (int i = Math.max(n, 1); i < n + lues; i++) {
+                    int c = cmp.compare((E) cles[i - 1], (E) cles[i]);
+                    if (c > 0 || (c == 0 && distinctes)) {
+                        throw new IOException(fichier + " : clés non triées selon le comparateur");
+                    }
+                }
+                n += lues;
+                position += fenetre.position();
+            }
+            if (position != fin) {
+                throw new IOException(fichier + " : octets en trop après la dernière clé");
+            }
+            return cles;
+        }
+    }
+}
@@ -0,0 +1,598 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>
+ * Arbre rouge-noir de clés long, sans boxing. Un noeud est un indice dans des
+ * tableaux parallèles (clé, fils gauche, fils droit, père, couleur) : il n'y a
+ * ni objet par noeud ni appel de comparateur, et les indices des noeuds
+ * supprimés sont réutilisés par les ajouts suivants.
+ * </p>
+ *
+ * <p>
+ * L'algorithme est celui de {@link ArbreRougeNoir} ; l'indice 0 y joue le rôle
+ * de la sentinelle. Comme dans ArbreRougeNoir, une clé déjà présente n'est pas
+ * ajoutée une seconde fois.
+ * </p>
+ */
+public class LongArbreRougeNoir {
+    private static final int NIL = 0;
+
+    private long[] cles;
+    private int[] gauche;
+    private int[] droit;
+    private int[] pere;
+    private boolean[] rouge;
+
+    private int racine = NIL;
+    private int taille;
+    /** premier indice jamais utilisé */
+    private int prochain = 1;
+    /** noeuds libérés, chaînés par gauche[] */
+    private int libres = NIL;
+    private int modifications;
+
+    // Consructeurs
+
+    /**
+     * Crée un arbre vide
+     */
+    public LongArbreRougeNoir() {
+        this(16);
+    }
+
+    /**
+     * Crée un arbre vide pouvant contenir capacite clés sans réallocation
+     *
+     * @param capacite
+     *            le nombre de clés prévu
+     */
+    public LongArbreRougeNoir(int capacite) {
+        int n = Math.max(capacite, 1) + 1;
+        cles = new long[n];
+        gauche = new int[n];
+        droit = new int[n];
+        pere = new int[n];
+        rouge = new boolean[n];
+    }
+
+    /**
+     * Crée un arbre contenant les clés du tableau. Elles sont triées si besoin
+     * puis l'arbre est construit équilibré en temps linéaire ; les indices des
+     * noeuds suivent alors l'ordre des clés.
+     *
+     * @param c
+     *            les clés à copier
+     */
+    public LongArbreRougeNoir(long[] c) {
+        this(c.length);
+        long[] tri = c.clone();
+        boolean trie = true;
+        for (int i = 1; i < tri.length && trie; i++) {
+            trie = tri[i - 1] <= tri[i];
+        }
+        if (!trie) {
+            Arrays.sort(tri);
+        }
+        int n = 0;
+        for (int i = 0; i < tri.length; i++) {
+            if (n == 0 || tri[n - 1] != tri[i]) {
+                tri[n++] = tri[i];
+            }
+        }
+        System.arraycopy(tri, 0, cles, 1, n);
+        prochain = n + 1;
+        taille = n;
+        racine = construire(1, n, 0, niveauRouge(n), NIL);
+    }
+
+    private static int niveauRouge(int n) {
+        int niveau = 0;
+        for (int m = n - 1; m >= 0; m = m / 2 - 1) {
+            niveau++;
+        }
+        return niveau;
+    }
+
+    /**
+     * Relie les noeuds debut..fin (dont les clés sont déjà en place) en un
+     * sous-arbre équilibré
+     */
+    private int construire(int debut, int fin, int profondeur, int niveauRouge, int p) {
+        if (debut > fin) {
+            return NIL;
+        }
+        int milieu = (debut + fin) >>> 1;
+        pere[milieu] = p;
+        rouge[milieu] = profondeur == niveauRouge;
+        gauche[milieu] = construire(debut, milieu - 1, profondeur + 1, niveauRouge, milieu);
+        droit[milieu] = construire(milieu + 1, fin, profondeur + 1, niveauRouge, milieu);
+        return milieu;
+    }
+
+    // Gestion des noeuds
+
+    private int nouveauNoeud(long cle) {
+        int z;
+        if (libres != NIL) {
+            z = libres;
+            libres = gauche[z];
+        } else {
+            if (prochain == cles.length) {
+                agrandir();
+            }
+            z = prochain++;
+        }
+        cles[z] = cle;
+        gauche[z] = NIL;
+        droit[z] = NIL;
+        rouge[z] = true;
+        return z;
+    }
+
+    private void liberer(int z) {
+        gauche[z] = libres;
+        libres = z;
+    }
+
+    private void agrandir() {
+        int n = cles.length + (cles.length >> 1) + 1;
+        cles = Arrays.copyOf(cles, n);
+        gauche = Arrays.copyOf(gauche, n);
+        droit = Arrays.copyOf(droit, n);
+        pere = Arrays.copyOf(pere, n);
+        rouge = Arrays.copyOf(rouge, n);
+    }
+
+    private int minimum(int x) {
+        while (gauche[x] != NIL) {
+            x = gauche[x];
+        }
+        return x;
+    }
+
+    private int maximum(int x) {
+        while (droit[x] != NIL) {
+            x = droit[x];
+        }
+        return x;
+    }
+
+    private int suivant(int x) {
+        if (droit[x] != NIL) {
+            return minimum(droit[x]);
+        }
+        int p = pere[x];
+        while (p != NIL && x == droit[p]) {
+            x = p;
+            p = pere[p];
+        }
+        return p;
+    }
+
+    // Opérations
+
+    /**
+     * Ajoute une clé
+     *
+     * @return false si la clé était déjà présente
+     */
+    public boolean add(long cle) {
+        int y = NIL;
+        int x = racine;
+        boolean aGauche = false;
+        while (x != NIL) {
+            y = x;
+            long k = cles[x];
+            if (cle == k) {
+                return false;
+            }
+            aGauche = cle < k;
+            x = aGauche ? gauche[x] : droit[x];
+        }
+        int z = nouveauNoeud(cle);
+        pere[z] = y;
+        if (y == NIL) {
+            racine = z;
+        } else if (aGauche) {
+            gauche[y] = z;
+        } else {
+            droit[y] = z;
+        }
+        ajouterCorrection(z);
+        taille++;
+        modifications++;
+        return true;
+    }
+
+    public boolean contains(long cle) {
+        return rechercher(cle) != NIL;
+    }
+
+    /**
+     * Supprime une clé
+     *
+     * @return false si la clé n'était pas présente
+     */
+    public boolean remove(long cle) {
+        int z = rechercher(cle);
+        if (z == NIL) {
+            return false;
+        }
+        supprimer(z);
+        return true;
+    }
+
+    public int size() {
+        return taille;
+    }
+
+    public boolean isEmpty() {
+        return taille == 0;
+    }
+
+    public void clear() {
+        racine = NIL;
+        taille = 0;
+        prochain = 1;
+        libres = NIL;
+        modifications++;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    public long first() {
+        if (racine == NIL) {
+            throw new NoSuchElementException();
+        }
+        return cles[minimum(racine)];
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             si l'arbre est vide
+     */
+    public long last() {
+        if (racine == NIL) {
+            throw new NoSuchElementException();
+        }
+        return cles[maximum(racine)];
+    }
+
+    /**
+     * Renvoie un itérateur sur les clés dans l'ordre croissant
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new Iterateur(racine == NIL ? NIL : minimum(racine), false, 0, false);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés de
+     * l'intervalle [de, a[
+     */
+    public PrimitiveIterator.OfLong intervalle(long de, long a) {
+        return intervalle(de, true, a, false);
+    }
+
+    /**
+     * Renvoie un itérateur, dans l'ordre croissant, sur les clés comprises
+     * entre de et a. Le premier noeud est trouvé par une descente depuis la
+     * racine, les suivants en suivant les liens.
+     */
+    public PrimitiveIterator.OfLong intervalle(long de, boolean deInclus, long a, boolean aInclus) {
+        return new Iterateur(plafond(de, deInclus), true, a, aInclus);
+    }
+
+    /**
+     * Renvoie les clés dans l'ordre croissant
+     */
+    public long[] toArray() {
+        long[] t = new long[taille];
+        int i = 0;
+        for (int x = racine == NIL ? NIL : minimum(racine); x != NIL; x = suivant(x)) {
+            t[i++] = cles[x];
+        }
+        return t;
+    }
+
+    /**
+     * Renvoie une copie immuable de l'ensemble, rangée dans un tableau pour
+     * des recherches sans suivre de liens (cf {@link EnsembleFigeLong})
+     */
+    public EnsembleFigeLong freeze() {
+        return new EnsembleFigeLong(toArray(), taille);
+    }
+
+    /**
+     * Renvoie la hauteur de l'arbre (0 pour l'arbre vide)
+     */
+    public int hauteur() {
+        return hauteur(racine);
+    }
+
+    private int hauteur(int x) {
+        return x == NIL ? 0 : 1 + Math.max(hauteur(gauche[x]), hauteur(droit[x]));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int rechercher(long cle) {
+        int x = racine;
+        while (x != NIL) {
+            long k = cles[x];
+            if (cle == k) {
+                return x;
+            }
+            x = cle < k ? gauche[x] : droit[x];
+        }
+        return NIL;
+    }
+
+    /**
+     * Renvoie le noeud de la plus petite clé supérieure (ou égale si
+     * inclusif) à cle, NIL s'il n'y en a pas
+     */
+    private int plafond(long cle, boolean inclusif) {
+        int x = racine;
+        int candidat = NIL;
+        while (x != NIL) {
+            long k = cles[x];
+            if (cle == k && inclusif) {
+                return x;
+            }
+            if (cle < k) {
+                candidat = x;
+                x = gauche[x];
+            } else {
+                x = droit[x];
+            }
+        }
+        return candidat;
+    }
+
+    // Rééquilibrage, repris de ArbreRougeNoir
+
+    private void ajouterCorrection(int z) {
+        while (rouge[pere[z]]) {
+            int p = pere[z];
+            int g = pere[p];
+            if (p == gauche[g]) {
+                int y = droit[g]; // l'oncle de z
+                if (rouge[y]) {
+                    // cas 1
+                    rouge[p] = false;
+                    rouge[y] = false;
+                    rouge[g] = true;
+                    z = g;
+                } else {
+                    if (z == droit[p]) {
+                        // cas 2
+                        z = p;
+                        rotationGauche(z);
+                        p = pere[z];
+                    }
+                    // cas 3
+                    rouge[p] = false;
+                    rouge[g] = true;
+                    rotationDroite(g);
+                }
+            } else {
+                int y = gauche[g];
+                if (rouge[y]) {
+                    rouge[p] = false;
+                    rouge[y] = false;
+                    rouge[g] = true;
+                    z = g;
+                } else {
+                    if (z == gauche[p]) {
+                        z = p;
+                        rotationDroite(z);
+                        p = pere[z];
+                    }
+                    rouge[p] = false;
+                    rouge[g] = true;
+                    rotationGauche(g);
+                }
+            }
+        }
+        rouge[racine] = false;
+    }
+
+    /**
+     * Supprime le noeud z
+     *
+     * @return le noeud contenant la clé qui suit celle de z, NIL s'il n'y en
+     *         a pas
+     */
+    private int supprimer(int z) {
+        int y = gauche[z] == NIL || droit[z] == NIL ? z : minimum(droit[z]);
+        int x = gauche[y] != NIL ? gauche[y] : droit[y];
+        // si y != z, la clé de y remonte dans z qui devient donc le successeur
+        int suivant = y == z ? suivant(z) : z;
+        int p = pere[y];
+        pere[x] = p; // inconditionnelle, même pour NIL
+        if (p == NIL) {
+            racine = x;
+        } else if (y == gauche[p]) {
+            gauche[p] = x;
+        } else {
+            droit[p] = x;
+        }
+        if (y != z) {
+            cles[z] = cles[y];
+        }
+        if (!rouge[y]) {
+            supprimerCorrection(x);
+        }
+        liberer(y);
+        taille--;
+        modifications++;
+        return suivant;
+    }
+
+    private void supprimerCorrection(int x) {
+        while (x != racine && !rouge[x]) {
+            int p = pere[x];
+            if (x == gauche[p]) {
+                int w = droit[p]; // le frère de x
+                if (rouge[w]) {
+                    // cas 1
+                    rouge[w] = false;
+                    rouge[p] = true;
+                    rotationGauche(p);
+                    w = droit[p];
+                }
+                if (!rouge[gauche[w]] && !rouge[droit[w]]) {
+                    // cas 2
+                    rouge[w] = true;
+                    x = p;
+                } else {
+                    if (!rouge[droit[w]]) {
+                        // cas 3
+                        rouge[gauche[w]] = false;
+                        rouge[w] = true;
+                        rotationDroite(w);
+                        w = droit[p];
+                    }
+                    // cas 4
+                    rouge[w] = rouge[p];
+                    rouge[p] = false;
+                    rouge[droit[w]] = false;
+                    rotationGauche(p);
+                    x = racine;
+                }
+            } else {
+                int w = gauche[p];
+                if (rouge[w]) {
+                    rouge[w] = false;
+                    rouge[p] = true;
+                    rotationDroite(p);
+                    w = gauche[p];
+                }
+                if (!rouge[gauche[w]] && !rouge[droit[w]]) {
+                    rouge[w] = true;
+                    x = p;
+                } else {
+                    if (!rouge[gauche[w]]) {
+                        rouge[droit[w]] = false;
+                        rouge[w] = true;
+                        rotationGauche(w);
+                        w = gauche[p];
+                    }
+                    rouge[w] = rouge[p];
+                    rouge[p] = false;
+                    rouge[gauche[w]] = false;
+                    rotationDroite(p);
+                    x = racine;
+                }
+            }
+        }
+        rouge[x] = false;
+    }
+
+    private void rotationGauche(int x) {
+        int y = droit[x];
+        int b = gauche[y];
+        droit[x] = b;
+        if (b != NIL) {
+            pere[b] = x;
+        }
+        int p = pere[x];
+        pere[y] = p;
+        if (p == NIL) {
+            racine = y;
+        } else if (x == gauche[p]) {
+            gauche[p] = y;
+        } else {
+            droit[p] = y;
+        }
+        gauche[y] = x;
+        pere[x] = y;
+    }
+
+    private void rotationDroite(int x) {
+        int y = gauche[x];
+        int b = droit[y];
+        gauche[x] = b;
+        if (b != NIL) {
+            pere[b] = x;
+        }
+        int p = pere[x];
+        pere[y] = p;
+        if (p == NIL) {
+            racine = y;
+        } else if (x == droit[p]) {
+            droit[p] = y;
+        } else {
+            gauche[p] = y;
+        }
+        droit[y] = x;
+        pere[x] = y;
+    }
+
+    /**
+     * Itérateur croissant, éventuellement borné ; remove() reprend au
+     * successeur renvoyé par supprimer.
+     */
+    private class Iterateur implements PrimitiveIterator.OfLong {
+        int courant;
+        int precedent = NIL;
+        private final boolean borne;
+        private final long limite;
+        private final boolean limiteIncluse;
+        private int modificationsAttendues = modifications;
+
+        Iterateur(int premier, boolean borne, long limite, boolean limiteIncluse) {
+            this.borne = borne;
+            this.limite = limite;
+            this.limiteIncluse = limiteIncluse;
+            courant = borner(premier);
+        }
+
+        private int borner(int x) {
+            if (!borne || x == NIL) {
+                return x;
+            }
+            long k = cles[x];
+            return k < limite || (k == limite && limiteIncluse) ? x : NIL;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return courant != NIL;
+        }
+
+        @Override
+        public long nextLong() {
+            if (courant == NIL) {
+                throw new NoSuchElementException();
+            }
+            if (modifications != modificationsAttendues) {
+                throw new ConcurrentModificationException();
+            }
+            precedent = courant;
+            courant = borner(suivant(courant));
+            return cles[precedent];
+        }
+
+        @Override
+        public void remove() {
+            if (precedent == NIL) {
+                throw new IllegalStateException();
+            }
+            if (modifications != modificationsAttendues) {
+                throw new ConcurrentModificationException();
+            }
+            courant = borner(supprimer(precedent));
+            precedent = NIL;
+            modificationsAttendues = modifications;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>
+ * Compteurs des opérations internes d'un arbre ({@link ABR},
+ * {@link ArbreRougeNoir}) : appels au comparateur, rotations, changements de
+ * couleur, tours des boucles de correction et noeuds visités par les
+ * recherches, ainsi que la hauteur et l'histogramme des profondeurs.
+ * </p>
+ *
+ * <p>
+ * Les compteurs ne sont tenus qu'avec -Darbres.metriques=true. Sinon
+ * {@link #ACTIVES} est une constante fausse et le compilateur à la volée
+ * supprime les incréments ; les compteurs restent alors à zéro.
+ * </p>
+ *
+ * <p>
+ * Les compteurs sont des LongAdder : les lecteurs concurrents d'un arbre
+ * partagé peuvent les incrémenter ensemble, et un autre thread (JMX par
+ * exemple) peut les lire à tout moment. Les profondeurs demandent de
+ * parcourir l'arbre, en O(n) : elles ne sont mesurées que par
+ * {@link #mesurer()}, appelée par le thread qui modifie l'arbre (ou sous son
+ * verrou), qui publie le résultat. {@link #getHauteur()} et
+ * {@link #getHistogrammeProfondeurs()} renvoient la dernière mesure publiée
+ * sans toucher à l'arbre. {@link #releve()} fige les valeurs à un instant
+ * donné.
+ * </p>
+ */
+public final class Metriques implements MetriquesMXBean {
+    /** true si les compteurs sont tenus */
+    public static final boolean ACTIVES = Boolean.getBoolean("arbres.metriques");
+
+    final LongAdder comparaisons = new LongAdder();
+    final LongAdder rotations = new LongAdder();
+    final LongAdder recolorations = new LongAdder();
+    final LongAdder iterationsAjout = new LongAdder();
+    final LongAdder iterationsSuppression = new LongAdder();
+    final LongAdder recherches = new LongAdder();
+    final LongAdder noeudsVisites = new LongAdder();
+    /** parcours de l'arbre mesuré, donnant le nombre de noeuds par profondeur */
+    private final Supplier<int[]> mesure;
+    /** dernière mesure publiée */
+    private volatile int[] profondeurs = new int[0];
+    private ObjectName nom;
+
+    Metriques(Supplier<int[]> mesure) {
+        this.mesure = mesure;
+    }
+
+    /**
+     * Renvoie un comparateur qui délègue à cmp en comptant ses appels
+     */
+    <T> Comparator<T> compter(Comparator<T> cmp) {
+        return (a, b) -> {
+            comparaisons.increment();
+            return cmp.compare(a, b);
+        };
+    }
+
+    /**
+     * Parcourt l'arbre pour mesurer la hauteur et l'histogramme des
+     * profondeurs, puis publie la mesure pour les autres threads. En O(n), et
+     * l'arbre ne doit pas changer pendant le parcours : à appeler par le
+     * thread qui le modifie, ou sous son verrou.
+     *
+     * @return le nombre de noeuds à chaque profondeur
+     */
+    public int[] mesurer() {
+        int[] h = mesure.get();
+        profondeurs = h;
+        return h.clone();
+    }
+
+    /**
+     * Mesure les profondeurs (cf {@link #mesurer()}, mêmes précautions) et
+     * renvoie une copie figée des compteurs et de cette mesure
+     */
+    public Metriques releve() {
+        int[] h = mesurer();
+        Metriques r = new Metriques(() -> h.clone());
+        r.profondeurs = h;
+        r.comparaisons.add(comparaisons.sum());
+        r.rotations.add(rotations.sum());
+        r.recolorations.add(recolorations.sum());
+        r.iterationsAjout.add(iterationsAjout.sum());
+        r.iterationsSuppression.add(iterationsSuppression.sum());
+        r.recherches.add(recherches.sum());
+        r.noeudsVisites.add(noeudsVisites.sum());
+        return r;
+    }
+
+    /**
+     * Publie ces métriques dans le serveur JMX de la plateforme, sous le nom
+     * arbres:type=Metriques,name=nom
+     *
+     * @return le nom JMX
+     * @throws IllegalArgumentException
+     *             si le nom est invalide ou déjà pris
+     * @throws IllegalStateException
+     *             si ces métriques sont déjà publiées
+     */
+    public synchronized ObjectName enregistrer(String nom) {
+        if (this.nom != null) {
+            throw new IllegalStateException("déjà enregistré sous " + this.nom);
+        }
+        try {
+            ObjectName n = new ObjectName("arbres:type=Metriques,name=" + ObjectName.quote(nom));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+            return this.nom = n;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("nom JMX " + nom + " : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Retire ces métriques du serveur JMX si elles y ont été publiées
+     */
+    public synchronized void desenregistrer() {
+        if (nom == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nom);
+        } catch (JMException e) {
+            // déjà retiré par ailleurs
+        }
+        nom = null;
+    }
+
+    @Override
+    public long getComparaisons() {
+        return comparaisons.sum();
+    }
+
+    @Override
+    public long getRotations() {
+        return rotations.sum();
+    }
+
+    @Override
+    public long getRecolorations() {
+        return recolorations.sum();
+    }
+
+    @Override
+    public long getIterationsCorrectionAjout() {
+        return iterationsAjout.sum();
+    }
+
+    @Override
+    public long getIterationsCorrectionSuppression() {
+        return iterationsSuppression.sum();
+    }
+
+    @Override
+    public long getRecherches() {
+        return recherches.sum();
+    }
+
+    @Override
+    public long getNoeudsVisites() {
+        return noeudsVisites.sum();
+    }
+
+    @Override
+    public double getNoeudsVisitesParRecherche() {
+        long r = recherches.sum();
+        return r == 0 ? 0 : (double) noeudsVisites.sum() / r;
+    }
+
+    @Override
+    public int getHauteur() {
+        return profondeurs.length;
+    }
+
+    @Override
+    public int[] getHistogrammeProfondeurs() {
+        return profondeurs.clone();
+    }
+
+    @Override
+    public void reinitialiser() {
+        comparaisons.reset();
+        rotations.reset();
+        recolorations.reset();
+        iterationsAjout.reset();
+        iterationsSuppression.reset();
+        recherches.reset();
+        noeudsVisites.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "comparaisons=" + comparaisons + ", rotations=" + rotations + ", recolorations=" + recolorations
+                + ", iterationsCorrectionAjout=" + iterationsAjout + ", iterationsCorrectionSuppression="
+                + iterationsSuppression + ", recherches=" + recherches + ", noeudsVisites=" + noeudsVisites
+                + ", profondeurs=" + Arrays.toString(profondeurs);
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Interface de gestion JMX des {@link Metriques} d'un arbre
+ */
+public interface MetriquesMXBean {
+    /** nombre d'appels au comparateur */
+    long getComparaisons();
+
+    /** nombre de rotations simples */
+    long getRotations();
+
+    /** nombre de changements de couleur pendant les corrections */
+    long getRecolorations();
+
+    /** nombre de tours des boucles de correction après un ajout */
+    long getIterationsCorrectionAjout();
+
+    /** nombre de tours des boucles de correction après une suppression */
+    long getIterationsCorrectionSuppression();
+
+    /** nombre de recherches (contains, remove) */
+    long getRecherches();
+
+    /** nombre de noeuds visités par ces recherches */
+    long getNoeudsVisites();
+
+    /** nombre moyen de noeuds visités par recherche */
+    double getNoeudsVisitesParRecherche();
+
+    /** hauteur de l'arbre lors de la dernière mesure (cf Metriques.mesurer) */
+    int getHauteur();
+
+    /**
+     * nombre de noeuds à chaque profondeur lors de la dernière mesure, la
+     * racine étant à la profondeur 0
+     */
+    int[] getHistogrammeProfondeurs();
+
+    /** remet les compteurs à zéro */
+    void reinitialiser();
+}
@@ -0,0 +1,30 @@
+/**
+ * <p>
+ * Agrégat associatif des clés d'un intervalle, maintenu dans chaque noeud
+ * d'un {@link ArbreRougeNoirStatistique} : somme, minimum, maximum,
+ * histogramme... L'opération {@link #combiner} doit être associative et
+ * {@link #neutre()} son élément neutre ; elle n'a pas besoin d'être
+ * commutative, les agrégats étant toujours combinés dans l'ordre des clés.
+ * </p>
+ *
+ * @param <E>
+ *            le type des clés
+ * @param <A>
+ *            le type des agrégats
+ */
+public interface Monoide<E, A> {
+    /**
+     * Renvoie l'agrégat d'un intervalle vide
+     */
+    A neutre();
+
+    /**
+     * Renvoie l'agrégat de la seule clé cle
+     */
+    A valeur(E cle);
+
+    /**
+     * Renvoie l'agrégat des clés de a suivies de celles de b
+     */
+    A combiner(A a, A b);
+}
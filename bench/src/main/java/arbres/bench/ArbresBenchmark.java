@@ -0,0 +1,313 @@
+package arbres.bench;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>
+ * Bancs d'essai des arbres ABR et ArbreRougeNoir, avec java.util.TreeSet comme
+ * référence. ABR est mesuré sans équilibrage et avec chacune de ses
+ * stratégies (implantation "ABR-AVL", "ABR-EVASE", etc.), et l'arbre B+
+ * ArbreB sert de point de comparaison pour les arbres binaires. Chaque opération (ajout, recherche, suppression, parcours complet
+ * et vidange par Iterator.remove()) est mesurée sur des clés aléatoires,
+ * triées, triées à l'envers ou avec beaucoup de doublons, de 1K à 10M clés.
+ * </p>
+ *
+ * <p>
+ * Les opérations qui portent sur tout l'arbre comptent les éléments traités
+ * dans le compteur auxiliaire "elements", rapporté en ops/s. La hauteur de
+ * l'arbre est rapportée par le compteur "hauteur" des bancs de lecture. Le
+ * banc contientChaud concentre 90 % des recherches sur 1 % des clés. Le
+ * taux d'allocation s'obtient avec le profileur gc :
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar -prof gc
+ * java -jar target/benchmarks.jar ArbresBenchmark.contient -p implantation=ArbreRougeNoir
+ * </pre>
+ *
+ * <p>
+ * Les classes des arbres sont dans le paquetage par défaut : elles sont
+ * chargées par leur nom et manipulées comme des Collection.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class ArbresBenchmark {
+
+    /**
+     * Au-delà de cette taille, un ABR construit sur des clés ordonnées est une
+     * liste chaînée et sa construction est quadratique : ces combinaisons sont
+     * refusées plutôt que de bloquer toute la campagne.
+     */
+    static final int LIMITE_ABR_DEGENERE = 100_000;
+
+    public enum Distribution {
+        ALEATOIRE, TRIEE, INVERSEE, DOUBLONS;
+
+        Integer[] generer(int taille, SplittableRandom alea) {
+            Integer[] cles = new Integer[taille];
+            int distinctes = Math.max(1, taille / 100);
+            for (int i = 0; i < taille; i++) {
+                switch (this) {
+                case ALEATOIRE:
+                    cles[i] = alea.nextInt();
+                    break;
+                case TRIEE:
+                    cles[i] = i;
+                    break;
+                case INVERSEE:
+                    cles[i] = taille - 1 - i;
+                    break;
+                default:
+                    cles[i] = alea.nextInt(distinctes);
+                }
+            }
+            return cles;
+        }
+    }
+
+    /**
+     * Paramètres de la campagne et clés partagées par tous les bancs.
+     */
+    @State(Scope.Benchmark)
+    public static class Donnees {
+        @Param({ "ABR", "ABR-AVL", "ABR-ARBRE_TAS", "ABR-EVASE", "ABR-BOUC_EMISSAIRE", "ArbreRougeNoir",
+                "ArbreB", "TreeSet" })
+        public String implantation;
+
+        @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+        public int taille;
+
+        @Param
+        public Distribution distribution;
+
+        /** les clés dans l'ordre d'insertion */
+        Integer[] cles;
+        /** les mêmes clés dans un ordre aléatoire, pour les recherches et suppressions */
+        Integer[] sondes;
+        /** recherches dont 90 % portent sur les clés chaudes */
+        Integer[] sondesChaudes;
+
+        private Constructor<?> constructeur;
+        /** stratégie d'équilibrage de ABR, null pour les autres implantations */
+        private Object equilibrage;
+        private Method hauteur;
+
+        @Setup(Level.Trial)
+        public void preparer() throws ReflectiveOperationException {
+            if (implantation.equals("ABR") && distribution != Distribution.ALEATOIRE
+                    && taille > LIMITE_ABR_DEGENERE) {
+                throw new IllegalStateException("ABR dégénéré sur des clés " + distribution
+                        + " : construction quadratique au-delà de " + LIMITE_ABR_DEGENERE + " clés");
+            }
+            Class<?> classe;
+            if (implantation.startsWith("ABR-")) {
+                classe = Class.forName("ABR");
+                Class<?> strategies = Class.forName("Equilibrage");
+                equilibrage = Enum.valueOf(strategies.asSubclass(Enum.class), implantation.substring(4));
+                constructeur = classe.getConstructor(Comparator.class, strategies);
+            } else {
+                classe = Class.forName(implantation.equals("TreeSet") ? "java.util.TreeSet" : implantation);
+                constructeur = classe.getConstructor(Collection.class);
+            }
+            hauteur = implantation.equals("TreeSet") ? null : classe.getMethod("hauteur");
+
+            SplittableRandom alea = new SplittableRandom(42);
+            cles = distribution.generer(taille, alea);
+            sondes = cles.clone();
+            for (int i = sondes.length - 1; i > 0; i--) {
+                int j = alea.nextInt(i + 1);
+                Integer t = sondes[i];
+                sondes[i] = sondes[j];
+                sondes[j] = t;
+            }
+            int chaudes = Math.max(1, taille / 100);
+            sondesChaudes = new Integer[taille];
+            for (int i = 0; i < taille; i++)
+                sondesChaudes[i] = sondes[alea.nextInt(10) == 0 ? alea.nextInt(taille) : alea.nextInt(chaudes)];
+        }
+
+        /**
+         * Crée un arbre vide ordonné selon l'ordre naturel (le constructeur par
+         * recopie est le seul à le garantir pour les trois implantations ; un
+         * comparateur null désigne l'ordre naturel pour ABR équilibré).
+         */
+        @SuppressWarnings("unchecked")
+        Collection<Integer> nouvelArbre() {
+            try {
+                if (equilibrage != null)
+                    return (Collection<Integer>) constructeur.newInstance(null, equilibrage);
+                return (Collection<Integer>) constructeur.newInstance(Collections.emptyList());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        Collection<Integer> construire() {
+            Collection<Integer> arbre = nouvelArbre();
+            for (Integer cle : cles)
+                arbre.add(cle);
+            return arbre;
+        }
+
+        long hauteur(Collection<Integer> arbre) {
+            if (hauteur == null)
+                return 0;
+            try {
+                return (Integer) hauteur.invoke(arbre);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Arbre construit une fois pour les bancs qui ne le modifient pas.
+     */
+    @State(Scope.Thread)
+    public static class Lecture {
+        Collection<Integer> arbre;
+        long hauteur;
+        int suivante;
+
+        @Setup(Level.Trial)
+        public void construire(Donnees donnees) {
+            arbre = donnees.construire();
+            hauteur = donnees.hauteur(arbre);
+        }
+    }
+
+    /**
+     * Arbre reconstruit avant chaque appel pour les bancs qui le vident.
+     */
+    @State(Scope.Thread)
+    public static class Modification {
+        Collection<Integer> arbre;
+
+        @Setup(Level.Invocation)
+        public void construire(Donnees donnees) {
+            arbre = donnees.construire();
+        }
+    }
+
+    /**
+     * Nombre d'éléments traités par les bancs qui portent sur tout l'arbre.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Compteurs {
+        public long elements;
+
+        @Setup(Level.Iteration)
+        public void raz() {
+            elements = 0;
+        }
+    }
+
+    /**
+     * Hauteur de l'arbre interrogé par les bancs de lecture. Elle est calculée
+     * à la construction et recopiée par le banc, JMH ne relevant les compteurs
+     * qu'autour des appels mesurés.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Forme {
+        public long hauteur;
+    }
+
+    @Benchmark
+    public Collection<Integer> ajout(Donnees donnees, Compteurs compteurs) {
+        Collection<Integer> arbre = donnees.construire();
+        compteurs.elements += donnees.taille;
+        return arbre;
+    }
+
+    @Benchmark
+    public boolean contient(Donnees donnees, Lecture lecture, Forme forme) {
+        forme.hauteur = lecture.hauteur;
+        int i = lecture.suivante;
+        lecture.suivante = i + 1 == donnees.sondes.length ? 0 : i + 1;
+        return lecture.arbre.contains(donnees.sondes[i]);
+    }
+
+    @Benchmark
+    public boolean contientChaud(Donnees donnees, Lecture lecture, Forme forme) {
+        forme.hauteur = lecture.hauteur;
+        int i = lecture.suivante;
+        lecture.suivante = i + 1 == donnees.sondesChaudes.length ? 0 : i + 1;
+        return lecture.arbre.contains(donnees.sondesChaudes[i]);
+    }
+
+    @Benchmark
+    public void parcours(Lecture lecture, Forme forme, Compteurs compteurs, Blackhole trou) {
+        forme.hauteur = lecture.hauteur;
+        for (Integer cle : lecture.arbre) {
+            trou.consume(cle);
+            compteurs.elements++;
+        }
+    }
+
+    @Benchmark
+    public Collection<Integer> retrait(Donnees donnees, Modification modification, Compteurs compteurs) {
+        Collection<Integer> arbre = modification.arbre;
+        for (Integer cle : donnees.sondes)
+            arbre.remove(cle);
+        compteurs.elements += donnees.taille;
+        return arbre;
+    }
+
+    @Benchmark
+    public Collection<Integer> vidange(Modification modification, Compteurs compteurs) {
+        Collection<Integer> arbre = modification.arbre;
+        Iterator<Integer> it = arbre.iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+            compteurs.elements++;
+        }
+        return arbre;
+    }
+
+    /**
+     * Lance toute la campagne avec le profileur gc. Les arguments sont des
+     * motifs de bancs à inclure (tous par défaut).
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        for (String motif : args.length == 0 ? List.of(ArbresBenchmark.class.getSimpleName()) : List.of(args))
+            options.include(motif);
+        Options opt = options.addProfiler(GCProfiler.class).build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,109 @@
+package arbres.bench;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Débit d'un index partagé sous un mélange de 95% de recherches et 5% de
+ * modifications (moitié ajouts, moitié retraits), comparant
+ * ArbreRougeNoirConcurrent et ArbreRougeNoirPartitionne à un ArbreRougeNoir
+ * enveloppé par Collections.synchronizedCollection. Le nombre de threads se
+ * règle avec -t :
+ * </p>
+ *
+ * <p>
+ * ingestion mesure les seuls ajouts de clés uniformes dans un ensemble qui
+ * repart vide à chaque itération : c'est là qu'ArbreRougeNoirPartitionne,
+ * dont chaque tranche a son verrou, doit croître avec le nombre de coeurs.
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar ConcurrentBenchmark -t 1
+ * java -jar target/benchmarks.jar ConcurrentBenchmark -t 8
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@Threads(Threads.MAX)
+public class ConcurrentBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Index {
+        @Param({ "ArbreRougeNoirConcurrent", "ArbreRougeNoirPartitionne", "synchronise" })
+        public String implantation;
+
+        @Param({ "100000", "1000000" })
+        public int taille;
+
+        Collection<Integer> arbre;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void construire() throws ReflectiveOperationException {
+            String nom = implantation.equals("synchronise") ? "ArbreRougeNoir" : implantation;
+            arbre = (Collection<Integer>) Class.forName(nom).getConstructor(Collection.class)
+                    .newInstance(Collections.emptyList());
+            if (implantation.equals("synchronise"))
+                arbre = Collections.synchronizedCollection(arbre);
+            // une clé sur deux : les ajouts et retraits trouvent des deux cas
+            for (int i = 0; i < taille; i++)
+                arbre.add(2 * i);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ingestion {
+        @Param({ "ArbreRougeNoirConcurrent", "ArbreRougeNoirPartitionne", "synchronise" })
+        public String implantation;
+
+        Collection<Integer> arbre;
+
+        @Setup(Level.Iteration)
+        @SuppressWarnings("unchecked")
+        public void vider() throws ReflectiveOperationException {
+            String nom = implantation.equals("synchronise") ? "ArbreRougeNoir" : implantation;
+            arbre = (Collection<Integer>) Class.forName(nom).getConstructor().newInstance();
+            if (implantation.equals("synchronise"))
+                arbre = Collections.synchronizedCollection(arbre);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Alea {
+        final SplittableRandom alea = new SplittableRandom();
+    }
+
+    @Benchmark
+    public boolean melange(Index index, Alea alea) {
+        int tirage = alea.alea.nextInt(100);
+        Integer cle = alea.alea.nextInt(2 * index.taille);
+        if (tirage < 95)
+            return index.arbre.contains(cle);
+        return tirage < 98 ? index.arbre.add(cle) : index.arbre.remove(cle);
+    }
+
+    @Benchmark
+    public boolean ingestion(Ingestion ingestion, Alea alea) {
+        return ingestion.arbre.add(alea.alea.nextInt());
+    }
+}
@@ -0,0 +1,114 @@
+package arbres.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Ajouts et retraits aléatoires dans un ArbreRougeNoir en mémoire et dans un
+ * ArbreRougeNoirDurable, selon sa fenêtre de durabilité en millisecondes (0 :
+ * un fsync par modification, partagé entre les threads). Le journal est écrit
+ * dans un répertoire temporaire, à placer sur le disque à mesurer avec
+ * -Djava.io.tmpdir :
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar DurableBenchmark
+ * java -jar target/benchmarks.jar DurableBenchmark -p fenetre=0 -t 8
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class DurableBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Index {
+        /** "memoire" pour l'arbre seul, sinon la fenêtre en millisecondes */
+        @Param({ "memoire", "10", "0" })
+        public String fenetre;
+
+        @Param({ "1000000" })
+        public int taille;
+
+        Collection<Integer> arbre;
+        Path repertoire;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void construire() throws ReflectiveOperationException, IOException {
+            if (fenetre.equals("memoire")) {
+                arbre = (Collection<Integer>) Class.forName("ArbreRougeNoir").getConstructor(Collection.class)
+                        .newInstance(Collections.emptyList());
+                for (int i = 0; i < taille; i++)
+                    arbre.add(2 * i);
+                return;
+            }
+            // remplissage avec une fenêtre, puis réouverture sur le point de contrôle
+            repertoire = Files.createTempDirectory("durable");
+            arbre = ouvrir(10);
+            for (int i = 0; i < taille; i++)
+                arbre.add(2 * i);
+            arbre.getClass().getMethod("pointDeControle").invoke(arbre);
+            ((Closeable) arbre).close();
+            arbre = ouvrir(Long.parseLong(fenetre));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Collection<Integer> ouvrir(long millis) throws ReflectiveOperationException {
+            Class<?> codec = Class.forName("CodecCle");
+            return (Collection<Integer>) Class.forName("ArbreRougeNoirDurable")
+                    .getConstructor(Path.class, codec, Comparator.class, Duration.class, long.class)
+                    .newInstance(repertoire, codec.getField("ENTIERS").get(null), null, Duration.ofMillis(millis),
+                            64L << 20);
+        }
+
+        @TearDown(Level.Trial)
+        public void fermer() throws IOException {
+            if (repertoire == null)
+                return;
+            ((Closeable) arbre).close();
+            try (Stream<Path> fichiers = Files.list(repertoire)) {
+                for (Path f : (Iterable<Path>) fichiers::iterator)
+                    Files.delete(f);
+            }
+            Files.delete(repertoire);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Alea {
+        final SplittableRandom alea = new SplittableRandom();
+    }
+
+    @Benchmark
+    public boolean modification(Index index, Alea alea) {
+        Integer cle = alea.alea.nextInt(2 * index.taille);
+        return alea.alea.nextBoolean() ? index.arbre.add(cle) : index.arbre.remove(cle);
+    }
+}
@@ -0,0 +1,107 @@
+package arbres.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Recherches dans un arbre rouge-noir et dans sa copie figée (freeze()), avec
+ * des clés Integer et des clés int. La moitié des sondes sont présentes :
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar FigeBenchmark -p taille=10000000
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+public class FigeBenchmark {
+
+    @State(Scope.Thread)
+    public static class Ensembles {
+        @Param({ "1000", "1000000", "10000000" })
+        public int taille;
+
+        /** l'arbre ou sa copie figée */
+        @Param({ "false", "true" })
+        public boolean fige;
+
+        Collection<Integer> objets;
+        /** IntArbreRougeNoir ou EnsembleFigeInt */
+        Object entiers;
+        /** contains(int) de entiers, appelé sans boxing */
+        MethodHandle contientEntier;
+
+        Integer[] sondes;
+        int[] sondesEntieres;
+        int suivante;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void construire() throws ReflectiveOperationException {
+            int[] cles = new int[taille];
+            for (int i = 0; i < taille; i++)
+                cles[i] = 2 * i;
+            Integer[] boites = new Integer[taille];
+            for (int i = 0; i < taille; i++)
+                boites[i] = cles[i];
+
+            Class<?> arbre = Class.forName("ArbreRougeNoir");
+            objets = (Collection<Integer>) arbre.getConstructor(Collection.class)
+                    .newInstance(Arrays.asList(boites));
+            entiers = Class.forName("IntArbreRougeNoir").getConstructor(int[].class).newInstance((Object) cles);
+            if (fige) {
+                objets = (Collection<Integer>) arbre.getMethod("freeze").invoke(objets);
+                entiers = entiers.getClass().getMethod("freeze").invoke(entiers);
+            }
+            contientEntier = MethodHandles.publicLookup()
+                    .findVirtual(entiers.getClass(), "contains", MethodType.methodType(boolean.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class));
+
+            SplittableRandom alea = new SplittableRandom(42);
+            sondesEntieres = new int[1 << 20];
+            sondes = new Integer[sondesEntieres.length];
+            for (int i = 0; i < sondes.length; i++) {
+                sondesEntieres[i] = alea.nextInt(2 * taille);
+                sondes[i] = sondesEntieres[i];
+            }
+        }
+
+        int avancer() {
+            int i = suivante;
+            suivante = (i + 1) & (sondes.length - 1);
+            return i;
+        }
+    }
+
+    @Benchmark
+    public boolean contientObjet(Ensembles e) {
+        return e.objets.contains(e.sondes[e.avancer()]);
+    }
+
+    @Benchmark
+    public boolean contientEntier(Ensembles e) throws Throwable {
+        return (boolean) e.contientEntier.invokeExact(e.entiers, e.sondesEntieres[e.avancer()]);
+    }
+}
@@ -0,0 +1,79 @@
+package arbres.bench;
+
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Ensemble glissant de taille constante : chaque opération ajoute la clé la
+ * plus récente et retire la plus ancienne, avec ou sans recyclage des noeuds
+ * (ArbreRougeNoir.recycler). Les clés sont allouées une fois pour toutes, si
+ * bien que le profileur gc mesure les seules allocations de l'arbre
+ * (gc.alloc.rate.norm, en octets par opération) :
+ * </p>
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar RecyclageBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class RecyclageBenchmark {
+
+    @State(Scope.Thread)
+    public static class Fenetre {
+        @Param({ "true", "false" })
+        public boolean recyclage;
+
+        @Param({ "1000", "1000000" })
+        public int taille;
+
+        Collection<Integer> arbre;
+        /** deux fenêtres de clés distinctes, parcourues circulairement */
+        Integer[] cles;
+        int debut;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void construire() throws ReflectiveOperationException {
+            cles = new Integer[2 * taille];
+            for (int i = 0; i < cles.length; i++)
+                cles[i] = Integer.valueOf(i);
+            Class<?> classe = Class.forName("ArbreRougeNoir");
+            Constructor<?> constructeur = classe.getConstructor(Collection.class);
+            arbre = (Collection<Integer>) constructeur.newInstance(Collections.emptyList());
+            if (recyclage)
+                classe.getMethod("recycler", int.class).invoke(arbre, 1024);
+            for (int i = 0; i < taille; i++)
+                arbre.add(cles[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean glissement(Fenetre fenetre) {
+        Integer[] cles = fenetre.cles;
+        int i = fenetre.debut;
+        int j = i + fenetre.taille;
+        fenetre.arbre.add(cles[j < cles.length ? j : j - cles.length]);
+        fenetre.debut = i + 1 == cles.length ? 0 : i + 1;
+        return fenetre.arbre.remove(cles[i]);
+    }
+}
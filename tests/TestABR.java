@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Tests de non-régression d'{@link ABR}.
+ *
+ * <pre>
+ * javac -d /tmp/t *.java tests/*.java && java -ea -cp /tmp/t TestABR
+ * </pre>
+ */
+public class TestABR {
+
+    public static void main(String[] args) {
+        chargementDansUnAutreOrdre();
+        rechercheSansMasquage();
+        System.out.println("ok");
+    }
+
+    /**
+     * Un SortedSet n'est chargé sans tri que s'il est dans l'ordre de
+     * l'arbre
+     */
+    private static void chargementDansUnAutreOrdre() {
+        for (Equilibrage e : Equilibrage.values()) {
+            ABR<Integer> a = new ABR<>(Comparator.reverseOrder(), e);
+            a.addAll(new TreeSet<>(List.of(1, 2, 3, 4, 5)));
+            egal(new ArrayList<>(a), List.of(5, 4, 3, 2, 1));
+            egal(a.contains(1) && a.contains(5), true);
+            a.add(6);
+            egal(new ArrayList<>(a), List.of(6, 5, 4, 3, 2, 1));
+
+            TreeSet<Integer> inverse = new TreeSet<>(Comparator.reverseOrder());
+            inverse.addAll(List.of(1, 2, 3, 4, 5));
+            ABR<Integer> b = new ABR<>((Comparator<Integer>) null, e);
+            b.addAll(inverse);
+            egal(new ArrayList<>(b), List.of(1, 2, 3, 4, 5));
+            egal(b.contains(1) && b.contains(5), true);
+
+            ABR<Integer> c = new ABR<>(Comparator.reverseOrder(), e);
+            c.addAll(inverse);
+            egal(new ArrayList<>(c), List.of(5, 4, 3, 2, 1));
+        }
+        egal(new ArrayList<>(new ABR<>(new TreeSet<>(List.of(3, 1, 2)))), List.of(1, 2, 3));
+    }
+
+    /**
+     * null est absent, mais une NullPointerException du comparateur est
+     * propagée au lieu d'être prise pour une absence
+     */
+    private static void rechercheSansMasquage() {
+        Comparator<Integer> fragile = (x, y) -> {
+            if (x == 13 || y == 13) {
+                throw new NullPointerException("13");
+            }
+            return Integer.compare(x, y);
+        };
+        for (Equilibrage e : Equilibrage.values()) {
+            ABR<Integer> a = new ABR<>(fragile, e);
+            for (int i = 0; i < 10; i++) {
+                a.add(i);
+            }
+            egal(a.contains(null), false);
+            egal(a.remove(null), false);
+            try {
+                a.contains(13);
+                throw new AssertionError("contains(13) sous " + e);
+            } catch (NullPointerException x) {
+                // attendu
+            }
+            egal(new ArrayList<>(a), List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+            egal(a.contains(9), true);
+        }
+    }
+
+    static void egal(Object x, Object y) {
+        if (!Objects.equals(x, y)) {
+            throw new AssertionError(x + " != " + y);
+        }
+    }
+}
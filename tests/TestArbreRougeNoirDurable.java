@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Test de reprise d'{@link ArbreRougeNoirDurable} : réouverture après
+ * fermeture, arrêt brutal avec un enregistrement tronqué, rotation des
+ * segments aux points de contrôle, validation groupée entre threads, et
+ * codage de clé en échec.
+ *
+ * <pre>
+ * javac -d /tmp/t *.java tests/*.java && java -ea -cp /tmp/t TestArbreRougeNoirDurable
+ * </pre>
+ */
+public class TestArbreRougeNoirDurable {
+    private static final Random HASARD = new Random(1);
+
+    public static void main(String[] args) throws Exception {
+        Path racine = Files.createTempDirectory("durable");
+        try {
+            reouverture(racine.resolve("reouverture"));
+            finTronquee(racine.resolve("tronque"));
+            rotation(racine.resolve("rotation"));
+            validationGroupee(racine.resolve("groupee"));
+            codageEnEchec(racine.resolve("codage"));
+        } finally {
+            try (Stream<Path> fichiers = Files.walk(racine)) {
+                fichiers.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+        System.out.println("ok");
+    }
+
+    /** add, remove, remove de l'itérateur et clear survivent à close */
+    private static void reouverture(Path rep) throws IOException {
+        TreeSet<Integer> ref = new TreeSet<>();
+        try (ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, CodecCle.ENTIERS)) {
+            for (int i = 0; i < 20000; i++) {
+                int k = HASARD.nextInt(5000);
+                if (HASARD.nextBoolean()) {
+                    verifier(d.add(k) == ref.add(k), "add " + k);
+                } else {
+                    verifier(d.remove(k) == ref.remove(k), "remove " + k);
+                }
+            }
+            for (Iterator<Integer> it = d.iterator(); it.hasNext();) {
+                if (it.next() % 7 == 0) {
+                    it.remove();
+                }
+            }
+            ref.removeIf(x -> x % 7 == 0);
+        }
+        try (ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, CodecCle.ENTIERS)) {
+            verifier(new ArrayList<>(d).equals(new ArrayList<>(ref)), "réouverture");
+            d.clear();
+            d.add(3);
+        }
+        try (ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, CodecCle.ENTIERS)) {
+            verifier(List.of(3).equals(new ArrayList<>(d)), "clear puis add");
+        }
+    }
+
+    /**
+     * Sans close, et le dernier enregistrement coupé en deux : seul cet
+     * enregistrement est perdu, et l'ensemble rouvert accepte de nouvelles
+     * écritures
+     */
+    private static void finTronquee(Path rep) throws IOException {
+        ArbreRougeNoirDurable<String> d = new ArbreRougeNoirDurable<>(rep, CodecCle.CHAINES, null, Duration.ZERO,
+                1 << 12);
+        for (int i = 0; i < 3000; i++) {
+            d.add("cle" + HASARD.nextInt(100000));
+        }
+        d.pointDeControle();
+        for (int i = 0; i < 50; i++) {
+            d.add("fin" + i);
+        }
+        TreeSet<String> attendu = new TreeSet<>(d);
+        attendu.remove("fin49");
+        // abandonné sans close
+        Path dernier = fichiers(rep, ".log").get(0);
+        try (FileChannel c = FileChannel.open(dernier, StandardOpenOption.WRITE)) {
+            c.truncate(c.size() - 3);
+        }
+        try (ArbreRougeNoirDurable<String> r = new ArbreRougeNoirDurable<>(rep, CodecCle.CHAINES, null,
+                Duration.ZERO, 1 << 12)) {
+            verifier(new TreeSet<>(r).equals(attendu), "fin tronquée");
+            r.add("apres");
+        }
+        try (ArbreRougeNoirDurable<String> r = new ArbreRougeNoirDurable<>(rep, CodecCle.CHAINES, null,
+                Duration.ZERO, 1 << 12)) {
+            verifier(r.contains("apres") && !r.contains("fin49"), "écriture après reprise");
+        }
+    }
+
+    /**
+     * Les points de contrôle automatiques suppriment les segments couverts
+     * et les anciens instantanés
+     */
+    private static void rotation(Path rep) throws IOException {
+        TreeSet<Long> ref = new TreeSet<>(Comparator.reverseOrder());
+        try (ArbreRougeNoirDurable<Long> d = new ArbreRougeNoirDurable<>(rep, CodecCle.LONGS,
+                Comparator.reverseOrder(), Duration.ofMillis(5), 1 << 12)) {
+            for (long i = 0; i < 20000; i++) {
+                long k = HASARD.nextInt(3000);
+                verifier(d.add(k) == ref.add(k), "add " + k);
+                if (i % 3 == 0) {
+                    verifier(d.remove(i) == ref.remove(i), "remove " + i);
+                }
+            }
+            verifier(fichiers(rep, ".arbr").size() == 1, "instantanés " + fichiers(rep, ".arbr"));
+            verifier(fichiers(rep, ".log").size() == 1, "segments " + fichiers(rep, ".log"));
+        }
+        try (ArbreRougeNoirDurable<Long> d = new ArbreRougeNoirDurable<>(rep, CodecCle.LONGS,
+                Comparator.reverseOrder(), Duration.ofMillis(5), 1 << 12)) {
+            verifier(new ArrayList<>(d).equals(new ArrayList<>(ref)), "après rotation");
+        }
+    }
+
+    /**
+     * Fenêtre nulle et plusieurs threads : tout add rendu est sur disque, même
+     * sans close
+     */
+    private static void validationGroupee(Path rep) throws Exception {
+        ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, CodecCle.ENTIERS);
+        Thread[] threads = new Thread[8];
+        for (int j = 0; j < threads.length; j++) {
+            int premier = j;
+            threads[j] = new Thread(() -> {
+                for (int i = premier; i < 4000; i += threads.length) {
+                    d.add(i);
+                    if (i % 5 == 0) {
+                        d.remove(i);
+                    }
+                }
+            });
+            threads[j].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        List<Integer> avant = new ArrayList<>(d);
+        verifier(avant.size() == 3200, "taille " + avant.size());
+        // abandonné sans close
+        try (ArbreRougeNoirDurable<Integer> r = new ArbreRougeNoirDurable<>(rep, CodecCle.ENTIERS)) {
+            verifier(new ArrayList<>(r).equals(avant), "validation groupée");
+        }
+    }
+
+    /**
+     * Un codage qui échoue laisse l'arbre et le journal inchangés
+     */
+    private static void codageEnEchec(Path rep) throws IOException {
+        CodecCle<Integer> codec = new CodecCle<Integer>() {
+            @Override
+            public int identifiant() {
+                return CodecCle.ENTIERS.identifiant();
+            }
+
+            @Override
+            public int taille(Integer cle) {
+                return Integer.BYTES;
+            }
+
+            @Override
+            public void ecrire(Integer cle, ByteBuffer tampon) {
+                if (cle == 13) {
+                    throw new IllegalArgumentException("clé refusée");
+                }
+                tampon.putInt(cle);
+            }
+
+            @Override
+            public Integer lire(ByteBuffer tampon) {
+                return tampon.getInt();
+            }
+        };
+        try (ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, codec)) {
+            for (int i = 0; i < 10; i++) {
+                d.add(i);
+            }
+            try {
+                d.add(13);
+                throw new AssertionError("add 13");
+            } catch (IllegalArgumentException e) {
+                // attendu
+            }
+            verifier(!d.contains(13) && d.size() == 10, "add refusé");
+            d.add(20);
+        }
+        try (ArbreRougeNoirDurable<Integer> d = new ArbreRougeNoirDurable<>(rep, codec)) {
+            verifier(d.size() == 11 && d.contains(20) && !d.contains(13), "réouverture après refus");
+        }
+    }
+
+    /** les fichiers de rep d'extension donnée, du plus récent au plus ancien */
+    private static List<Path> fichiers(Path rep, String extension) throws IOException {
+        try (Stream<Path> s = Files.list(rep)) {
+            List<Path> l = new ArrayList<>();
+            s.filter(f -> f.toString().endsWith(extension)).sorted(Comparator.reverseOrder()).forEach(l::add);
+            return l;
+        }
+    }
+
+    private static void verifier(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
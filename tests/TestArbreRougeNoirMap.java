@@ -0,0 +1,256 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * Test différentiel d'{@link ArbreRougeNoirMap} contre TreeMap : des suites
+ * aléatoires d'opérations sont appliquées aux deux tables, y compris à
+ * travers des vues, et chaque résultat doit être identique.
+ *
+ * <pre>
+ * javac -d /tmp/t *.java tests/*.java && java -ea -cp /tmp/t TestArbreRougeNoirMap
+ * </pre>
+ */
+public class TestArbreRougeNoirMap {
+    private static final SplittableRandom HASARD = new SplittableRandom(11);
+
+    public static void main(String[] args) {
+        for (int essai = 0; essai < 400; essai++) {
+            ArbreRougeNoirMap<Integer, Integer> m = new ArbreRougeNoirMap<>();
+            TreeMap<Integer, Integer> t = new TreeMap<>();
+            int borne = 1 + HASARD.nextInt(400);
+            for (int op = 0; op < 1500; op++) {
+                operation(m, t, HASARD.nextInt(borne), HASARD.nextInt(5), borne);
+                egal(m.size(), t.size());
+            }
+            egal(m, t);
+            egal(t, m);
+            egal(m.hashCode(), t.hashCode());
+            egal(m.toString(), t.toString());
+        }
+        copiesFigees();
+        erreurs();
+        System.out.println("ok");
+    }
+
+    private static void operation(ArbreRougeNoirMap<Integer, Integer> m, TreeMap<Integer, Integer> t, Integer k,
+            Integer v, int borne) {
+        switch (HASARD.nextInt(14)) {
+        case 0:
+        case 1:
+            egal(m.put(k, v), t.put(k, v));
+            break;
+        case 2:
+            egal(m.remove(k), t.remove(k));
+            break;
+        case 3:
+            egal(m.computeIfAbsent(k, x -> v == 0 ? null : v), t.computeIfAbsent(k, x -> v == 0 ? null : v));
+            break;
+        case 4:
+            egal(m.merge(k, v + 1, (p, q) -> p + q > 8 ? null : p + q),
+                    t.merge(k, v + 1, (p, q) -> p + q > 8 ? null : p + q));
+            break;
+        case 5:
+            egal(m.compute(k, (x, p) -> v == 0 ? null : v), t.compute(k, (x, p) -> v == 0 ? null : v));
+            break;
+        case 6:
+            egal(m.computeIfPresent(k, (x, p) -> v == 0 ? null : p + v),
+                    t.computeIfPresent(k, (x, p) -> v == 0 ? null : p + v));
+            break;
+        case 7:
+            egal(m.putIfAbsent(k, v), t.putIfAbsent(k, v));
+            break;
+        case 8:
+            vues(m, t, k, borne);
+            break;
+        case 9:
+            // parcours avec retraits et setValue sur les noeuds
+            for (Iterator<Map.Entry<Integer, Integer>> it = m.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Integer, Integer> e = it.next();
+                if (HASARD.nextInt(5) == 0) {
+                    t.remove(e.getKey());
+                    it.remove();
+                } else if (HASARD.nextInt(5) == 0) {
+                    e.setValue(v);
+                    t.put(e.getKey(), v);
+                }
+            }
+            break;
+        case 10:
+            egal(m.pollFirstEntry(), t.pollFirstEntry());
+            break;
+        case 11:
+            egal(m.pollLastEntry(), t.pollLastEntry());
+            break;
+        case 12:
+            egal(m.get(k), t.get(k));
+            egal(m.getOrDefault(k, -1), t.getOrDefault(k, -1));
+            break;
+        default:
+            if (HASARD.nextInt(100) == 0) {
+                m.clear();
+                t.clear();
+            } else {
+                egal(m.containsKey(k), t.containsKey(k));
+            }
+        }
+    }
+
+    /**
+     * Compare les deux tables à travers une suite de vues imbriquées tirées
+     * au hasard
+     */
+    private static void vues(NavigableMap<Integer, Integer> m, NavigableMap<Integer, Integer> t, int k, int borne) {
+        for (int profondeur = 0; profondeur < 3; profondeur++) {
+            int bas = HASARD.nextInt(borne + 2) - 1;
+            int haut = bas + HASARD.nextInt(borne / 2 + 2);
+            boolean basInclus = HASARD.nextBoolean();
+            boolean hautInclus = HASARD.nextBoolean();
+            int choix = HASARD.nextInt(5);
+            List<NavigableMap<Integer, Integer>> vues = new ArrayList<>();
+            boolean[] refus = new boolean[2];
+            for (int i = 0; i < 2; i++) {
+                NavigableMap<Integer, Integer> x = i == 0 ? m : t;
+                vues.add(null);
+                try {
+                    switch (choix) {
+                    case 0:
+                        vues.set(i, x.subMap(bas, basInclus, haut, hautInclus));
+                        break;
+                    case 1:
+                        vues.set(i, x.headMap(haut, hautInclus));
+                        break;
+                    case 2:
+                        vues.set(i, x.tailMap(bas, basInclus));
+                        break;
+                    case 3:
+                        vues.set(i, x.descendingMap());
+                        break;
+                    default:
+                        vues.set(i, x.subMap(haut, hautInclus, bas, basInclus));
+                    }
+                } catch (IllegalArgumentException e) {
+                    refus[i] = true;
+                }
+            }
+            egal(refus[0], refus[1]);
+            if (refus[0]) {
+                return;
+            }
+            m = vues.get(0);
+            t = vues.get(1);
+            egal(new ArrayList<>(m.entrySet()), new ArrayList<>(t.entrySet()));
+            egal(new ArrayList<>(m.keySet()), new ArrayList<>(t.keySet()));
+            egal(new ArrayList<>(m.descendingKeySet()), new ArrayList<>(t.descendingKeySet()));
+            egal(new ArrayList<>(m.values()), new ArrayList<>(t.values()));
+            egal(m.size(), t.size());
+            egal(m.isEmpty(), t.isEmpty());
+            egal(m.floorEntry(k), t.floorEntry(k));
+            egal(m.ceilingEntry(k), t.ceilingEntry(k));
+            egal(m.lowerEntry(k), t.lowerEntry(k));
+            egal(m.higherEntry(k), t.higherEntry(k));
+            egal(m.lowerKey(k), t.lowerKey(k));
+            egal(m.higherKey(k), t.higherKey(k));
+            egal(m.firstEntry(), t.firstEntry());
+            egal(m.lastEntry(), t.lastEntry());
+            egal(m.get(k), t.get(k));
+            egal(m.containsKey(k), t.containsKey(k));
+            Map.Entry<Integer, Integer> e = t.firstEntry();
+            if (e != null) {
+                egal(m.entrySet().contains(e), true);
+                egal(m.entrySet().contains(new AbstractMap.SimpleEntry<>(e.getKey(), 99)), false);
+            }
+            Integer avant1 = null;
+            Integer avant2 = null;
+            boolean hors1 = false;
+            boolean hors2 = false;
+            try {
+                avant1 = m.put(k, 7);
+            } catch (IllegalArgumentException x) {
+                hors1 = true;
+            }
+            try {
+                avant2 = t.put(k, 7);
+            } catch (IllegalArgumentException x) {
+                hors2 = true;
+            }
+            egal(hors1, hors2);
+            egal(avant1, avant2);
+            if (HASARD.nextInt(8) == 0) {
+                m.clear();
+                t.clear();
+            }
+        }
+    }
+
+    /**
+     * Les entrées de navigation sont des copies : elles ne suivent ni les
+     * suppressions (qui déplacent des clés entre noeuds) ni les put
+     */
+    private static void copiesFigees() {
+        ArbreRougeNoirMap<Integer, Integer> m = new ArbreRougeNoirMap<>();
+        for (int i = 0; i < 100; i++) {
+            m.put(i, i);
+        }
+        NavigableMap<Integer, Integer> d = m.descendingMap();
+        List<Map.Entry<Integer, Integer>> entrees = List.of(m.firstEntry(), m.lastEntry(), m.floorEntry(50),
+                m.ceilingEntry(50), m.lowerEntry(50), m.higherEntry(50), d.firstEntry(), d.floorEntry(20),
+                m.subMap(10, true, 90, false).ceilingEntry(40));
+        int[] attendues = { 0, 99, 50, 50, 49, 51, 99, 20, 40 };
+        for (int i = 0; i < 100; i++) {
+            m.put(i, -i);
+        }
+        for (int i = 0; i < 100; i += 3) {
+            m.remove(i);
+        }
+        for (int i = 0; i < entrees.size(); i++) {
+            Map.Entry<Integer, Integer> e = entrees.get(i);
+            egal(e.getKey(), attendues[i]);
+            egal(e.getValue(), attendues[i]);
+            try {
+                e.setValue(0);
+                throw new AssertionError("setValue sur une copie");
+            } catch (UnsupportedOperationException x) {
+                // attendu, comme TreeMap
+            }
+        }
+    }
+
+    private static void erreurs() {
+        ArbreRougeNoirMap<Integer, Integer> m = new ArbreRougeNoirMap<>();
+        try {
+            m.computeIfAbsent(1, k -> {
+                m.put(2, 2);
+                return 1;
+            });
+            throw new AssertionError("la fonction a modifié la table");
+        } catch (ConcurrentModificationException e) {
+            // attendu
+        }
+        try {
+            m.keySet().add(3);
+            throw new AssertionError("keySet().add");
+        } catch (UnsupportedOperationException e) {
+            // attendu
+        }
+        try {
+            m.put(null, 1);
+            throw new AssertionError("clé null");
+        } catch (NullPointerException e) {
+            // attendu
+        }
+    }
+
+    private static void egal(Object x, Object y) {
+        if (!Objects.equals(x, y)) {
+            throw new AssertionError(x + " != " + y);
+        }
+    }
+}